@@ -0,0 +1,253 @@
+package team6.finalproject;
+
+import java.util.BitSet;
+
+/**
+ * A* path planner on the {@link OccupancyGrid}.
+ * <o>
+ * The search runs on the grid cells, 8-connected, without cutting the corner of an occupied cell. The cell
+ * path is then pulled tight: cells are dropped as long as the straight line from the last kept point stays
+ * in free cells, so the waypoints handed to <code>Navigation</code> are only the corners of the path.
+ * <o>
+ * All the search state lives in arrays allocated once, sized for the whole grid, so planning does not
+ * create garbage for the EV3's collector to deal with. If the robot starts inside an occupied cell (e.g.
+ * pushed against a wall), it is allowed to drive out of it: through the occupied cells joined to the start,
+ * at {@link #ESCAPE_COST} per cell so it leaves by the shortest way, and never back into them once out.
+ *
+ * @author Erick Zhao
+ * @version 1.0
+ */
+public class AStarPlanner implements PathPlanner {
+
+	private static final int SIZE = OccupancyGrid.SIZE;
+	private static final int CELLS = SIZE * SIZE;
+	private static final double DIAGONAL = Math.sqrt(2);
+	private static final int[] STEP_COL = { 1, -1, 0, 0, 1, 1, -1, -1 };
+	private static final int[] STEP_ROW = { 0, 0, 1, -1, 1, -1, 1, -1 };
+	private static final double LINE_STEP = OccupancyGrid.CELL_SIZE / 4;
+	/**
+	 * Cost, in cells, of each step through an occupied cell when leaving an occupied start.
+	 */
+	public static final double ESCAPE_COST = 100;
+
+	private final OccupancyGrid grid;
+	private final double[] cost = new double[CELLS];
+	private final int[] parent = new int[CELLS];
+	private final int[] visited = new int[CELLS]; // search number in which cost and parent were set
+	private final BitSet closed = new BitSet(CELLS);
+	private final BitSet escaping = new BitSet(CELLS); // occupied cells reached through occupied cells from the start
+	private final BitSet exit = new BitSet(CELLS); // occupied cells the path found leaves the start through
+	private int search = 0;
+	private int goalCol, goalRow;
+	private int expanded;
+
+	// binary min-heap of cells keyed by estimated total cost, with stale entries skipped when popped
+	private int[] heapCell = new int[CELLS];
+	private double[] heapKey = new double[CELLS];
+	private int heapSize;
+
+	/**
+	 * Constructor for the planner.
+	 * @param grid		the <code>OccupancyGrid</code> to plan on
+	 */
+	public AStarPlanner(OccupancyGrid grid) {
+		this.grid = grid;
+	}
+
+	@Override
+	public synchronized double[][] plan(double startX, double startY, double goalX, double goalY) {
+		BitSet occupied = grid.snapshot();
+		int startCol = OccupancyGrid.cellOf(startX), startRow = OccupancyGrid.cellOf(startY);
+		goalCol = OccupancyGrid.cellOf(goalX);
+		goalRow = OccupancyGrid.cellOf(goalY);
+		if (!inGrid(startCol, startRow) || !inGrid(goalCol, goalRow) || occupied.get(goalRow * SIZE + goalCol))
+			return null;
+
+		int start = startRow * SIZE + startCol, goal = goalRow * SIZE + goalCol;
+		search++;
+		closed.clear();
+		escaping.clear();
+		escaping.set(start, occupied.get(start));
+		heapSize = 0;
+		expanded = 0;
+		cost[start] = 0;
+		parent[start] = -1;
+		visited[start] = search;
+		push(start, heuristic(startCol, startRow));
+
+		while (heapSize > 0) {
+			int current = pop();
+			if (closed.get(current))
+				continue;
+			closed.set(current);
+			expanded++;
+			if (current == goal)
+				return pullTight(occupied, cellPath(start, goal), startX, startY, goalX, goalY);
+
+			int col = current % SIZE, row = current / SIZE;
+			boolean leaving = escaping.get(current);
+			for (int k = 0; k < 8; k++) {
+				int nextCol = col + STEP_COL[k], nextRow = row + STEP_ROW[k];
+				if (!inGrid(nextCol, nextRow))
+					continue;
+				int next = nextRow * SIZE + nextCol;
+				if (closed.get(next))
+					continue;
+				boolean blocked = occupied.get(next);
+				if (!leaving) {
+					if (blocked)
+						continue;
+					// diagonal moves may not clip an occupied corner
+					if (k >= 4 && (occupied.get(row * SIZE + nextCol) || occupied.get(nextRow * SIZE + col)))
+						continue;
+				}
+				double nextCost = cost[current] + (k < 4 ? 1 : DIAGONAL) + (blocked ? ESCAPE_COST : 0);
+				if (visited[next] != search || nextCost < cost[next]) {
+					visited[next] = search;
+					cost[next] = nextCost;
+					parent[next] = current;
+					escaping.set(next, blocked);
+					push(next, nextCost + heuristic(nextCol, nextRow));
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Getter for the number of cells expanded by the last search, for benchmarking.
+	 * @return		the <code>int</code> number of cells
+	 */
+	public synchronized int getExpanded() {
+		return expanded;
+	}
+
+	/**
+	 * Octile distance to the goal, in cells.
+	 */
+	private double heuristic(int col, int row) {
+		int dc = Math.abs(col - goalCol), dr = Math.abs(row - goalRow);
+		return Math.max(dc, dr) + (DIAGONAL - 1) * Math.min(dc, dr);
+	}
+
+	private static boolean inGrid(int col, int row) {
+		return col >= 0 && row >= 0 && col < SIZE && row < SIZE;
+	}
+
+	/**
+	 * Lists the cells of the path found, from the start to the goal.
+	 */
+	private int[] cellPath(int start, int goal) {
+		int length = 1;
+		for (int cell = goal; cell != start; cell = parent[cell])
+			length++;
+		int[] path = new int[length];
+		for (int cell = goal, i = length - 1; i >= 0; cell = parent[cell], i--)
+			path[i] = cell;
+		return path;
+	}
+
+	/**
+	 * Turns a cell path into the list of its corners.
+	 * @param occupied	the <code>BitSet</code> of occupied cells the path was planned on
+	 * @param path		the <code>int[]</code> cells of the path, from the start to the goal
+	 * @return			the <code>double[][]</code> waypoints after the start, ending with the exact goal
+	 */
+	private double[][] pullTight(BitSet occupied, int[] path, double startX, double startY, double goalX,
+			double goalY) {
+		int length = path.length;
+		// the only occupied cells a shortcut may cross
+		exit.clear();
+		for (int i = 0; i < length && occupied.get(path[i]); i++)
+			exit.set(path[i]);
+		double[] pointsX = new double[length];
+		double[] pointsY = new double[length];
+		int count = 0;
+		double anchorX = startX, anchorY = startY;
+		for (int i = 1; i < length - 1; i++) {
+			int next = path[i + 1];
+			double nextX = OccupancyGrid.centerOf(next % SIZE), nextY = OccupancyGrid.centerOf(next / SIZE);
+			if (!lineFree(occupied, exit, anchorX, anchorY, nextX, nextY)) {
+				anchorX = OccupancyGrid.centerOf(path[i] % SIZE);
+				anchorY = OccupancyGrid.centerOf(path[i] / SIZE);
+				pointsX[count] = anchorX;
+				pointsY[count] = anchorY;
+				count++;
+			}
+		}
+		// end on the exact goal rather than the center of its cell
+		double[][] waypoints = new double[count + 1][];
+		for (int i = 0; i < count; i++)
+			waypoints[i] = new double[] { pointsX[i], pointsY[i] };
+		waypoints[count] = new double[] { goalX, goalY };
+		return waypoints;
+	}
+
+	/**
+	 * Checks that a straight line only crosses free cells, except for the cells of the path's exit from an
+	 * occupied start, and only until the line first reaches a free cell.
+	 */
+	private static boolean lineFree(BitSet occupied, BitSet exit, double ax, double ay, double bx, double by) {
+		int steps = (int) Math.ceil(Math.hypot(bx - ax, by - ay) / LINE_STEP);
+		boolean leftStart = false;
+		for (int i = 0; i <= steps; i++) {
+			double t = steps == 0 ? 0 : (double) i / steps;
+			int col = OccupancyGrid.cellOf(ax + t * (bx - ax)), row = OccupancyGrid.cellOf(ay + t * (by - ay));
+			if (!inGrid(col, row))
+				return false;
+			int cell = row * SIZE + col;
+			if (occupied.get(cell)) {
+				if (leftStart || !exit.get(cell))
+					return false;
+			} else {
+				leftStart = true;
+			}
+		}
+		return true;
+	}
+
+	private void push(int cell, double key) {
+		if (heapSize == heapCell.length) {
+			int[] grownCells = new int[heapCell.length * 2];
+			double[] grownKeys = new double[heapKey.length * 2];
+			System.arraycopy(heapCell, 0, grownCells, 0, heapSize);
+			System.arraycopy(heapKey, 0, grownKeys, 0, heapSize);
+			heapCell = grownCells;
+			heapKey = grownKeys;
+		}
+		int i = heapSize++;
+		while (i > 0) {
+			int up = (i - 1) / 2;
+			if (heapKey[up] <= key)
+				break;
+			heapCell[i] = heapCell[up];
+			heapKey[i] = heapKey[up];
+			i = up;
+		}
+		heapCell[i] = cell;
+		heapKey[i] = key;
+	}
+
+	private int pop() {
+		int top = heapCell[0];
+		heapSize--;
+		int cell = heapCell[heapSize];
+		double key = heapKey[heapSize];
+		int i = 0;
+		while (true) {
+			int child = 2 * i + 1;
+			if (child >= heapSize)
+				break;
+			if (child + 1 < heapSize && heapKey[child + 1] < heapKey[child])
+				child++;
+			if (heapKey[child] >= key)
+				break;
+			heapCell[i] = heapCell[child];
+			heapKey[i] = heapKey[child];
+			i = child;
+		}
+		heapCell[i] = cell;
+		heapKey[i] = key;
+		return top;
+	}
+}
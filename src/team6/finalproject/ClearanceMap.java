@@ -0,0 +1,208 @@
+package team6.finalproject;
+
+import java.util.BitSet;
+
+/**
+ * Distance transform of the {@link OccupancyGrid}: for every cell, how far the nearest occupied cell is.
+ * <o>
+ * Since the grid is already a configuration space, with zones and walls grown by the robot's half width,
+ * the clearance of a point is how far the robot's center can move from it before the robot touches
+ * something. Looking it up is a single array access, so it can be used in control loops, e.g. to slow
+ * down near zones and walls.
+ * <o>
+ * The distances are 8-neighbour chamfer distances between cell centers, computed in two passes over the
+ * grid. When cells are marked, only the distances that shrink are updated, spreading out from the new
+ * cells. Freeing cells, which is rare, recomputes the whole map. A second layer holds the clearance from
+ * the walls alone.
+ *
+ * @author Erick Zhao
+ * @version 1.0
+ * @see OccupancyGrid
+ */
+public class ClearanceMap implements OccupancyGrid.Listener {
+
+	private static final int SIZE = OccupancyGrid.SIZE;
+	private static final int CELLS = SIZE * SIZE;
+	private static final float DIAGONAL = (float) Math.sqrt(2);
+	private static final int[] STEP_COL = { 1, -1, 0, 0, 1, 1, -1, -1 };
+	private static final int[] STEP_ROW = { 0, 0, 1, -1, 1, -1, 1, -1 };
+
+	private final OccupancyGrid grid;
+	// distances in cells, written under the lock but read without it
+	private final float[] clearance = new float[CELLS];
+	private final float[] wallClearance = new float[CELLS];
+
+	// cells whose distance dropped, waiting to update their neighbours
+	private final int[] queue = new int[CELLS];
+	private final BitSet queued = new BitSet(CELLS);
+	private int queueHead, queueSize;
+
+	/**
+	 * Constructor for the map. Computes the distances and keeps them up to date with the grid.
+	 * @param grid		the <code>OccupancyGrid</code> to measure clearance on
+	 */
+	public ClearanceMap(OccupancyGrid grid) {
+		this.grid = grid;
+		BitSet walls = new BitSet(CELLS);
+		for (int row = 0; row < SIZE; row++) {
+			for (int col = 0; col < SIZE; col++) {
+				if (grid.isWall(col, row))
+					walls.set(row * SIZE + col);
+			}
+		}
+		recompute(wallClearance, walls);
+		recompute(clearance, grid.snapshot());
+		grid.addListener(this);
+	}
+
+	@Override
+	public synchronized void cellsChanged(int colA, int rowA, int colB, int rowB, boolean occupied) {
+		BitSet cells = grid.snapshot();
+		if (!occupied) {
+			recompute(clearance, cells);
+			return;
+		}
+		for (int row = rowA; row <= rowB; row++) {
+			for (int col = colA; col <= colB; col++) {
+				int cell = row * SIZE + col;
+				if (cells.get(cell) && clearance[cell] != 0) {
+					clearance[cell] = 0;
+					enqueue(cell);
+				}
+			}
+		}
+		propagate();
+	}
+
+	/**
+	 * Distance from a point to the nearest occupied cell.
+	 * @param x		the <code>double</code> X coordinate in cm
+	 * @param y		the <code>double</code> Y coordinate in cm
+	 * @return		the <code>double</code> distance in cm, to within a cell; 0 in an occupied cell or outside the arena
+	 */
+	public double getClearance(double x, double y) {
+		return lookUp(clearance, x, y);
+	}
+
+	/**
+	 * Distance from a point to the strip along the walls, ignoring the zones and obstacles.
+	 * @param x		the <code>double</code> X coordinate in cm
+	 * @param y		the <code>double</code> Y coordinate in cm
+	 * @return		the <code>double</code> distance in cm, to within a cell; 0 along the walls or outside the arena
+	 */
+	public double getWallClearance(double x, double y) {
+		return lookUp(wallClearance, x, y);
+	}
+
+	/**
+	 * Finds the point closest to a target that has at least a given clearance.
+	 * @param x				the <code>double</code> X coordinate of the target in cm
+	 * @param y				the <code>double</code> Y coordinate of the target in cm
+	 * @param minClearance	the <code>double</code> clearance required in cm
+	 * @return				the <code>double[]</code> {x, y} in cm of the closest cell center, or <code>null</code>
+	 * 						if no cell is that clear
+	 */
+	public double[] nearestClear(double x, double y, double minClearance) {
+		if (getClearance(x, y) >= minClearance)
+			return new double[] { x, y };
+		double minCells = minClearance / OccupancyGrid.CELL_SIZE;
+		double bestDistance = Double.MAX_VALUE;
+		int best = -1;
+		for (int cell = 0; cell < CELLS; cell++) {
+			if (clearance[cell] < minCells)
+				continue;
+			double dx = OccupancyGrid.centerOf(cell % SIZE) - x, dy = OccupancyGrid.centerOf(cell / SIZE) - y;
+			double distance = dx * dx + dy * dy;
+			if (distance < bestDistance) {
+				bestDistance = distance;
+				best = cell;
+			}
+		}
+		if (best < 0)
+			return null;
+		return new double[] { OccupancyGrid.centerOf(best % SIZE), OccupancyGrid.centerOf(best / SIZE) };
+	}
+
+	private static double lookUp(float[] distances, double x, double y) {
+		int col = OccupancyGrid.cellOf(x), row = OccupancyGrid.cellOf(y);
+		if (col < 0 || row < 0 || col >= SIZE || row >= SIZE)
+			return 0;
+		return distances[row * SIZE + col] * OccupancyGrid.CELL_SIZE;
+	}
+
+	/**
+	 * Spreads the distance decreases from the queued cells.
+	 */
+	private void propagate() {
+		while (queueSize > 0) {
+			int cell = queue[queueHead];
+			queueHead = (queueHead + 1) % CELLS;
+			queueSize--;
+			queued.clear(cell);
+
+			int col = cell % SIZE, row = cell / SIZE;
+			for (int k = 0; k < 8; k++) {
+				int nextCol = col + STEP_COL[k], nextRow = row + STEP_ROW[k];
+				if (nextCol < 0 || nextRow < 0 || nextCol >= SIZE || nextRow >= SIZE)
+					continue;
+				int next = nextRow * SIZE + nextCol;
+				float distance = clearance[cell] + (k < 4 ? 1 : DIAGONAL);
+				if (distance < clearance[next]) {
+					clearance[next] = distance;
+					enqueue(next);
+				}
+			}
+		}
+	}
+
+	private void enqueue(int cell) {
+		if (queued.get(cell))
+			return;
+		queued.set(cell);
+		queue[(queueHead + queueSize) % CELLS] = cell;
+		queueSize++;
+	}
+
+	/**
+	 * Two-pass chamfer distance transform.
+	 */
+	private static void recompute(float[] distances, BitSet occupied) {
+		for (int cell = 0; cell < CELLS; cell++) {
+			distances[cell] = occupied.get(cell) ? 0 : Float.MAX_VALUE;
+		}
+		// forward pass, from the bottom left
+		for (int row = 0; row < SIZE; row++) {
+			for (int col = 0; col < SIZE; col++) {
+				int cell = row * SIZE + col;
+				float d = distances[cell];
+				if (col > 0)
+					d = Math.min(d, distances[cell - 1] + 1);
+				if (row > 0) {
+					d = Math.min(d, distances[cell - SIZE] + 1);
+					if (col > 0)
+						d = Math.min(d, distances[cell - SIZE - 1] + DIAGONAL);
+					if (col < SIZE - 1)
+						d = Math.min(d, distances[cell - SIZE + 1] + DIAGONAL);
+				}
+				distances[cell] = d;
+			}
+		}
+		// backward pass, from the top right
+		for (int row = SIZE - 1; row >= 0; row--) {
+			for (int col = SIZE - 1; col >= 0; col--) {
+				int cell = row * SIZE + col;
+				float d = distances[cell];
+				if (col < SIZE - 1)
+					d = Math.min(d, distances[cell + 1] + 1);
+				if (row < SIZE - 1) {
+					d = Math.min(d, distances[cell + SIZE] + 1);
+					if (col < SIZE - 1)
+						d = Math.min(d, distances[cell + SIZE + 1] + DIAGONAL);
+					if (col > 0)
+						d = Math.min(d, distances[cell + SIZE - 1] + DIAGONAL);
+				}
+				distances[cell] = d;
+			}
+		}
+	}
+}
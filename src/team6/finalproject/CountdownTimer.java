@@ -2,35 +2,64 @@ package team6.finalproject;
 /**
  * CountdownTimer Class
  * <p>
- * Class that acts as a timer throughout the allowed operational timeframe of the robot. 
- * Signals when it is time to begin heading back to the starting point to avoid disqualification
+ * Class that acts as a timer throughout the allowed operational timeframe of the robot.
+ * Signals when it is time to begin heading back to the starting point to avoid disqualification.
+ * The time is measured from the first <code>start()</code>, so it keeps counting whatever the
+ * refresh rate and however long the timer thread is held up.
  * @author Kael Du
  * @version 1.0
  */
 public class CountdownTimer extends PausableTimerListener {
-	
-	private boolean TimeUp = false;
-	private int numLoops = 0;
-	
-	private static final int LOOPS_PER_SECOND = 20;
-	private static final int MAX_TRAVEL_TIME = 240; //4 minutes of travel time
-	
+
+	private volatile boolean TimeUp = false;
+	private volatile long startTime = 0;
+
+	private static final int MAX_TRAVEL_TIME = 240; //4 minutes of travel time, then the search stops whatever the estimates
+	public static final int MATCH_TIME = 300; //5 minutes for the whole round
+
+	/**
+	 * Starts counting down, from the first call only.
+	 */
+	@Override
+	public void start() {
+		if (startTime == 0) {
+			startTime = System.currentTimeMillis();
+		}
+		super.start();
+	}
+
 	/**
 	 * measures the time spent and adjusts the boolean value to determine whether or not time is up
 	 */
 	@Override
 	public void timedOut() {
-		numLoops++;
-		if (numLoops>=LOOPS_PER_SECOND*MAX_TRAVEL_TIME) {
+		if (getElapsed() >= MAX_TRAVEL_TIME) {
 			TimeUp = true;
+			this.stop();
 		}
-		this.stop();
 	}
 	/**
-	 * @return a <code>boolean</code> value indicating whether time is up
+	 * @return a <code>boolean</code> value indicating whether the travel time is up
 	 */
 	public boolean isTimeUp() {
-		return TimeUp;
+		return TimeUp || getElapsed() >= MAX_TRAVEL_TIME;
+	}
+
+	/**
+	 * @return the <code>double</code> time in s since the timer was started, 0 if it was not
+	 */
+	public double getElapsed() {
+		if (startTime == 0) {
+			return 0;
+		}
+		return (System.currentTimeMillis() - startTime) / 1000.0;
+	}
+
+	/**
+	 * @return the <code>double</code> time in s left in the match, never below 0
+	 */
+	public double getRemaining() {
+		return Math.max(0, MATCH_TIME - getElapsed());
 	}
-	
+
 }
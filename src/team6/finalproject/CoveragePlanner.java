@@ -0,0 +1,209 @@
+package team6.finalproject;
+
+/**
+ * Plans where to sweep for blocks, and in which order, to cover the arena.
+ * <o>
+ * A sweep turns the robot a quarter turn counter-clockwise from heading 0, so it sees the quarter disc of
+ * the sensor range to its front left. That quarter disc holds a square of side <code>range / sqrt(2)</code>,
+ * so the arena is split into squares of that side, with one viewpoint at the lower left corner of each. The
+ * squares lying entirely inside known zones are skipped, and so are the viewpoints that cannot be reached.
+ * A viewpoint inside a zone or the wall strip is moved up its square's diagonal when possible.
+ * <o>
+ * The viewpoints are ordered by expected time: the turn from the end of the last sweep towards the next
+ * viewpoint, the drive there, then the turn back to heading 0, each timed by {@link TravelTime}. A nearest
+ * neighbour tour is improved by 2-opt until no reversal of a stretch of the tour shortens it. Drives are
+ * timed as straight lines, without the detours around zones.
+ *
+ * @author Erick Zhao
+ * @version 1.0
+ * @see ObjectSearch
+ */
+public class CoveragePlanner {
+
+	/**
+	 * Heading at which each sweep starts and ends, in degrees.
+	 */
+	public static final double SWEEP_START = 0, SWEEP_END = 90;
+	private static final double[] DIAGONAL_SHIFTS = { 0, 0.25, 0.5 };
+
+	private final double range;
+	private final ZoneIndex zones;
+	private final double low, high;
+	private final TravelTime travelTime;
+	private int skipped;
+	private double tourTime;
+
+	/**
+	 * Constructor for the planner.
+	 * @param range			the <code>double</code> distance in cm up to which a sweep detects blocks
+	 * @param zones			the <code>ZoneIndex</code> of the zones the robot must stay out of
+	 * @param wallMargin	the <code>double</code> width in cm of the strip along the walls the robot's center
+	 * 						must stay out of
+	 * @param wheelRadius	the <code>double</code> wheel radius in cm
+	 * @param track			the <code>double</code> distance between the wheels in cm
+	 */
+	public CoveragePlanner(double range, ZoneIndex zones, double wallMargin, double wheelRadius, double track) {
+		this.range = range;
+		this.zones = zones;
+		this.low = OccupancyGrid.MIN + wallMargin;
+		this.high = OccupancyGrid.MAX - wallMargin;
+		this.travelTime = new TravelTime(wheelRadius, track);
+	}
+
+	/**
+	 * Plans the viewpoints covering the arena and the order to visit them in.
+	 * @param startX		the <code>double</code> X coordinate of the robot in cm
+	 * @param startY		the <code>double</code> Y coordinate of the robot in cm
+	 * @param startHeading	the <code>double</code> heading of the robot in degrees
+	 * @return				the <code>double[][]</code> viewpoints in visiting order, each as {x, y} in cm
+	 */
+	public double[][] plan(double startX, double startY, double startHeading) {
+		double[][] points = viewpoints();
+		int count = points.length;
+		if (count == 0) {
+			tourTime = 0;
+			return points;
+		}
+
+		// cost[i][j] from viewpoint i to j, and the start as row count
+		double[][] cost = new double[count + 1][count];
+		for (int i = 0; i <= count; i++) {
+			double fromX = i < count ? points[i][0] : startX, fromY = i < count ? points[i][1] : startY;
+			double fromHeading = i < count ? SWEEP_END : startHeading;
+			for (int j = 0; j < count; j++) {
+				cost[i][j] = i == j ? 0 : legTime(fromX, fromY, fromHeading, points[j][0], points[j][1]);
+			}
+		}
+
+		int[] tour = nearestNeighbour(cost, count);
+		improve(tour, cost, count);
+
+		double[][] ordered = new double[count][];
+		tourTime = 0;
+		int previous = count;
+		for (int i = 0; i < count; i++) {
+			ordered[i] = points[tour[i]];
+			tourTime += cost[previous][tour[i]];
+			previous = tour[i];
+		}
+		return ordered;
+	}
+
+	/**
+	 * Getter for the number of squares left out of the last plan because no viewpoint for them could be found.
+	 * @return		the <code>int</code> number of squares
+	 */
+	public int getSkipped() {
+		return skipped;
+	}
+
+	/**
+	 * Getter for the expected time of the last plan's tour, without the sweeps themselves.
+	 * @return		the <code>double</code> time in s
+	 */
+	public double getTourTime() {
+		return tourTime;
+	}
+
+	/**
+	 * Expected time of a leg: turn towards the viewpoint, drive there, turn to the sweep's start.
+	 */
+	private double legTime(double fromX, double fromY, double fromHeading, double toX, double toY) {
+		double heading = Math.toDegrees(Math.atan2(toY - fromY, toX - fromX));
+		return travelTime.turn(fromHeading, heading) + travelTime.drive(Math.hypot(toX - fromX, toY - fromY))
+				+ travelTime.turn(heading, SWEEP_START);
+	}
+
+	/**
+	 * Lower left corners of the squares the sweeps must cover, moved out of the zones when needed.
+	 */
+	private double[][] viewpoints() {
+		double side = range / Math.sqrt(2);
+		int squares = (int) Math.ceil((high - low) / side);
+		double[][] points = new double[squares * squares][];
+		int count = 0;
+		skipped = 0;
+		for (int row = 0; row < squares; row++) {
+			for (int col = 0; col < squares; col++) {
+				double x = low + col * side, y = low + row * side;
+				double size = Math.min(side, Math.min(high - x, high - y));
+				if (covered(x, y, size))
+					continue;
+				double[] point = null;
+				for (int i = 0; i < DIAGONAL_SHIFTS.length && point == null; i++) {
+					double px = x + DIAGONAL_SHIFTS[i] * size, py = y + DIAGONAL_SHIFTS[i] * size;
+					if (zones.find(px, py) < 0)
+						point = new double[] { px, py };
+				}
+				if (point == null) {
+					skipped++;
+					continue;
+				}
+				points[count++] = point;
+			}
+		}
+		double[][] trimmed = new double[count][];
+		System.arraycopy(points, 0, trimmed, 0, count);
+		return trimmed;
+	}
+
+	/**
+	 * Tells whether a square lies inside the zones, from its corners and center.
+	 */
+	private boolean covered(double x, double y, double size) {
+		double e = 0.01;
+		return zones.find(x + e, y + e) >= 0 && zones.find(x + size - e, y + e) >= 0
+				&& zones.find(x + e, y + size - e) >= 0 && zones.find(x + size - e, y + size - e) >= 0
+				&& zones.find(x + size / 2, y + size / 2) >= 0;
+	}
+
+	private static int[] nearestNeighbour(double[][] cost, int count) {
+		int[] tour = new int[count];
+		boolean[] visited = new boolean[count];
+		int current = count;
+		for (int i = 0; i < count; i++) {
+			int next = -1;
+			for (int j = 0; j < count; j++) {
+				if (!visited[j] && (next < 0 || cost[current][j] < cost[current][next]))
+					next = j;
+			}
+			tour[i] = next;
+			visited[next] = true;
+			current = next;
+		}
+		return tour;
+	}
+
+	/**
+	 * 2-opt on the open tour from the start. The costs are not symmetric, since each leg depends on the
+	 * heading it starts from, so a reversed stretch is costed edge by edge.
+	 */
+	private static void improve(int[] tour, double[][] cost, int count) {
+		boolean improved = true;
+		while (improved) {
+			improved = false;
+			for (int i = 0; i < count - 1; i++) {
+				int before = i == 0 ? count : tour[i - 1];
+				for (int j = i + 1; j < count; j++) {
+					double forward = cost[before][tour[i]], reversed = cost[before][tour[j]];
+					for (int k = i; k < j; k++) {
+						forward += cost[tour[k]][tour[k + 1]];
+						reversed += cost[tour[k + 1]][tour[k]];
+					}
+					if (j + 1 < count) {
+						forward += cost[tour[j]][tour[j + 1]];
+						reversed += cost[tour[i]][tour[j + 1]];
+					}
+					if (reversed < forward - 1e-9) {
+						for (int a = i, b = j; a < b; a++, b--) {
+							int swap = tour[a];
+							tour[a] = tour[b];
+							tour[b] = swap;
+						}
+						improved = true;
+					}
+				}
+			}
+		}
+	}
+}
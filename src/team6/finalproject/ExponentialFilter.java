@@ -0,0 +1,41 @@
+package team6.finalproject;
+
+/**
+ * Exponential smoothing: each output moves a fraction of the way from the last output to the new reading.
+ * <o>
+ * Cheap and smooth, but it spreads out every change over about <code>1 / weight</code> readings, and
+ * spikes leak through it, so it belongs after the outlier rejection in a chain.
+ *
+ * @author Erick Zhao
+ * @version 1.0
+ */
+public class ExponentialFilter implements SampleFilter {
+
+	private final float weight;
+	private float value;
+	private boolean started = false;
+
+	/**
+	 * Constructor for the filter.
+	 * @param weight	the <code>float</code> weight of the new reading, from 0 (never moves) to 1 (no smoothing)
+	 */
+	public ExponentialFilter(float weight) {
+		this.weight = weight;
+	}
+
+	@Override
+	public float filter(float sample) {
+		if (!started) {
+			value = sample;
+			started = true;
+		} else {
+			value += weight * (sample - value);
+		}
+		return value;
+	}
+
+	@Override
+	public void reset() {
+		started = false;
+	}
+}
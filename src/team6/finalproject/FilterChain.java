@@ -0,0 +1,35 @@
+package team6.finalproject;
+
+/**
+ * Filters applied one after the other, each to the output of the one before.
+ *
+ * @author Erick Zhao
+ * @version 1.0
+ */
+public class FilterChain implements SampleFilter {
+
+	private final SampleFilter[] filters;
+
+	/**
+	 * Constructor for the chain.
+	 * @param filters	the <code>SampleFilter</code>s, in the order the readings go through them
+	 */
+	public FilterChain(SampleFilter... filters) {
+		this.filters = filters.clone();
+	}
+
+	@Override
+	public float filter(float sample) {
+		for (int i = 0; i < filters.length; i++) {
+			sample = filters[i].filter(sample);
+		}
+		return sample;
+	}
+
+	@Override
+	public void reset() {
+		for (int i = 0; i < filters.length; i++) {
+			filters[i].reset();
+		}
+	}
+}
@@ -0,0 +1,52 @@
+package team6.finalproject;
+
+/**
+ * Filtered view of an {@link UltrasonicPoller}, for one consumer.
+ * <o>
+ * Each reading goes through the filter once, when it is new: asking again before the poller has fetched
+ * another reading returns the last filtered value instead of feeding the same reading in twice, so the
+ * filter's window spans real readings however fast the consumer loops. Each consumer has its own
+ * <code>FilteredPoller</code>, since a filter's state belongs to the stream it has seen.
+ *
+ * @author Erick Zhao
+ * @version 1.0
+ * @see SampleFilter
+ */
+public class FilteredPoller {
+
+	private final UltrasonicPoller poller;
+	private final SampleFilter filter;
+	private long lastSampleTime = 0;
+	private float value = Float.NaN;
+
+	/**
+	 * Constructor for the filtered view.
+	 * @param poller	the <code>UltrasonicPoller</code> to read from
+	 * @param filter	the <code>SampleFilter</code> to put the readings through
+	 */
+	public FilteredPoller(UltrasonicPoller poller, SampleFilter filter) {
+		this.poller = poller;
+		this.filter = filter;
+	}
+
+	/**
+	 * Gets the filtered distance, taking in the poller's reading if it is new.
+	 * @return		the <code>float</code> filtered distance in cm
+	 */
+	public synchronized float getDistance() {
+		long sampleTime = poller.getSampleTime();
+		if (sampleTime != lastSampleTime || Float.isNaN(value)) {
+			lastSampleTime = sampleTime;
+			value = filter.filter(poller.getDistance());
+		}
+		return value;
+	}
+
+	/**
+	 * Forgets the readings taken in so far, e.g. after the sensor was disabled for a while.
+	 */
+	public synchronized void reset() {
+		filter.reset();
+		value = Float.NaN;
+	}
+}
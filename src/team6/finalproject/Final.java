@@ -51,10 +51,13 @@ public class Final {
 	 public static final double WHEEL_RADIUS = 2.15; //needs to be changed for robots physical configs
 	 public static final double TRACK = 15.6; //needs to be changed for robots physical configs
 	 private static final double LStoWB = 7.5; //Light Sensor to Wheel Base value
+	 private static final double UStoWB = 8.0; //Ultrasonic Sensors to Wheel Base value
+	 private static final int ODOMETER_PERIOD = 10; //Odometer update period in ms
 	 
 	public static void main(String[] args) {
 		
 		Odometer odo = new Odometer(leftMotor, rightMotor, 30, true, WHEEL_RADIUS, TRACK);
+		odo.setIntegration(Odometer.Integration.EXACT_ARC, ODOMETER_PERIOD);
 		
 		//Bottom US : Object recognition and localization
 		@SuppressWarnings("resource")
@@ -94,7 +97,14 @@ public class Final {
 		LCDInfo lcd = new LCDInfo(odo,uspoll,topus); 
 		USLocalizer usloc = new USLocalizer(odo,topus);
 		LightLocalizer lightloc = new LightLocalizer(odo,LStoWB);
-		OdometryCorrection odoCorrection = new OdometryCorrection(odo); 
+		ParticleLocalizer particleloc = new ParticleLocalizer(odo);
+		particleloc.addSensor(uspoll, UStoWB);
+		particleloc.addSensor(topus, UStoWB);
+		OdometryCalibrator calibrator = new OdometryCalibrator(odo);
+		calibrator.load();
+		lightloc.setCalibrator(calibrator);
+		PoseEstimator estimator = new PoseEstimator(odo, uspoll);
+		OdometryCorrection odoCorrection = new OdometryCorrection(odo, calibrator, estimator); 
 		
 		//Initialize Obstacle Avoidance
 		ObjectAvoidance oa = new ObjectAvoidance(odo, usMotor, topus);
@@ -133,14 +143,27 @@ public class Final {
 		//We don't yet have the claw implemented, so we force it to stay at 0.
 		clawMotor.rotate(0);
 		
-		//Do US Localization
-		usloc.doLocalization();
-		
-		//Do LIGHT Localization
-		
-		lightloc.doLocalization();
+		//Try to localize in a single rotation with the particle filter,
+		//and fall back on the US + LIGHT localization if it does not converge
+		if (particleloc.doLocalization()) {
+			Navigation localizationNav = new Navigation(odo);
+			localizationNav.travelTo(0, 0);
+			localizationNav.turnTo(0, true);
+		} else {
+			//Do US Localization
+			usloc.doLocalization();
+			
+			//Do LIGHT Localization
+			
+			lightloc.doLocalization();
+		}
 		Sound.beepSequenceUp();
 		// END LOCALIZATION
+		//The light localizer is done with the light poller, so line crossings can now be used
+		//to correct the odometer and calibrate the wheels
+		estimator.reset(1.0, 2.0);
+		estimator.start();
+		odoCorrection.start();
 		oa.initiate();
 		// BEGIN ALGORITHM
 		Navigation nav = new Navigation(odo);
@@ -148,6 +171,7 @@ public class Final {
 		ObjectSearch search = new ObjectSearch(odo, nav, uspoll,oa,clawMotor,countdown);
 		//Do ALGORITHM
 		search.doSearch();
+		calibrator.save();
 		
 		while (Button.waitForAnyPress() != Button.ID_ESCAPE);
 		System.exit(0);	
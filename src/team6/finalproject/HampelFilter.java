@@ -0,0 +1,49 @@
+package team6.finalproject;
+
+/**
+ * Outlier rejection: a reading too far from the median of the last few is replaced by that median.
+ * <o>
+ * "Too far" is more than a number of standard deviations, estimated robustly as 1.4826 times the median
+ * absolute deviation of the window. Readings that fit are passed through unchanged, so unlike the
+ * {@link MedianFilter} this adds no delay to real changes, only to the readings it rejects. The window
+ * includes the new reading, so a change that lasts more than half the window is let through.
+ *
+ * @author Erick Zhao
+ * @version 1.0
+ */
+public class HampelFilter implements SampleFilter {
+
+	private static final float GAUSSIAN_SCALE = 1.4826f; // standard deviation per median absolute deviation
+
+	private final SlidingWindow window;
+	private final float threshold;
+	private final float minDeviation;
+
+	/**
+	 * Constructor for the filter.
+	 * @param size			the <code>int</code> number of readings the median is taken over
+	 * @param threshold		the <code>float</code> number of standard deviations beyond which a reading is rejected
+	 * @param minDeviation	the <code>float</code> smallest standard deviation assumed, so a steady signal does
+	 * 						not turn every bit of sensor noise into an outlier
+	 */
+	public HampelFilter(int size, float threshold, float minDeviation) {
+		this.window = new SlidingWindow(size);
+		this.threshold = threshold;
+		this.minDeviation = minDeviation;
+	}
+
+	@Override
+	public float filter(float sample) {
+		window.add(sample);
+		float median = window.median();
+		float deviation = Math.max(minDeviation, GAUSSIAN_SCALE * window.medianDeviation());
+		if (Math.abs(sample - median) > threshold * deviation)
+			return median;
+		return sample;
+	}
+
+	@Override
+	public void reset() {
+		window.clear();
+	}
+}
@@ -21,6 +21,7 @@ public class LightLocalizer
 	private double xDist;
 	private double yDist;
 	private float speed=250;
+	private OdometryCalibrator calibrator;
 
 	/**
 	 * Constructor for the Light Localizer
@@ -36,6 +37,17 @@ public class LightLocalizer
 		this.saveThetas = new double[4];
 	}
 
+	/**
+	 * Lets the localizer measure the track for a calibrator. When the calibrator still needs a track sample,
+	 * the localization spins on to a fifth line, the same line as the first one, so that the wheel rotations
+	 * for exactly one full turn are known.
+	 * @param calibrator	the <code>OdometryCalibrator</code> to feed
+	 */
+	public void setCalibrator(OdometryCalibrator calibrator)
+	{
+		this.calibrator = calibrator;
+	}
+
 	/**
 	 * Localizes the robot using the light sensor by detecting the 4 black lines, 
 	 * getting the odometer angles at the point each line is detected,
@@ -69,13 +81,30 @@ public class LightLocalizer
 		navigate.goForward(-LStoWB);
 		
 		//Get the angle readings of the four lines on which the robot is positioned
+		//and, if a calibration is needed, the tacho counts when crossing the first line twice
+		boolean calibrating = calibrator != null && calibrator.needsTrackSample();
+		int lines = calibrating ? 5 : 4;
+		double[] firstTachos = new double[2];
+		double[] lastTachos = new double[2];
 		navigate.setSpeeds(-speed, speed);
-		while(lineCount < 4)
+		while(lineCount < lines)
 		{
 			if(LightPoller.blackLine())
 			{
 				lineCrossed = true;
-				saveThetas[lineCount] = odo.getAng();
+				long sampleTime = LightPoller.getSampleTime();
+				if (lineCount < 4)
+				{
+					saveThetas[lineCount] = odo.poseAt(sampleTime).getAng();
+				}
+				if (lineCount == 0)
+				{
+					odo.tachoAt(sampleTime, firstTachos);
+				}
+				else if (lineCount == 4)
+				{
+					odo.tachoAt(sampleTime, lastTachos);
+				}
 				lineCount++;
 			}
 			//If a line is crossed, keep recording samples until the angle is no longer crossed
@@ -97,6 +126,10 @@ public class LightLocalizer
 		 * 
 		 */
 		navigate.setSpeeds(0, 0);
+		if (calibrating)
+		{
+			calibrator.recordRotation((int)(lastTachos[0] - firstTachos[0]), (int)(lastTachos[1] - firstTachos[1]), 360);
+		}
 		xDist = -this.LStoWB * Math.cos(Math.toRadians(Math.abs(saveThetas[1] - saveThetas[3]) / 2));
 		yDist = -this.LStoWB * Math.cos(Math.toRadians(Math.abs(saveThetas[0] - saveThetas[2]) / 2));
 		
@@ -17,7 +17,8 @@ public class LightPoller extends PausableTimerListener{
 	
 	private SampleProvider light;
 	private float[] lightData;
-	private static float lightValue;
+	private static volatile float lightValue;
+	private static volatile long sampleTime;
 	private static float currentLight;
 	private static float previousLight = -1;
 	private static double significantPercentThreshold = 20;
@@ -37,7 +38,10 @@ public class LightPoller extends PausableTimerListener{
 	 */
 	public void timedOut() {
 		light.fetchSample(lightData,0);						// acquire data
+		long time=System.nanoTime();
+		// reading first, so a new sample time always comes with its reading
 		lightValue=lightData[0]*100;						// extract from buffer, cast to int
+		sampleTime=time;
 	}
 	
 	/**
@@ -65,4 +69,13 @@ public class LightPoller extends PausableTimerListener{
 	public static float getReading(){
 		return lightValue;
 	}
+	
+	/**
+	 * Fetches the time at which the current light sensor reading was sampled.
+	 * Can be passed to {@link Odometer#poseAt(long)} to find where the robot was when a line was seen.
+	 * @return		the <code>long</code> <code>System.nanoTime()</code> of the current reading
+	 */
+	public static long getSampleTime(){
+		return sampleTime;
+	}
 }
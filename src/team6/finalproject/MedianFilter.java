@@ -0,0 +1,34 @@
+package team6.finalproject;
+
+/**
+ * Median of the last few readings.
+ * <o>
+ * Removes spikes and dropouts shorter than half the window, and keeps the edges of a step sharp, at the
+ * cost of delaying them by half the window.
+ *
+ * @author Erick Zhao
+ * @version 1.0
+ */
+public class MedianFilter implements SampleFilter {
+
+	private final SlidingWindow window;
+
+	/**
+	 * Constructor for the filter.
+	 * @param size		the <code>int</code> number of readings the median is taken over, best odd
+	 */
+	public MedianFilter(int size) {
+		this.window = new SlidingWindow(size);
+	}
+
+	@Override
+	public float filter(float sample) {
+		window.add(sample);
+		return window.median();
+	}
+
+	@Override
+	public void reset() {
+		window.clear();
+	}
+}
@@ -0,0 +1,147 @@
+package team6.finalproject;
+
+/**
+ * Decides what the robot still has time for before the end of the match.
+ * <o>
+ * Every decision compares the match time left on the {@link CountdownTimer} with the expected time of
+ * the task plus the time to get home from where the task ends, plus {@link #RESERVE} for the unexpected.
+ * Trips are planned with the same <code>PathPlanner</code> the detours use and timed by {@link TravelTime},
+ * then scaled by how long the drives have really taken so far, since the profiles do not account for
+ * the turns on the way, the obstacles avoided or the motors lagging.
+ *
+ * @author Erick Zhao
+ * @version 1.0
+ * @see ObjectSearch
+ */
+public class MissionScheduler {
+
+	/**
+	 * Time in s kept aside on top of every estimate.
+	 */
+	public static final double RESERVE = 10;
+	private static final double DEFAULT_SWEEP_TIME = 8; //s, until one is measured
+	private static final double MEASURE_WEIGHT = 0.3; //weight of the newest measurement in the averages
+	private static final double MIN_SCALE = 1, MAX_SCALE = 3;
+
+	private final CountdownTimer countdown;
+	private final PathPlanner planner;
+	private final Odometer odo;
+	private final TravelTime travelTime;
+	private final double homeX, homeY;
+	private double scale = 1.2;
+	private double sweepTime = DEFAULT_SWEEP_TIME;
+
+	/**
+	 * Constructor for the scheduler.
+	 * @param countdown		the <code>CountdownTimer</code> of the match
+	 * @param planner		the <code>PathPlanner</code> used to plan trips around the zones
+	 * @param odo			the <code>Odometer</code> of the robot
+	 * @param homeX			the <code>double</code> X coordinate to be back at by the end, in cm
+	 * @param homeY			the <code>double</code> Y coordinate to be back at by the end, in cm
+	 */
+	public MissionScheduler(CountdownTimer countdown, PathPlanner planner, Odometer odo, double homeX, double homeY) {
+		this.countdown = countdown;
+		this.planner = planner;
+		this.odo = odo;
+		this.travelTime = new TravelTime(odo.getWheelRadius(), odo.getTrack());
+		this.homeX = homeX;
+		this.homeY = homeY;
+	}
+
+	/**
+	 * Expected time of a trip between two points, around the zones.
+	 * @param fromX		the <code>double</code> X coordinate of the start in cm
+	 * @param fromY		the <code>double</code> Y coordinate of the start in cm
+	 * @param heading	the <code>double</code> heading at the start in degrees
+	 * @param toX		the <code>double</code> X coordinate of the end in cm
+	 * @param toY		the <code>double</code> Y coordinate of the end in cm
+	 * @return			the <code>double</code> time in s, scaled by the measured speeds
+	 */
+	public double tripTime(double fromX, double fromY, double heading, double toX, double toY) {
+		double[][] path = planner.plan(fromX, fromY, toX, toY);
+		if (path == null) {
+			path = new double[][] { { toX, toY } };
+		}
+		return getScale() * travelTime.path(fromX, fromY, heading, path);
+	}
+
+	/**
+	 * Expected time to get home from where the robot is.
+	 * @return		the <code>double</code> time in s
+	 */
+	public double getHomeTime() {
+		Pose pose = odo.getPose();
+		return tripTime(pose.getX(), pose.getY(), pose.getAng(), homeX, homeY);
+	}
+
+	/**
+	 * Tells whether it is time to head home.
+	 * @return		<code>true</code> if getting home now leaves no more than the reserve
+	 */
+	public boolean shouldReturn() {
+		return getHomeTime() + RESERVE >= countdown.getRemaining();
+	}
+
+	/**
+	 * Tells whether there is time to drive to a viewpoint, sweep there and still get home.
+	 * @param x		the <code>double</code> X coordinate of the viewpoint in cm
+	 * @param y		the <code>double</code> Y coordinate of the viewpoint in cm
+	 * @return		<code>true</code> if the sweep fits in the time left
+	 */
+	public boolean canSweepAt(double x, double y) {
+		Pose pose = odo.getPose();
+		double time = tripTime(pose.getX(), pose.getY(), pose.getAng(), x, y) + getSweepTime()
+				+ tripTime(x, y, CoveragePlanner.SWEEP_END, homeX, homeY);
+		return time + RESERVE < countdown.getRemaining();
+	}
+
+	/**
+	 * Tells whether there is time to bring a block to a zone and still get home.
+	 * @param x		the <code>double</code> X coordinate of the drop point in cm
+	 * @param y		the <code>double</code> Y coordinate of the drop point in cm
+	 * @return		<code>true</code> if the delivery fits in the time left
+	 */
+	public boolean canDeliverTo(double x, double y) {
+		Pose pose = odo.getPose();
+		double heading = Math.toDegrees(Math.atan2(y - pose.getY(), x - pose.getX()));
+		double time = tripTime(pose.getX(), pose.getY(), pose.getAng(), x, y)
+				+ tripTime(x, y, heading, homeX, homeY);
+		return time + RESERVE < countdown.getRemaining();
+	}
+
+	/**
+	 * Records how long a trip really took, to correct the next estimates.
+	 * @param estimated		the <code>double</code> time in s {@link #tripTime} expected, already scaled
+	 * @param measured		the <code>double</code> time in s it took
+	 */
+	public synchronized void recordTrip(double estimated, double measured) {
+		if (estimated <= 0 || measured <= 0)
+			return;
+		double ratio = scale * measured / estimated;
+		scale = Math.max(MIN_SCALE, Math.min(MAX_SCALE, (1 - MEASURE_WEIGHT) * scale + MEASURE_WEIGHT * ratio));
+	}
+
+	/**
+	 * Records how long a sweep took, including inspecting what it found.
+	 * @param measured		the <code>double</code> time in s
+	 */
+	public synchronized void recordSweep(double measured) {
+		sweepTime = (1 - MEASURE_WEIGHT) * sweepTime + MEASURE_WEIGHT * measured;
+	}
+
+	/**
+	 * Getter for the factor applied to the profiled trip times.
+	 * @return		the <code>double</code> ratio of measured to profiled times
+	 */
+	public synchronized double getScale() {
+		return scale;
+	}
+
+	/**
+	 * Getter for the expected time of a sweep.
+	 * @return		the <code>double</code> time in s
+	 */
+	public synchronized double getSweepTime() {
+		return sweepTime;
+	}
+}
@@ -0,0 +1,124 @@
+package team6.finalproject;
+
+/**
+ * Trapezoidal velocity profile for a move of the wheels: accelerate, cruise, then decelerate to stop on target.
+ * <o>
+ * Distances and speeds are in degrees of wheel rotation, so one profile serves both straight moves and
+ * turns on the spot; {@link #forDistance(double, double)} and {@link #forTurn(double, double, double)}
+ * do the conversion. The profile is used in closed loop: on every control step the caller passes the
+ * distance left, and the speed is capped so the robot can still stop within it, i.e.
+ * <code>sqrt(2 * deceleration * remaining)</code>. This brakes ahead of the target instead of slamming
+ * the motors to a stop at it.
+ *
+ * @author Erick Zhao
+ * @version 1.0
+ * @see Navigation
+ */
+public class MotionProfile {
+
+	private double maxSpeed, acceleration, minSpeed;
+	private double accelDistance, cruiseDistance, decelDistance, peakSpeed;
+	private long startTime;
+
+	/**
+	 * Constructor for a profile.
+	 * @param maxSpeed		the <code>double</code> cruising speed in deg/s
+	 * @param acceleration	the <code>double</code> acceleration and deceleration in deg/s^2
+	 * @param minSpeed		the <code>double</code> lowest speed in deg/s, so the last few degrees are still covered
+	 */
+	public MotionProfile(double maxSpeed, double acceleration, double minSpeed) {
+		this.maxSpeed = maxSpeed;
+		this.acceleration = acceleration;
+		this.minSpeed = minSpeed;
+	}
+
+	/**
+	 * Plans a move and starts timing it.
+	 * @param distance		the <code>double</code> length of the move in degrees of wheel rotation
+	 */
+	public void start(double distance) {
+		distance = Math.abs(distance);
+		// triangle profile if the move is too short to reach the cruising speed
+		peakSpeed = Math.min(maxSpeed, Math.sqrt(acceleration * distance));
+		accelDistance = peakSpeed * peakSpeed / (2 * acceleration);
+		decelDistance = accelDistance;
+		cruiseDistance = distance - accelDistance - decelDistance;
+		startTime = System.currentTimeMillis();
+	}
+
+	/**
+	 * Speed to command now, given the distance left.
+	 * @param remaining		the <code>double</code> distance left in degrees of wheel rotation
+	 * @return				the <code>float</code> speed in deg/s, never below the minimum speed
+	 */
+	public float speed(double remaining) {
+		double elapsed = (System.currentTimeMillis() - startTime) / 1000.0;
+		double speed = Math.min(maxSpeed, minSpeed + acceleration * elapsed);
+		speed = Math.min(speed, Math.sqrt(2 * acceleration * Math.abs(remaining)));
+		return (float) Math.max(speed, minSpeed);
+	}
+
+	/**
+	 * Distance needed to stop from a given speed.
+	 * @param speed		the <code>double</code> speed in deg/s
+	 * @return			the <code>double</code> stopping distance in degrees of wheel rotation
+	 */
+	public double stoppingDistance(double speed) {
+		return speed * speed / (2 * acceleration);
+	}
+
+	/**
+	 * Expected duration of the move planned by {@link #start(double)}.
+	 * @return		the <code>double</code> duration in s
+	 */
+	public double getDuration() {
+		if (peakSpeed == 0)
+			return 0;
+		return 2 * peakSpeed / acceleration + cruiseDistance / peakSpeed;
+	}
+
+	/**
+	 * Getter for the acceleration segment of the planned move.
+	 * @return		the <code>double</code> distance in degrees of wheel rotation
+	 */
+	public double getAccelDistance() {
+		return accelDistance;
+	}
+
+	/**
+	 * Getter for the cruising segment of the planned move.
+	 * @return		the <code>double</code> distance in degrees of wheel rotation
+	 */
+	public double getCruiseDistance() {
+		return cruiseDistance;
+	}
+
+	/**
+	 * Getter for the deceleration segment of the planned move.
+	 * @return		the <code>double</code> distance in degrees of wheel rotation
+	 */
+	public double getDecelDistance() {
+		return decelDistance;
+	}
+
+	/**
+	 * Converts a distance travelled by the robot to degrees of wheel rotation.
+	 * @param radius	the <code>double</code> wheel radius in cm
+	 * @param distance	the <code>double</code> distance in cm
+	 * @return			the <code>double</code> wheel rotation in degrees
+	 */
+	public static double forDistance(double radius, double distance) {
+		return distance * 180.0 / (Math.PI * radius);
+	}
+
+	/**
+	 * Converts a turn on the spot to degrees of rotation of each wheel.
+	 * @param radius	the <code>double</code> wheel radius in cm
+	 * @param width		the <code>double</code> track in cm
+	 * @param angle		the <code>double</code> angle of the turn in degrees
+	 * @return			the <code>double</code> wheel rotation in degrees
+	 */
+	public static double forTurn(double radius, double width, double angle) {
+		return width * angle / 2 / radius;
+	}
+}
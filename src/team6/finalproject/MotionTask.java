@@ -0,0 +1,136 @@
+package team6.finalproject;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Handle on a move started with one of the asynchronous {@link Navigation} methods, such as
+ * {@link Navigation#travelToAsync(double, double)}.
+ * <o>
+ * The move runs on its own thread, so the caller can keep sensing or planning while the robot drives, then
+ * wait for the move with {@link #await(long)} or be called back with a {@link Listener}. A move can be
+ * cancelled from any thread: the motors are stopped right away and the move ends at its next control step.
+ *
+ * @author Erick Zhao
+ * @version 1.0
+ */
+public class MotionTask {
+
+	/**
+	 * Callback for the end of a move.
+	 */
+	public interface Listener {
+		/**
+		 * Called once the move has ended, reached or not, on the thread that ran it.
+		 * @param task		the <code>MotionTask</code> that ended
+		 */
+		void motionDone(MotionTask task);
+	}
+
+	private final Navigation nav;
+	private volatile boolean cancelled = false;
+	private boolean done = false, reached = false; // guarded by this
+	private List<Listener> listeners = new ArrayList<Listener>();
+
+	/**
+	 * Constructor for a task, only created by <code>Navigation</code>.
+	 * @param nav		the <code>Navigation</code> running the move
+	 */
+	MotionTask(Navigation nav) {
+		this.nav = nav;
+	}
+
+	/**
+	 * Cancels the move and stops the motors. Does nothing if the move has already ended.
+	 */
+	public void cancel() {
+		synchronized (this) {
+			if (done)
+				return;
+			cancelled = true;
+		}
+		nav.stopMotors();
+	}
+
+	/**
+	 * Tells whether {@link #cancel()} was called before the move ended.
+	 * @return		<code>true</code> if the move was cancelled
+	 */
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	/**
+	 * Tells whether the move has ended.
+	 * @return		<code>true</code> once the move has ended, reached or not
+	 */
+	public synchronized boolean isDone() {
+		return done;
+	}
+
+	/**
+	 * Tells whether the move ended on its target.
+	 * @return		<code>true</code> if the move ended without being cancelled
+	 */
+	public synchronized boolean isReached() {
+		return reached;
+	}
+
+	/**
+	 * Waits for the move to end.
+	 * @throws InterruptedException 	if the calling thread is interrupted while waiting
+	 */
+	public synchronized void await() throws InterruptedException {
+		while (!done) {
+			this.wait();
+		}
+	}
+
+	/**
+	 * Waits for the move to end, for at most a given time.
+	 * @param timeout		the <code>long</code> longest time to wait in ms
+	 * @return				<code>true</code> if the move has ended
+	 * @throws InterruptedException 	if the calling thread is interrupted while waiting
+	 */
+	public synchronized boolean await(long timeout) throws InterruptedException {
+		long end = System.currentTimeMillis() + timeout;
+		long left = timeout;
+		while (!done && left > 0) {
+			this.wait(left);
+			left = end - System.currentTimeMillis();
+		}
+		return done;
+	}
+
+	/**
+	 * Adds a callback for the end of the move. If the move has already ended, the callback is called right away.
+	 * @param listener		the <code>Listener</code> to call
+	 */
+	public void addListener(Listener listener) {
+		synchronized (this) {
+			if (!done) {
+				listeners.add(listener);
+				return;
+			}
+		}
+		listener.motionDone(this);
+	}
+
+	/**
+	 * Marks the move as ended, wakes up the waiting threads and calls the listeners.
+	 * @param reached		<code>true</code> if the robot got to the target
+	 */
+	void finish(boolean reached) {
+		List<Listener> toCall;
+		synchronized (this) {
+			this.done = true;
+			this.reached = reached && !cancelled;
+			this.notifyAll();
+			toCall = listeners;
+			listeners = new ArrayList<Listener>();
+		}
+		for (Listener listener : toCall) {
+			listener.motionDone(this);
+		}
+	}
+}
@@ -0,0 +1,179 @@
+package team6.finalproject;
+
+import lejos.hardware.motor.EV3LargeRegulatedMotor;
+import lejos.robotics.RegulatedMotor;
+
+/**
+ * Command layer between the navigation code and the two drive motors. Remembers what each motor was last told
+ * to do, and only sends the commands that change something.
+ * <o>
+ * The control loops set the wheel speeds on every iteration, mostly to the values already set. Each of those
+ * calls goes down to the motor regulator, so skipping them leaves more CPU to the regulator threads. Both
+ * motors are synchronized, and whatever does get sent reaches them together.
+ * <o>
+ * There is a single commander per pair of motors, shared through {@link Odometer#getCommander()}, so every
+ * <code>Navigation</code> sees the same cached state. Code that moves the motors any other way, such as
+ * <code>rotate()</code>, must call {@link #invalidate()} afterwards.
+ *
+ * @author Erick Zhao
+ * @version 1.0
+ * @see Navigation
+ */
+public class MotorCommander {
+
+	private static final float SPEED_TOLERANCE = 1.0f; //deg/s, smaller changes are not sent
+	private static final int FORWARD = 1, BACKWARD = -1, STOPPED = 0;
+
+	private EV3LargeRegulatedMotor leftMotor, rightMotor;
+	private float leftSpeed, rightSpeed;
+	private int leftDirection, rightDirection;
+	private boolean known = false;
+	private int issued = 0, suppressed = 0;
+
+	/**
+	 * Constructor for the commander. Synchronizes both motors.
+	 * @param leftMotor 		the <code>EV3LargeRegulatedMotor</code> that is our left motor
+	 * @param rightMotor 		the <code>EV3LargeRegulatedMotor</code> that is our right motor
+	 */
+	public MotorCommander(EV3LargeRegulatedMotor leftMotor, EV3LargeRegulatedMotor rightMotor) {
+		this.leftMotor = leftMotor;
+		this.rightMotor = rightMotor;
+		this.leftMotor.synchronizeWith(new RegulatedMotor[] { this.rightMotor });
+	}
+
+	/**
+	 * Sets both motor speeds, a negative speed running the motor backward. Only the changes are sent.
+	 * @param lSpd 		a <code>float</code> representing left motor speed
+	 * @param rSpd 		a <code>float</code> representing right motor speed
+	 */
+	public synchronized void setSpeeds(float lSpd, float rSpd) {
+		int lDir = lSpd < 0 ? BACKWARD : FORWARD;
+		int rDir = rSpd < 0 ? BACKWARD : FORWARD;
+		float lMag = Math.abs(lSpd), rMag = Math.abs(rSpd);
+
+		boolean lSpeedChanged = !known || Math.abs(lMag - leftSpeed) >= SPEED_TOLERANCE;
+		boolean rSpeedChanged = !known || Math.abs(rMag - rightSpeed) >= SPEED_TOLERANCE;
+		boolean lDirChanged = !known || lDir != leftDirection;
+		boolean rDirChanged = !known || rDir != rightDirection;
+
+		int changes = (lSpeedChanged ? 1 : 0) + (rSpeedChanged ? 1 : 0) + (lDirChanged ? 1 : 0) + (rDirChanged ? 1 : 0);
+		issued += changes;
+		suppressed += 4 - changes;
+		if (changes == 0)
+			return;
+
+		leftMotor.startSynchronization();
+		if (lSpeedChanged) {
+			leftMotor.setSpeed(lMag);
+			leftSpeed = lMag;
+		}
+		if (rSpeedChanged) {
+			rightMotor.setSpeed(rMag);
+			rightSpeed = rMag;
+		}
+		if (lDirChanged) {
+			if (lDir == BACKWARD)
+				leftMotor.backward();
+			else
+				leftMotor.forward();
+			leftDirection = lDir;
+		}
+		if (rDirChanged) {
+			if (rDir == BACKWARD)
+				rightMotor.backward();
+			else
+				rightMotor.forward();
+			rightDirection = rDir;
+		}
+		leftMotor.endSynchronization();
+		known = true;
+	}
+
+	/**
+	 * Starts rotating both motors by a given angle at the same time, and returns right away; poll
+	 * {@link #isMoving()} for the end of the rotation. While the motors turn, the cached state is unknown, so
+	 * the next {@link #stop()} or {@link #setSpeeds(float, float)} always reaches them.
+	 * @param leftAngle		the <code>int</code> rotation of the left motor in degrees
+	 * @param rightAngle	the <code>int</code> rotation of the right motor in degrees
+	 * @param speed			the <code>float</code> speed of both motors in deg/s
+	 */
+	public synchronized void rotate(int leftAngle, int rightAngle, float speed) {
+		issued += 4;
+		leftMotor.startSynchronization();
+		leftMotor.setSpeed(speed);
+		rightMotor.setSpeed(speed);
+		leftMotor.rotate(leftAngle, true);
+		rightMotor.rotate(rightAngle, true);
+		leftMotor.endSynchronization();
+		known = false;
+	}
+
+	/**
+	 * Tells whether either motor is still turning, such as during a {@link #rotate(int, int, float)}.
+	 * @return		<code>true</code> if a motor is moving
+	 */
+	public boolean isMoving() {
+		return leftMotor.isMoving() || rightMotor.isMoving();
+	}
+
+	/**
+	 * Stops both motors at the same time, unless they are already stopped.
+	 */
+	public synchronized void stop() {
+		if (known && leftDirection == STOPPED && rightDirection == STOPPED) {
+			suppressed += 2;
+			return;
+		}
+		issued += 2;
+		leftMotor.startSynchronization();
+		leftMotor.stop(true);
+		rightMotor.stop(true);
+		leftMotor.endSynchronization();
+		leftDirection = STOPPED;
+		rightDirection = STOPPED;
+	}
+
+	/**
+	 * Stops both motors then lets them float.
+	 */
+	public synchronized void flt() {
+		issued += 4;
+		leftMotor.stop();
+		rightMotor.stop();
+		leftMotor.flt(true);
+		rightMotor.flt(true);
+		known = false;
+	}
+
+	/**
+	 * Forgets the cached state, so the next command is sent in full. To be called after moving the motors
+	 * without going through the commander.
+	 */
+	public synchronized void invalidate() {
+		known = false;
+	}
+
+	/**
+	 * Getter for the number of motor commands sent.
+	 * @return		the <code>int</code> count since the last {@link #resetCounts()}
+	 */
+	public synchronized int getIssued() {
+		return issued;
+	}
+
+	/**
+	 * Getter for the number of motor commands skipped because they would not change anything.
+	 * @return		the <code>int</code> count since the last {@link #resetCounts()}
+	 */
+	public synchronized int getSuppressed() {
+		return suppressed;
+	}
+
+	/**
+	 * Resets both command counts.
+	 */
+	public synchronized void resetCounts() {
+		issued = 0;
+		suppressed = 0;
+	}
+}
@@ -1,5 +1,7 @@
 package team6.finalproject;
 
+import java.util.BitSet;
+
 import lejos.hardware.motor.EV3LargeRegulatedMotor;
 
 
@@ -8,6 +10,13 @@ import lejos.hardware.motor.EV3LargeRegulatedMotor;
  * Class that uses the {@link #odometer} class to create and travel along a coordinate plane.
  * <o>
  * Creates a (0,0) with localization and uses hardcoded measurements to travel along the competition surface
+ * <o>
+ * When started as a thread, works through a bounded queue of waypoints. The thread sleeps while the queue is
+ * empty and is woken up by {@link #enqueue(double, double)}, so an idle navigator costs no CPU.
+ * <o>
+ * Speeds go through the {@link MotorCommander} shared by the odometer, which only sends actual changes and
+ * starts them on both wheels at once. Moves to a target follow a
+ * {@link MotionProfile}, which slows the robot down ahead of the target rather than stopping it abruptly.
  * 
  * @author  Kael Du, Andrei Ungur
  * @version 1.0
@@ -17,13 +26,47 @@ public class Navigation extends Thread
 {
 	final static int FAST = 300, SLOW = 200, ACCELERATION = 4000; 
 	final static double DEG_ERR = 3.0, CM_ERR = 1.0;
+	final static double TURN_ERR = 1.0; //deg, heading error at which a turn is done
+	final static double BULK_TURN_MIN = 15; //deg, turns above this start with a tacho rotate()
+	final static double TURN_GAIN = 4.0; //deg/s of wheel speed per degree of wheel rotation left
+	private static final int TURN_PERIOD = 5; //ms between two turn speed updates
+	private static final int TURN_TIMEOUT = 3000; //ms allowed for the closed-loop finish
 	final static double ANG_ERR = 10;
+	final static int CRUISE = 400, CREEP = 60; //deg/s, fastest and slowest profiled speeds
+	final static int PROFILE_ACCELERATION = 1000; //deg/s^2, well under ACCELERATION so braking is planned
+	final static double FULL_SPEED_CLEARANCE = 30.48; //cm, clearance needed to drive at CRUISE
+	private static final int QUEUE_SIZE = 16;
+	private static final int CONTROL_PERIOD = 10; //ms between two steering updates
 	private Odometer odometer;
 	private EV3LargeRegulatedMotor leftMotor, rightMotor;
+	private MotorCommander commander;
 	private double waypointX, waypointY;
-	private boolean navigating = false;
-	private static boolean turning = false;
-	public boolean cancelled = true;
+	private volatile boolean navigating = false;
+	private volatile double[] target;
+
+	// waypoint queue, guarded by this
+	private double[] queueX = new double[QUEUE_SIZE];
+	private double[] queueY = new double[QUEUE_SIZE];
+	private int[] queueIds = new int[QUEUE_SIZE];
+	private int queueHead = 0, queueCount = 0;
+	private int nextId = 0, lastCompleted = -1;
+	private int currentId = -1; // waypoint being driven to, -1 if none
+	private final BitSet reached = new BitSet(); // ids of the waypoints reached, not those dropped
+	private volatile boolean aborted = false;
+	private static volatile boolean turning = false;
+	private volatile boolean cancelled = true;
+	private PathMetrics metrics = new PathMetrics();
+	private PathFollower follower;
+	private volatile long lastTurnTime;
+	private volatile double lastTurnError;
+	private volatile ClearanceMap clearance;
+	// lets the waypoint thread's turns give up as soon as the motors are taken over or the queue cleared
+	private final MotionTask driveTask = new MotionTask(this) {
+		@Override
+		public boolean isCancelled() {
+			return cancelled || aborted;
+		}
+	};
 
 	/**
 	 * Constructor for Navigation. 
@@ -36,6 +79,7 @@ public class Navigation extends Thread
 		EV3LargeRegulatedMotor[] motors = this.odometer.getMotors();
 		this.leftMotor = motors[0];
 		this.rightMotor = motors[1];
+		this.commander = this.odometer.getCommander();
 
 		// set acceleration
 		this.leftMotor.setAcceleration(ACCELERATION);
@@ -44,38 +88,199 @@ public class Navigation extends Thread
 		// set default destination
 		waypointX = 0;
 		waypointY = 0;
+
+		this.follower = new PathFollower(this, odo);
 	}
 	
 
 	
 	
 	/**
-	 * Required function for TimerListener.
-	 * Loops every 50 milliseconds.
+	 * Navigation thread: takes the next waypoint off the queue, drives to it, and reports it as completed.
+	 * Waits without spinning while the queue is empty.
 	 */
 	@Override
 	public void run(){
-		double minAng;
+		double targetX, targetY;
+		int targetId;
 		while (true){
-			while (navigating){
-				while ((Math.abs(waypointX - odometer.getX()) > CM_ERR || Math.abs(waypointY - odometer.getY()) > CM_ERR)
-						&& !cancelled) {
-					minAng = (Math.atan2(waypointY - odometer.getY(), waypointX - odometer.getX())) * (180.0 / Math.PI);
-					if (minAng < 0)
-						minAng += 360.0;
-					if (Math.abs(odometer.getAng() - minAng) > ANG_ERR && Math.abs(odometer.getAng() - minAng) + ANG_ERR < 360.0){
-						this.turnTo(minAng, true);
+			synchronized (this) {
+				while (queueCount == 0) {
+					try {
+						this.wait();
+					} catch (InterruptedException e) {
+						return;
 					}
-					this.setSpeeds(FAST, FAST);
-			
+				}
+				targetX = queueX[queueHead];
+				targetY = queueY[queueHead];
+				targetId = queueIds[queueHead];
+				queueHead = (queueHead + 1) % QUEUE_SIZE;
+				queueCount--;
+				currentId = targetId;
+				aborted = false;
+				navigating = true;
+				target = new double[] { targetX, targetY };
+			}
+
+			boolean reached = driveTo(targetX, targetY);
+
+			synchronized (this) {
+				if (reached) {
+					this.reached.set(targetId);
+					lastCompleted = targetId;
+				}
+				currentId = -1;
+				if (queueCount == 0) {
+					this.stopMotors();
+					navigating = false;
+					target = null;
+				}
+				this.notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Steers towards a waypoint until it is reached or the queue is cleared. While {@link #isCancelled()} is set,
+	 * the motors are left alone, even by a turn towards the waypoint already under way, and the waypoint is kept,
+	 * so driving resumes once it is cleared.
+	 * @param x 	<code>double</code> X coordinate value of the waypoint in cm.
+	 * @param y 	<code>double</code> Y coordinate value of the waypoint in cm.
+	 * @return 		<code>true</code> if the waypoint was reached, <code>false</code> if the queue was cleared
+	 */
+	private boolean driveTo(double x, double y) {
+		double minAng;
+		Pose pose = odometer.getPose();
+		MotionProfile profile = new MotionProfile(CRUISE, PROFILE_ACCELERATION, CREEP);
+		profile.start(MotionProfile.forDistance(odometer.getWheelRadius(), pose.distanceTo(x, y)));
+		while (Math.abs(x - pose.getX()) > CM_ERR || Math.abs(y - pose.getY()) > CM_ERR) {
+			synchronized (this) {
+				if (aborted)
+					return false;
+				if (cancelled) {
+					// someone else has the motors; check back later
+					try {
+						this.wait(CONTROL_PERIOD);
+					} catch (InterruptedException e) {
+						return false;
 					}
-			if(Math.abs(waypointX - odometer.getX()) < CM_ERR && Math.abs(waypointY - odometer.getY()) < CM_ERR){
-				this.setSpeeds(0, 0);
-				this.navigating = false;
+					pose = odometer.getPose();
+					continue;
 				}
 			}
+			minAng = pose.headingTo(x, y);
+			if (Math.abs(pose.getAng() - minAng) > ANG_ERR && Math.abs(pose.getAng() - minAng) + ANG_ERR < 360.0){
+				this.turnTo(minAng, true, driveTask);
+				profile.start(MotionProfile.forDistance(odometer.getWheelRadius(), pose.distanceTo(x, y)));
+				// check again whether the motors are still ours before driving on
+				pose = odometer.getPose();
+				continue;
+			}
+			float speed = limitSpeed(profile.speed(MotionProfile.forDistance(odometer.getWheelRadius(), pose.distanceTo(x, y))), pose);
+			this.setSpeeds(speed, speed);
+			try {
+				Thread.sleep(CONTROL_PERIOD);
+			} catch (InterruptedException e) {
+				return false;
+			}
+			pose = odometer.getPose();
 		}
-	
+		return true;
+	}
+
+	/**
+	 * Adds a waypoint at the end of the queue, and wakes up the navigation thread.
+	 * @param x 	<code>double</code> X coordinate value of the waypoint in cm.
+	 * @param y 	<code>double</code> Y coordinate value of the waypoint in cm.
+	 * @return 		the <code>int</code> id of the waypoint, to be passed to {@link #awaitWaypoint(int)},
+	 * 				or -1 if the queue is full
+	 */
+	public synchronized int enqueue(double x, double y) {
+		if (queueCount == QUEUE_SIZE)
+			return -1;
+		int tail = (queueHead + queueCount) % QUEUE_SIZE;
+		queueX[tail] = x;
+		queueY[tail] = y;
+		queueIds[tail] = nextId;
+		queueCount++;
+		navigating = true;
+		this.notifyAll();
+		return nextId++;
+	}
+
+	/**
+	 * Swaps the queued waypoints for a new route in one step, abandoning the waypoint being driven to. The
+	 * thread goes straight on to the new route, so {@link #navigating()} stays set throughout.
+	 * @param waypoints 	the <code>double[][]</code> new route, each waypoint as {x, y} in cm; waypoints past
+	 * 						the queue's capacity are dropped
+	 * @return 		the <code>int</code> id of the last waypoint queued, or -1 if the route is empty
+	 */
+	public synchronized int replaceWaypoints(double[][] waypoints) {
+		queueCount = 0;
+		aborted = true;
+		int id = -1;
+		for (int i = 0; i < waypoints.length && queueCount < QUEUE_SIZE; i++) {
+			id = enqueue(waypoints[i][0], waypoints[i][1]);
+		}
+		this.notifyAll();
+		return id;
+	}
+
+	/**
+	 * Drops every queued waypoint, and abandons the one being driven to.
+	 */
+	public synchronized void clear() {
+		queueCount = 0;
+		aborted = true;
+		this.notifyAll();
+	}
+
+	/**
+	 * Blocks until the queue is empty and the robot has stopped navigating.
+	 * @throws InterruptedException 	if the calling thread is interrupted while waiting
+	 */
+	public synchronized void awaitIdle() throws InterruptedException {
+		while (navigating || queueCount > 0) {
+			this.wait();
+		}
+	}
+
+	/**
+	 * Blocks until a given waypoint has been reached, or was dropped from the queue.
+	 * @param id 	the <code>int</code> id returned by {@link #enqueue(double, double)}
+	 * @return 		<code>true</code> if the waypoint was reached, <code>false</code> if it was dropped by
+	 * 				{@link #clear()} or {@link #replaceWaypoints(double[][])}
+	 * @throws InterruptedException 	if the calling thread is interrupted while waiting
+	 */
+	public synchronized boolean awaitWaypoint(int id) throws InterruptedException {
+		if (id < 0)
+			return false;
+		while (!reached.get(id) && isPending(id)) {
+			this.wait();
+		}
+		return reached.get(id);
+	}
+
+	/**
+	 * Tells whether a waypoint is being driven to or waiting in the queue.
+	 */
+	private boolean isPending(int id) {
+		if (id == currentId)
+			return true;
+		for (int i = 0; i < queueCount; i++) {
+			if (queueIds[(queueHead + i) % QUEUE_SIZE] == id)
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the id of the last waypoint reached.
+	 * @return 		the <code>int</code> id of the last waypoint reached, or -1 if none was
+	 */
+	public synchronized int getLastCompleted() {
+		return lastCompleted;
 	}
 
 	/**
@@ -84,16 +289,7 @@ public class Navigation extends Thread
 	 * @param rSpd 		a <code>float</code> representing right motor speed
 	 */
 	public void setSpeeds(float lSpd, float rSpd) {
-		this.leftMotor.setSpeed(lSpd);
-		this.rightMotor.setSpeed(rSpd);
-		if (lSpd < 0)
-			this.leftMotor.backward();
-		else
-			this.leftMotor.forward();
-		if (rSpd < 0)
-			this.rightMotor.backward();
-		else
-			this.rightMotor.forward();
+		this.commander.setSpeeds(lSpd, rSpd);
 	}
 
 	/**
@@ -102,26 +298,21 @@ public class Navigation extends Thread
 	 * @param rSpd 		an <code>int</code> representing right motor speed
 	 */
 	public void setSpeeds(int lSpd, int rSpd) {
-		this.leftMotor.setSpeed(lSpd);
-		this.rightMotor.setSpeed(rSpd);
-		if (lSpd < 0)
-			this.leftMotor.backward();
-		else
-			this.leftMotor.forward();
-		if (rSpd < 0)
-			this.rightMotor.backward();
-		else
-			this.rightMotor.forward();
+		this.setSpeeds((float) lSpd, (float) rSpd);
+	}
+
+	/**
+	 * Stops both motors at the same time.
+	 */
+	public void stopMotors() {
+		this.commander.stop();
 	}
 
 	/**
 	 * Float both motors
 	 */
 	public void setFloat() {
-		this.leftMotor.stop();
-		this.rightMotor.stop();
-		this.leftMotor.flt(true);
-		this.rightMotor.flt(true);
+		this.commander.flt();
 	}
 
 	/** 
@@ -130,85 +321,260 @@ public class Navigation extends Thread
 	 * @param y 	<code>double</code> Y coordinate value of destination in cm.
 	 */
 	public void travelTo(double x, double y) {
+		travelTo(x, y, null);
+	}
+
+	/**
+	 * Starts traveling to a position on another thread, like {@link #travelTo(double, double)}.
+	 * @param x 	<code>double</code> X coordinate value of destination in cm.
+	 * @param y 	<code>double</code> Y coordinate value of destination in cm.
+	 * @return 		the <code>MotionTask</code> to wait on or cancel the move
+	 */
+	public MotionTask travelToAsync(final double x, final double y) {
+		final MotionTask task = new MotionTask(this);
+		startTask(task, new Runnable() {
+			public void run() {
+				task.finish(travelTo(x, y, task));
+			}
+		});
+		return task;
+	}
+
+	/**
+	 * Travels to a position, giving up if a task is cancelled or the thread interrupted.
+	 * @return 		<code>true</code> if the position was reached
+	 */
+	private boolean travelTo(double x, double y, MotionTask task) {
 		double minAng;
-		while ((Math.abs(x - odometer.getX()) > CM_ERR || Math.abs(y - odometer.getY()) > CM_ERR)) {
-			minAng = (Math.atan2(y - odometer.getY(), x - odometer.getX())) * (180.0 / Math.PI);
-			if (minAng < 0)
-				minAng += 360.0;
-			if (Math.abs(odometer.getAng() - minAng) > ANG_ERR && Math.abs(odometer.getAng() - minAng) + ANG_ERR < 360.0){
-				this.turnTo(minAng, true);
+		Pose pose = odometer.getPose();
+		double startX = pose.getX(), startY = pose.getY();
+		MotionProfile profile = new MotionProfile(CRUISE, PROFILE_ACCELERATION, CREEP);
+		profile.start(MotionProfile.forDistance(odometer.getWheelRadius(), pose.distanceTo(x, y)));
+		metrics.begin();
+		while ((Math.abs(x - pose.getX()) > CM_ERR || Math.abs(y - pose.getY()) > CM_ERR) && !isCancelled(task)) {
+			metrics.sample(pose, startX, startY, x, y);
+			minAng = pose.headingTo(x, y);
+			if (Math.abs(pose.getAng() - minAng) > ANG_ERR && Math.abs(pose.getAng() - minAng) + ANG_ERR < 360.0){
+				metrics.countStop();
+				this.turnTo(minAng, true, task);
+				profile.start(MotionProfile.forDistance(odometer.getWheelRadius(), pose.distanceTo(x, y)));
 			}
-			this.setSpeeds(FAST, FAST);
+			// slow down early enough to stop on the target
+			float speed = limitSpeed(profile.speed(MotionProfile.forDistance(odometer.getWheelRadius(), pose.distanceTo(x, y))), pose);
+			this.setSpeeds(speed, speed);
+			try {
+				Thread.sleep(CONTROL_PERIOD);
+			} catch (InterruptedException e) {
+				this.stopMotors();
+				metrics.end();
+				return false;
+			}
+			pose = odometer.getPose();
 		}
-		this.setSpeeds(0, 0);
+		this.stopMotors();
+		metrics.end();
+		return !isCancelled(task);
+	}
+
+	/**
+	 * Drives along a path without stopping at each waypoint, using the pure pursuit {@link PathFollower}.
+	 * @param path 	the <code>double[][]</code> waypoints, each as {x, y} in cm
+	 * @return 		<code>true</code> if the end of the path was reached
+	 */
+	public boolean followPath(double[][] path) {
+		return follower.follow(path);
+	}
+
+	/**
+	 * Getter for the pure pursuit follower, to tune its look-ahead or read its metrics.
+	 * @return 		the <code>PathFollower</code> used by {@link #followPath(double[][])}
+	 */
+	public PathFollower getFollower() {
+		return follower;
+	}
+
+	/**
+	 * Sets the map used to slow down near red zones, obstacles and walls. Without one, the speed is only limited
+	 * by the motion profile.
+	 * @param clearance 	the <code>ClearanceMap</code> of the arena
+	 */
+	public void setClearanceMap(ClearanceMap clearance) {
+		this.clearance = clearance;
+	}
+
+	/**
+	 * Caps a speed by the clearance around the robot: <code>SLOW</code> when touching something, up to
+	 * <code>CRUISE</code> at {@link #FULL_SPEED_CLEARANCE} or more.
+	 */
+	private float limitSpeed(float speed, Pose pose) {
+		ClearanceMap map = clearance;
+		if (map == null)
+			return speed;
+		double ratio = Math.min(1, map.getClearance(pose.getX(), pose.getY()) / FULL_SPEED_CLEARANCE);
+		return (float) Math.min(speed, SLOW + (CRUISE - SLOW) * ratio);
+	}
+
+	/**
+	 * Getter for the metrics of the last {@link #travelTo(double, double)}.
+	 * @return 		the <code>PathMetrics</code> of the stop-and-turn driving
+	 */
+	public PathMetrics getMetrics() {
+		return metrics;
 	}
 	
+	/**
+	 * Hands the motors over to another controller, or gives them back to the waypoint thread. While cancelled,
+	 * the waypoint thread keeps its current waypoint but leaves the motors alone.
+	 * @param cancelled 	<code>true</code> to take the motors away from the waypoint thread
+	 */
+	public void setCancelled(boolean cancelled) {
+		this.cancelled = cancelled;
+		synchronized (this) {
+			this.notifyAll();
+		}
+	}
+
+	/**
+	 * Returns whether the waypoint thread has been told to leave the motors alone.
+	 * @return 		<code>true</code> if {@link #setCancelled(boolean)} was last called with <code>true</code>
+	 */
+	public boolean isCancelled() {
+		return this.cancelled;
+	}
+
 	/**
 	 * Returns whether the robot is navigating.
-	 * @return
+	 * @return 		<code>true</code> while there is a waypoint being driven to or waiting in the queue
 	 */
 	public boolean navigating(){
 		return this.navigating;
 	}
 	
+	/**
+	 * Starts navigating to the waypoint set by {@link #setWaypoints(double, double)}, replacing anything queued,
+	 * or stops navigating.
+	 * @param navigate 	<code>true</code> to start, <code>false</code> to stop
+	 */
 	public void setNavigating(boolean navigate){
-		this.navigating = navigate;
+		synchronized (this) {
+			clear();
+			if (navigate) {
+				enqueue(waypointX, waypointY);
+			}
+		}
 	}
 
 	/** 
 	 * Turns the robot to a given heading, used in conjunciton with {@link #travelTo(double, double)}
+	 * <o>
+	 * Large turns are done in two parts: the bulk of the angle as a tacho-targeted <code>rotate()</code>, which
+	 * the motor regulators run at full speed and decelerate on their own, then a closed-loop finish on the
+	 * odometer heading which corrects for wheel slip. The finish slows down in proportion to the error left,
+	 * so it settles without oscillating around the target.
 	 * @param angle 	the angle (in degrees) to which the robot should turn
 	 * @param stop 		a <code>boolean</code> dictating whether or not the motors should stop upon completion of the turn
 	 */
 	public void turnTo(double angle, boolean stop) {
+		turnTo(angle, stop, null);
+	}
 
-		double error = angle - this.odometer.getAng();
+	/**
+	 * Starts turning to a heading on another thread, like {@link #turnTo(double, boolean)}. The motors are
+	 * stopped at the end of the turn.
+	 * @param angle 	the angle (in degrees) to which the robot should turn
+	 * @return 			the <code>MotionTask</code> to wait on or cancel the turn
+	 */
+	public MotionTask turnToAsync(final double angle) {
+		final MotionTask task = new MotionTask(this);
+		startTask(task, new Runnable() {
+			public void run() {
+				task.finish(turnTo(angle, true, task));
+			}
+		});
+		return task;
+	}
+
+	/**
+	 * Turns to a heading, giving up if a task is cancelled.
+	 * @return 		<code>true</code> if the turn was completed
+	 */
+	private boolean turnTo(double angle, boolean stop, MotionTask task) {
+		long start = System.currentTimeMillis();
+		double radius = odometer.getWheelRadius(), width = odometer.getTrack();
+		double error = Odometer.minimumAngleFromTo(odometer.getAng(), angle);
 		this.turning = true;
-		while (Math.abs(error) > DEG_ERR) {
 
-			error = angle - this.odometer.getAng();
+		if (Math.abs(error) > BULK_TURN_MIN && !isCancelled(task)) {
+			int wheel = convertDistance(radius, width, error);
+			this.commander.rotate(-wheel, wheel, FAST);
+			while (this.commander.isMoving() && !isCancelled(task)) {
+				try {
+					Thread.sleep(TURN_PERIOD);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					break;
+				}
+			}
+			error = Odometer.minimumAngleFromTo(odometer.getAng(), angle);
+		}
 
-			if (error < -180.0) {
-				this.setSpeeds(-SLOW, SLOW);
-			} else if (error < 0.0) {
-				this.setSpeeds(SLOW, -SLOW);
-			} else if (error > 180.0) {
-				this.setSpeeds(SLOW, -SLOW);
+		long finishStart = System.currentTimeMillis();
+		while (Math.abs(error) > TURN_ERR && System.currentTimeMillis() - finishStart < TURN_TIMEOUT
+				&& !isCancelled(task)) {
+			// proportional to the error, and never faster than what can still be stopped in time
+			double wheel = MotionProfile.forTurn(radius, width, Math.abs(error));
+			double speed = Math.min(TURN_GAIN * wheel, Math.sqrt(2 * PROFILE_ACCELERATION * wheel));
+			speed = Math.max(CREEP, Math.min(SLOW, speed));
+			if (error > 0) {
+				this.setSpeeds((float) -speed, (float) speed);
 			} else {
-				this.setSpeeds(-SLOW, SLOW);
+				this.setSpeeds((float) speed, (float) -speed);
 			}
+			try {
+				Thread.sleep(TURN_PERIOD);
+			} catch (InterruptedException e) {
+				break;
+			}
+			error = Odometer.minimumAngleFromTo(odometer.getAng(), angle);
 		}
 
-		if (stop) {
-			this.setSpeeds(0, 0);
+		// a cancelled turn may be cancelled mid-rotation, which only stopping the motors ends, except when the
+		// waypoint thread's turn was cancelled for someone else to drive the motors
+		if (stop || isCancelled(task)) {
+			if (!(task == driveTask && cancelled))
+				this.stopMotors();
 			this.turning = false;
 		}
+		lastTurnTime = System.currentTimeMillis() - start;
+		lastTurnError = Odometer.minimumAngleFromTo(odometer.getAng(), angle);
+		return !isCancelled(task);
 	}
 	
 	/** 
-	 * Turns the robot to a given heading, used in conjunciton with {@link #travelTo(double, double)}
+	 * Turns the robot to a given heading, taking the motors away from the waypoint thread.
+	 * Same turn as {@link #turnTo(double, boolean)}.
 	 * @param angle 	the angle (in degrees) to which the robot should turn
 	 * @param stop 		a <code>boolean</code> dictating whether or not the motors should stop upon completion of the turn
 	 */
 	public void revisedTurnTo(double angle, boolean stop) {
-
-		double error = angle - this.odometer.getAng();
-		this.turning = true;
 		this.cancelled = true;
+		this.turnTo(angle, stop);
+	}
 
-		error = angle - this.odometer.getAng();
-		
-		if (error > 180){
-			leftMotor.rotate(convertDistance(odometer.getWheelRadius(), odometer.getTrack(), 360 - error),true);
-			rightMotor.rotate(-convertDistance(odometer.getWheelRadius(), odometer.getTrack(), 360 - error),false);
-		} else {
-			leftMotor.rotate(-convertDistance(odometer.getWheelRadius(), odometer.getTrack(), error),true);
-			rightMotor.rotate(convertDistance(odometer.getWheelRadius(), odometer.getTrack(), error),false);
-			
-		}
+	/**
+	 * Getter for the duration of the last turn.
+	 * @return 		the <code>long</code> time in ms taken by the last {@link #turnTo(double, boolean)}
+	 */
+	public long getLastTurnTime() {
+		return lastTurnTime;
+	}
 
-		
-		this.turning = false;
+	/**
+	 * Getter for the heading error left by the last turn.
+	 * @return 		the <code>double</code> signed error in degrees, positive if short of a counter-clockwise target
+	 */
+	public double getLastTurnError() {
+		return lastTurnError;
 	}
 	
 	/**
@@ -224,21 +590,69 @@ public class Navigation extends Thread
 	 * @param distance 		the <code>double</code> distance in cm to go forward
 	 */
 	public void goForward(double distance) 
+	{
+		goForward(distance, null);
+	}
+
+	/**
+	 * Starts going forward a set distance on another thread, like {@link #goForward(double)}.
+	 * @param distance 		the <code>double</code> distance in cm to go forward, negative to go backward
+	 * @return 				the <code>MotionTask</code> to wait on or cancel the move
+	 */
+	public MotionTask goForwardAsync(final double distance) {
+		final MotionTask task = new MotionTask(this);
+		startTask(task, new Runnable() {
+			public void run() {
+				task.finish(goForward(distance, task));
+			}
+		});
+		return task;
+	}
+
+	/**
+	 * Goes forward a set distance, giving up if a task is cancelled or the thread interrupted.
+	 * @return 		<code>true</code> if the whole distance was covered
+	 */
+	private boolean goForward(double distance, MotionTask task)
 	{
 		//Robot rotates forward until distance to object is below a threshold
 		/*this.leftMotor.rotate(convertDistance(2.1, distance), false);
 		this.rightMotor.rotate(convertDistance(2.1, distance), false);*/
-		double x = odometer.getX();
-		double y = odometer.getY();
-		while(Math.hypot(odometer.getX()-x,odometer.getY()-y) < Math.abs(distance))
+		Pose start = odometer.getPose();
+		MotionProfile profile = new MotionProfile(SLOW, PROFILE_ACCELERATION, CREEP);
+		profile.start(MotionProfile.forDistance(odometer.getWheelRadius(), distance));
+		double travelled;
+		while((travelled = odometer.getPose().distanceTo(start.getX(), start.getY())) < Math.abs(distance)
+				&& !isCancelled(task))
 		{
+			float speed = profile.speed(MotionProfile.forDistance(odometer.getWheelRadius(), Math.abs(distance) - travelled));
 			if (distance>0){
-				this.setSpeeds(SLOW,SLOW);
+				this.setSpeeds(speed,speed);
 			} else {
-				this.setSpeeds(-SLOW,-SLOW);
+				this.setSpeeds(-speed,-speed);
+			}
+			try {
+				Thread.sleep(CONTROL_PERIOD);
+			} catch (InterruptedException e) {
+				this.stopMotors();
+				return false;
 			}
 		}
-		this.setSpeeds(0,0);
+		this.stopMotors();
+		return !isCancelled(task);
+	}
+
+	/**
+	 * Runs a move on its own thread. The thread does not keep the program alive.
+	 */
+	private static void startTask(MotionTask task, Runnable move) {
+		Thread thread = new Thread(move);
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	private static boolean isCancelled(MotionTask task) {
+		return task != null && task.isCancelled();
 	}
 	
 	/**
@@ -275,5 +689,13 @@ public class Navigation extends Thread
 		this.waypointY = y;
 	}
 
+	/**
+	 * Getter for the waypoint being driven to.
+	 * @return		the <code>double[]</code> {x, y} in cm, or <code>null</code> once the queue is done
+	 */
+	public double[] getTarget() {
+		return target;
+	}
+
 
 }
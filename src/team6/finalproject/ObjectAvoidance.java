@@ -1,7 +1,5 @@
 package team6.finalproject;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.lang.Math;
 import lejos.hardware.Sound;
 import lejos.hardware.motor.EV3MediumRegulatedMotor;
@@ -21,17 +19,22 @@ public class ObjectAvoidance {
 	private UltrasonicPoller usPoller;
 	
 	private static final double GRID_LENGTH = 30.48;
-	private static final int MAX_FILTER = 3; // Must be an odd number for performance reason
+	private static final int MAX_FILTER = 3; // Must be an odd number so the median is a reading
+	private static final int HAMPEL_WINDOW = 5;
+	private static final float HAMPEL_THRESHOLD = 3; // standard deviations
+	private static final float HAMPEL_MIN_DEVIATION = 1; // cm
 	private static final int MAX_US_DISTANCE = 255;
 	private static final float DANGER_DIST = (float) 14.4;
-	private static final float DEADBAND = 2;
 	private static final double SAFE_DISTANCE_AWAY = -3;
 	private static final double END_ANGLE_CORRECTION = 112;
-	private static final int BANGBANG_SENSOR_ANGLE = -130;
-	private static final int BANGBANG_TRAVEL_SPEED = 195;
-	private static final int BANGBANG_ULTRASLOW_WHEEL_SPEED = 72;
-	private static final int BANGBANG_SLOW_WHEEL_SPEED = 144;
-	private static final int BANGBANG_FAST_WHEEL_SPEED = 275;
+	private static final int FOLLOW_SENSOR_ANGLE = -130;
+	private static final int FOLLOW_SPEED = 195;
+	private static final float FOLLOW_DISTANCE = 20; // cm along the sensor, looking back at the obstacle
+	private static final float FOLLOW_KP = 12;
+	private static final float FOLLOW_KD = 6;
+	private static final float FOLLOW_MAX_CORRECTION = 80;
+	private static final int FOLLOW_PERIOD = 50; // ms, the ultrasonic poller's
+	private static final int STEP_PERIOD = 20; // ms between two steps of travel()
 	private static final int THRESHOLD_ANGLE = 15;
 	private static final int ROTATING_ANGLE = 63;
 	private static final int ROTATING_SPEED = 360;
@@ -40,16 +43,60 @@ public class ObjectAvoidance {
 	private static final double DISTANCE_CHECK = 91;
 	private static final double BLOCK_THICKNESS = 10;
 	private static final double ERROR_MARGIN = 6.3;
+	private static final int SENSOR_DIRECTION = -1; // the sensor turns clockwise as its tacho count grows
+	private static final double HISTOGRAM_WINDOW = 50; // cm, echoes further away are ignored
+	private static final double HISTOGRAM_CLEARANCE = ROBOT_HALF_WIDTH + 5; // cm
+	private static final double HISTOGRAM_THRESHOLD = 20; // one echo closer than 30 cm blocks its sectors
+	private static final long HISTOGRAM_MEMORY = 1500; // ms, about two sensor sweeps
+	private static final double MAX_STEER_DEVIATION = 90;
+	private static final float STEER_GAIN = 3; // wheel speed per degree of heading error
+	private static final int GOAL_STACK_SIZE = 4; // a destination and its detour, with room to spare
 	
+	/**
+	 * What the avoidance is doing, as of the last {@link ObjectAvoidance#step()}.
+	 */
+	public enum State {
+		/** No goal left */
+		IDLE,
+		/** The navigation drives straight to the destination */
+		DRIVING,
+		/** The navigation drives the route around the red zones */
+		DETOURING,
+		/** Steering around an obstacle towards the free heading closest to the waypoint */
+		STEERING,
+		/** Following the side of an obstacle that came too close to steer around */
+		FOLLOWING
+	}
+	
+	private FilteredPoller usFilter;
+	private ZoneIndex zones = new ZoneIndex();
+	private int startZone = -1;
+	private OccupancyGrid map = new OccupancyGrid(ROBOT_HALF_WIDTH);
+	private PathPlanner planner = new VisibilityPlanner(zones, ROBOT_HALF_WIDTH);
+	// detour being driven, replanned whenever the map changes; guarded by this
+	private boolean routeActive = false;
+	private double routeX, routeY;
+	// set when the map changes across the straight leg being driven, for the next step to go round
+	private volatile boolean legBlocked = false;
+	private ClearanceMap clearance = new ClearanceMap(map);
+	private ObstacleHistogram histogram = new ObstacleHistogram(HISTOGRAM_WINDOW, HISTOGRAM_CLEARANCE,
+			HISTOGRAM_THRESHOLD, HISTOGRAM_MEMORY);
+	private long lastSampleTime = 0;
+	private double[] samplePose = new double[3];
+	private boolean wayBlocked = false;
+	private WallFollower follower = new WallFollower(FOLLOW_DISTANCE, FOLLOW_KP, FOLLOW_KD, FOLLOW_SPEED,
+			FOLLOW_MAX_CORRECTION);
 	
-	private boolean navigating;
-	private float[] archivedValues = new float[MAX_FILTER];
-	private int archivedCount = 0;
-	private static List<Double> redZoneXa = new ArrayList<Double>();
-	private static List<Double> redZoneYa = new ArrayList<Double>();
-	private static List<Double> redZoneXb = new ArrayList<Double>();
-	private static List<Double> redZoneYb = new ArrayList<Double>();
-	private boolean obstacleMode = false;
+	// goals being driven to, the top one current; a detour sits on top of its destination
+	private final double[] goalX = new double[GOAL_STACK_SIZE], goalY = new double[GOAL_STACK_SIZE];
+	private final boolean[] goalDetour = new boolean[GOAL_STACK_SIZE];
+	private int goalCount = 0;
+	private volatile State state = State.IDLE;
+	private int programCount = 0;
+	// obstacle being followed
+	private double followX, followY, followEndAngle;
+	private boolean followWraps;
+	private long lastFollowUpdate;
 		
 	/**
 	 * Constructor for ObjectAvoidance. 
@@ -60,14 +107,22 @@ public class ObjectAvoidance {
 			UltrasonicPoller usPoller){
 		this.odo = odo;
 		this.nav = new Navigation(odo);	
+		this.nav.setClearanceMap(clearance);
+		map.addListener(new OccupancyGrid.Listener() {
+			@Override
+			public void cellsChanged(int colA, int rowA, int colB, int rowB, boolean occupied) {
+				repairRoute();
+			}
+		});
 		this.usMotor = usMotor;
 		this.usPoller = usPoller;
-		for (int i = 0; i < MAX_FILTER; i++){
-			archivedValues[i] = MAX_US_DISTANCE;
-		}
+		this.usFilter = new FilteredPoller(usPoller, new FilterChain(
+				new HampelFilter(HAMPEL_WINDOW, HAMPEL_THRESHOLD, HAMPEL_MIN_DEVIATION),
+				new MedianFilter(MAX_FILTER)));
 	}
 	
 	public void initiate(){
+		startZone = zones.size();
 		addRedZone(-GRID_LENGTH, -GRID_LENGTH, 0 - (ROBOT_HALF_WIDTH + 2.5*ERROR_MARGIN), 
 				0 - (ROBOT_HALF_WIDTH + 2.5*ERROR_MARGIN));  // X1
 		addRedZone(Wifi.ourBadZoneX1, Wifi.ourBadZoneY1, 
@@ -80,153 +135,290 @@ public class ObjectAvoidance {
 	}
 	
 	/**
-	 * Travel to the set destination (x,y) while avoiding obstacles
+	 * Travel to the set destination (x,y) while avoiding obstacles, stepping once per control period
 	 */
 	public void travel(double x, double y){
-		int index = isInRed (x, y);
-		double[] waypoints = {x,y};
-		if (index < redZoneXa.size()){ // if the point is inside a pre-determined red zone
-			waypoints = avoidRed(odo.getX(), odo.getY(), index);
+		startTravel(x, y);
+		while (true){
+			long start = System.currentTimeMillis();
+			if (!step()){
+				return;
+			}
+			// sleep the rest of the period, the histogram and odometer being read on every step
+			long left = STEP_PERIOD - (System.currentTimeMillis() - start);
+			if (left > 0){
+				try {
+					Thread.sleep(left);
+				} catch (InterruptedException e){
+					Thread.currentThread().interrupt();
+					nav.clear();
+					nav.stopMotors();
+					return;
+				}
+			}
 		}
-		travelLogic(waypoints[0],waypoints[1]);
-		
-		
 	}
 	
-	private void travelLogic(double x, double y){
-		nav.setWaypoints(x, y);
-		nav.setNavigating(true);
-		nav.cancelled = false;
-		avoiding(x, y);
+	/**
+	 * Start travelling to the destination (x,y), to be driven by calling {@link #step()} until it returns
+	 * <code>false</code>. Replaces any goal left over.
+	 * @param x the <code>double</code> X coordinate of the destination in cm
+	 * @param y the <code>double</code> Y coordinate of the destination in cm
+	 */
+	public void startTravel(double x, double y){
+		if (isInRed(x, y) >= 0){ // if the point is inside a pre-determined red zone
+			// go to the closest point that is clear of it instead
+			double[] clear = clearance.nearestClear(x, y, ERROR_MARGIN);
+			if (clear != null){
+				x = clear[0];
+				y = clear[1];
+			}
+		}
+		synchronized (this){
+			routeActive = false;
+		}
+		legBlocked = false;
+		goalCount = 0;
+		pushGoal(x, y, false);
+		usMotor.setSpeed(ROTATING_SPEED);
+		programCount = 0;
+		histogram.clear();
+		nav.setCancelled(false);
+		driveToGoal();
 	}
 	
 	/**
-	 * Median filter for the ultrasonic data
+	 * Ultrasonic data with outliers rejected, then median filtered
 	 * @return filtered distance
 	 */
 	public float getFilteredData() {
-		// Fetch data
-		float distance = usPoller.getDistance();
 		// Trunk all oversize data
-		if (distance > MAX_US_DISTANCE){
-			distance = MAX_US_DISTANCE;
+		return Math.min(usFilter.getDistance(), MAX_US_DISTANCE);
+	}
+	
+	/**
+	 * Does one round of the avoidance: reads the sensor, then steers around the obstacles, follows the
+	 * side of one that came too close, or takes a detour around the red zone ahead, and moves on to the
+	 * next goal once the navigation is done. Only backing off an obstacle blocks for long.
+	 * @return <code>true</code> while there is a goal left
+	 */
+	public boolean step(){
+		switch (state){
+		case IDLE:
+			return false;
+		case FOLLOWING:
+			stepFollowing();
+			return true;
+		default:
+			break;
 		}
-		archivedValues[archivedCount] = distance;
-		archivedCount = customIncrement(archivedCount, MAX_FILTER);
 		
-		// Apply the median filter
-		float median =  archivedValues[(MAX_FILTER/2 + archivedCount) % MAX_FILTER];
-		if (archivedValues[archivedCount] > median){
-			archivedValues[archivedCount] = median;
+		if (!usMotor.isMoving() && usMotor.getTachoCount() <= THRESHOLD_ANGLE){
+			usMotor.rotateTo(ROTATING_ANGLE, true);
+		}
+		else if (!usMotor.isMoving() && usMotor.getTachoCount() > THRESHOLD_ANGLE){
+			usMotor.rotateTo(-ROTATING_ANGLE, true);
+		}
+		float distance = getFilteredData();
+		double steer = steerAround();
+		boolean lookingAhead = Math.abs(usMotor.getTachoCount()) <= THRESHOLD_ANGLE;
+		if (distance <= DANGER_DIST && (lookingAhead || (wayBlocked && Double.isNaN(steer)))){
+			if (wallAhead() && programCount < WALL_CHECK_TIMES){
+				programCount = programCount + 1;
+				return true;
+			}
+			startFollowing();
+			return true;
+		}
+		if (wayBlocked && !Double.isNaN(steer)){
+			if (state != State.STEERING){
+				nav.setCancelled(true);
+				state = State.STEERING;
+			}
+			float turn = (float) (STEER_GAIN * Odometer.minimumAngleFromTo(odo.getAng(), steer));
+			turn = Math.max(-FOLLOW_SPEED, Math.min(FOLLOW_SPEED, turn));
+			nav.setSpeeds(FOLLOW_SPEED - turn, FOLLOW_SPEED + turn);
+		} else if (state == State.STEERING){
+			// the way to the waypoint is free again
+			nav.setCancelled(false);
+			resume();
 		}
-		return archivedValues[archivedCount];
-		// return distance;
 		
+		// the detour itself is known to be clear of red zones
+		if (!goalDetour[goalCount - 1] && (legBlocked || redZoneAhead() >= 0)){
+			legBlocked = false;
+			goAroundRedZone(goalX[goalCount - 1], goalY[goalCount - 1]);
+		}
+		
+		if (state != State.IDLE && !nav.navigating()){
+			popGoal();
+		}
+		return state != State.IDLE;
 	}
 	
 	/**
-	 * A helper function that wrap the incrementing number
-	 * @param thisNum
-	 * @param limitNum
-	 * @return increment the number that coul wrap around
+	 * Getter for what the avoidance is doing
+	 * @return the <code>State</code> as of the last step
 	 */
-	public int customIncrement(int thisNum, int limitNum){
-		int res;
-		if (thisNum +1 < limitNum){
-			res = thisNum + 1;
-		} else {
-			res = 0;
+	public State getState(){
+		return state;
+	}
+	
+	/**
+	 * Getter for the goal being driven to
+	 * @return the <code>double[]</code> {x, y} in cm of the current goal, or <code>null</code> when idle
+	 */
+	public double[] getGoal(){
+		int top = goalCount - 1;
+		return top < 0 ? null : new double[] { goalX[top], goalY[top] };
+	}
+	
+	private void pushGoal(double x, double y, boolean detour){
+		if (goalCount == GOAL_STACK_SIZE){
+			// keep the destination at the bottom and drop the oldest goal above it
+			System.arraycopy(goalX, 2, goalX, 1, GOAL_STACK_SIZE - 2);
+			System.arraycopy(goalY, 2, goalY, 1, GOAL_STACK_SIZE - 2);
+			System.arraycopy(goalDetour, 2, goalDetour, 1, GOAL_STACK_SIZE - 2);
+			goalCount--;
 		}
-		return res;
+		goalX[goalCount] = x;
+		goalY[goalCount] = y;
+		goalDetour[goalCount] = detour;
+		goalCount++;
 	}
 	
 	/**
-	 * Avoid the obstacles with bangbang controller
+	 * Drops the goal the navigation has finished with, and goes back to the one under it if any
 	 */
-	private void avoiding(double destX, double destY){
-		float distance;
-		navigating = true;
-		usMotor.setSpeed(ROTATING_SPEED);
-		int programCount = 0;
-		while (navigating){
-			if (!usMotor.isMoving() && usMotor.getTachoCount() <= THRESHOLD_ANGLE){
-				usMotor.rotateTo(ROTATING_ANGLE, true);
-			}
-			else if (!usMotor.isMoving() && usMotor.getTachoCount() > THRESHOLD_ANGLE){
-				usMotor.rotateTo(-ROTATING_ANGLE, true);
-			}
-			distance = getFilteredData();
-			if (distance <= DANGER_DIST){
-				if (wallAhead() && programCount < WALL_CHECK_TIMES){
-					programCount = programCount + 1;
-					continue;
-				}
-				nav.cancelled = true;
-				nav.setSpeeds(0, 0);
-				nav.goForward(SAFE_DISTANCE_AWAY);
-				nav.turnTo(wrapAng(odo.getAng() - 90), true);
-				double endAng = wrapAng(odo.getAng() + END_ANGLE_CORRECTION);
-				usMotor.rotateTo(BANGBANG_SENSOR_ANGLE);
-				bangbang(endAng);
-				usMotor.rotateTo(0);
-				programCount = 0;
-				nav.cancelled = false;
-			}
-			int index = redZoneAhead();
-			if (index < redZoneXa.size() && !obstacleMode){
-				goAroundRedZone(destX, destY, index);
-				break;
-			}
-			
-			if (!nav.navigating()){
-				navigating = false;
-				usMotor.rotateTo(0, true);
-			}
+	private void popGoal(){
+		goalCount--;
+		synchronized (this){
+			routeActive = false;
 		}
+		if (goalCount == 0){
+			state = State.IDLE;
+			usMotor.rotateTo(0, true);
+			return;
+		}
+		driveToGoal();
 	}
 	
 	/**
-	 * Bangbang controller for object avoidance
+	 * Hands the goal on top of the stack to the navigation
 	 */
-	private void bangbang(double angle){
-		double x = odo.getX();
-		double y = odo.getY();
-		if (odo.getAng() < angle){
-			while ((odo.getAng() < angle) && (distanceTravelled(x,y) < DISTANCE_CHECK)){
-				float errorDistance = getFilteredData() - DANGER_DIST;
-				bangbangLogic(errorDistance);
-				if(nearWall()){
-					evade();
-					break;
-				}
-			}
-		} else {
-			while ((odo.getAng() < angle || odo.getAng() >= 360 - END_ANGLE_CORRECTION)
-					&& (distanceTravelled(x,y) < DISTANCE_CHECK)){
-				float errorDistance = getFilteredData() - DANGER_DIST;
-				bangbangLogic(errorDistance);
-				if(nearWall()){
-					evade();
-					break;
+	private void driveToGoal(){
+		int top = goalCount - 1;
+		nav.setWaypoints(goalX[top], goalY[top]);
+		nav.setNavigating(true);
+		resume();
+	}
+	
+	/**
+	 * Goes back to letting the navigation drive, after steering or following an obstacle
+	 */
+	private void resume(){
+		state = goalDetour[goalCount - 1] ? State.DETOURING : State.DRIVING;
+	}
+	
+	/**
+	 * Maps the obstacle ahead, then backs off it and turns to have it on the left, for the follower to go
+	 * round it. Mapping it has the detour being driven replanned around it.
+	 */
+	private void startFollowing(){
+		nav.setCancelled(true);
+		nav.setSpeeds(0, 0);
+		mapObstacleAhead();
+		nav.goForward(SAFE_DISTANCE_AWAY);
+		nav.turnTo(wrapAng(odo.getAng() - 90), true);
+		usMotor.rotateTo(FOLLOW_SENSOR_ANGLE);
+		Pose start = odo.getPose();
+		followX = start.getX();
+		followY = start.getY();
+		followEndAngle = wrapAng(start.getAng() + END_ANGLE_CORRECTION);
+		followWraps = start.getAng() >= followEndAngle;
+		follower.reset();
+		lastFollowUpdate = 0;
+		state = State.FOLLOWING;
+	}
+	
+	/**
+	 * Saves the obstacle the sensor sees to the map, unless it is already in a zone
+	 */
+	private void mapObstacleAhead(){
+		Pose pose = odo.getPose();
+		float distance = getFilteredData();
+		double sensorHeading = wrapAng(pose.getAng() + SENSOR_DIRECTION * usMotor.getTachoCount());
+		double x = pose.getX() + distance * Math.cos(Math.toRadians(sensorHeading));
+		double y = pose.getY() + distance * Math.sin(Math.toRadians(sensorHeading));
+		if (isInRed(x, y) < 0){
+			saveObstacleToMap(x, y, sensorHeading);
+		}
+	}
+	
+	/**
+	 * Adds the newest ultrasonic reading to the obstacle histogram and checks the way to the waypoint
+	 * being driven to, setting <code>wayBlocked</code>. Echoes off the walls are left out, the walls being
+	 * kept clear of by the navigation.
+	 * @return the <code>double</code> heading in degrees to steer to around the obstacles, <code>NaN</code> if
+	 * 			the way is free or if no heading near it is
+	 */
+	private double steerAround(){
+		long sampleTime = usPoller.getSampleTime();
+		if (sampleTime != lastSampleTime){
+			lastSampleTime = sampleTime;
+			float reading = usPoller.getDistance();
+			if (reading < HISTOGRAM_WINDOW){
+				odo.poseAt(sampleTime, samplePose);
+				double sensorHeading = Math.toRadians(samplePose[2] + SENSOR_DIRECTION * usMotor.getTachoCount());
+				double x = samplePose[0] + reading * Math.cos(sensorHeading);
+				double y = samplePose[1] + reading * Math.sin(sensorHeading);
+				if (clearance.getWallClearance(x, y) > 0){
+					histogram.addPoint(x, y, sampleTime);
 				}
 			}
 		}
-	
-		
-		
+		wayBlocked = false;
+		double[] target = nav.getTarget();
+		if (target == null){
+			return Double.NaN;
+		}
+		Pose pose = odo.getPose();
+		double range = Math.hypot(target[0] - pose.getX(), target[1] - pose.getY());
+		histogram.update(pose, range, System.nanoTime());
+		double heading = pose.headingTo(target[0], target[1]);
+		wayBlocked = histogram.isBlocked(heading);
+		if (!wayBlocked){
+			return Double.NaN;
+		}
+		return histogram.steer(heading, MAX_STEER_DEVIATION);
 	}
 	
 	/**
-	 * Internal logic of the bangbang controller
-	 * @param errorDistance
+	 * Follows the obstacle's side with the PD controller, one update per control period, until the robot
+	 * has come round to the end angle, has gone far enough, or nears a wall
 	 */
-	private void bangbangLogic(float errorDistance){
-		if (Math.abs(errorDistance) <= DEADBAND){ 
-			nav.setSpeeds(BANGBANG_TRAVEL_SPEED, BANGBANG_TRAVEL_SPEED);
-		} else if (errorDistance > 0){
-			nav.setSpeeds(BANGBANG_SLOW_WHEEL_SPEED, BANGBANG_FAST_WHEEL_SPEED);
-		} else if (errorDistance < 0){ 
-			nav.setSpeeds(BANGBANG_FAST_WHEEL_SPEED, BANGBANG_ULTRASLOW_WHEEL_SPEED);
+	private void stepFollowing(){
+		double ang = odo.getAng();
+		boolean turning = followWraps ? ang < followEndAngle || ang >= 360 - END_ANGLE_CORRECTION
+				: ang < followEndAngle;
+		boolean done = !turning || distanceTravelled(followX, followY) >= DISTANCE_CHECK;
+		if (!done && nearWall()){
+			evade();
+			done = true;
+		}
+		if (done){
+			usMotor.rotateTo(0);
+			programCount = 0;
+			histogram.clear();
+			nav.setCancelled(false);
+			resume();
+			return;
+		}
+		long now = System.currentTimeMillis();
+		if (now - lastFollowUpdate >= FOLLOW_PERIOD){
+			lastFollowUpdate = now;
+			follower.update(getFilteredData(), usPoller.getSampleTime());
+			nav.setSpeeds(follower.getLeftSpeed(), follower.getRightSpeed());
 		}
 	}
 	
@@ -260,41 +452,33 @@ public class ObjectAvoidance {
 		ya = Math.min(y1, y2) - ROBOT_HALF_WIDTH;
 		yb = Math.max(y1, y2) + ROBOT_HALF_WIDTH;
 		
-		redZoneXa.add(xa);
-		redZoneYa.add(ya);
-		redZoneXb.add(xb);
-		redZoneYb.add(yb);
+		// both hand out ids in the order zones are added, so a zone has the same id in each
+		zones.add(xa, ya, xb, yb);
+		map.markRectangle(xa, ya, xb, yb);
 	}
 	
 	/**
 	 * Check if a point is in redzone
 	 * @param x
 	 * @param y
-	 * @return return the index of the redzone the point is in, if not in any redzone, return
-	 * the total number of redzones
+	 * @return return the index of the redzone the point is in, -1 if not in any redzone
 	 */
 	private int isInRed (double x, double y){
-		int redNumber = redZoneXa.size();
-		for (int i = 0; i < redNumber; i++){
-			if ( x > redZoneXa.get(i) && x < redZoneXb.get(i) && y > redZoneYa.get(i) 
-					&& y < redZoneYb.get(i)){
-				redNumber = i;
-				break;
-			}
-		}
-		return redNumber;		
+		return zones.find(x, y);
 	}
 	
 
 	/**
 	 * check if one-block-distance ahead is in the redzone
-	 * @return return the index of the redzone
+	 * @return return the index of the redzone, -1 if there is none
 	 */
 	public int redZoneAhead(){
-		int res = redZoneXa.size();
-		double angle = odo.getAng()/180.0*Math.PI;
-		int index = isInRed(odo.getX()+Math.cos(angle)*BLOCK_THICKNESS/2.5, odo.getY()+Math.sin(angle)*BLOCK_THICKNESS/2.5);
-		if (index < res && !nav.turning()){
+		int res = -1;
+		Pose pose = odo.getPose();
+		double angle = pose.getAng()/180.0*Math.PI;
+		int index = zones.findOnSegment(pose.getX(), pose.getY(), 
+				pose.getX()+Math.cos(angle)*BLOCK_THICKNESS/2.5, pose.getY()+Math.sin(angle)*BLOCK_THICKNESS/2.5);
+		if (index >= 0 && !nav.turning()){
 			res = index;
 		}
 		return res;
@@ -305,67 +489,104 @@ public class ObjectAvoidance {
 	 * @return return true if there's a red zone ahead
 	 */
 	public boolean redAhead(){
-		return redZoneAhead() < redZoneXa.size();
+		return redZoneAhead() >= 0;
 	}
 	
 	/**
-	 * Go around the red zone knowing the index and the destination coordinates
+	 * Go around the red zone on the shortest path to the destination, as planned on the map. The whole
+	 * route is queued on the navigation as a detour goal, and repaired while driving if obstacles are added
+	 * to the map. If there is no route to the destination, the goal is moved to the closest point clear of
+	 * the zones that has one; if there is none either, the robot stops short of the zone and gives the goal up.
 	 * @param destinationX
 	 * @param destinationY
-	 * @param index
 	 */
-	public void goAroundRedZone(double destinationX, double destinationY, int index){
-		double x = odo.getX();
-		double y = odo.getY();
-		obstacleMode = true;
-		if (x >= redZoneXb.get(index) && y >= redZoneYa.get(index)){
-			travel(redZoneXb.get(index)-SAFE_DISTANCE_AWAY, redZoneYb.get(index)-SAFE_DISTANCE_AWAY);
-			travel(redZoneXa.get(index)+SAFE_DISTANCE_AWAY, redZoneYb.get(index)-SAFE_DISTANCE_AWAY);
-			obstacleMode = false;
-			travel(destinationX, destinationY);
-		}
-		else if (x <= redZoneXb.get(index) && y >= redZoneYb.get(index)){
-			travel(redZoneXa.get(index)+SAFE_DISTANCE_AWAY, redZoneYb.get(index)-SAFE_DISTANCE_AWAY);
-			travel(redZoneXa.get(index)+SAFE_DISTANCE_AWAY, redZoneYa.get(index)+SAFE_DISTANCE_AWAY);
-			obstacleMode = false;
-			travel(destinationX, destinationY);
-		}
-		else if (x <= redZoneXa.get(index) && y <= redZoneYb.get(index)){
-			travel(redZoneXa.get(index)+SAFE_DISTANCE_AWAY, redZoneYa.get(index)+SAFE_DISTANCE_AWAY);
-			travel(redZoneXb.get(index)-SAFE_DISTANCE_AWAY, redZoneYa.get(index)+SAFE_DISTANCE_AWAY);
-			obstacleMode = false;
-			travel(destinationX, destinationY);
+	private void goAroundRedZone(double destinationX, double destinationY){
+		Pose pose = odo.getPose();
+		synchronized (this){
+			double[][] path = planner.plan(pose.getX(), pose.getY(), destinationX, destinationY);
+			if (path == null){
+				// an obstacle mapped since may have covered the destination
+				double[] clear = clearance.nearestClear(destinationX, destinationY, ERROR_MARGIN);
+				if (clear != null){
+					path = planner.plan(pose.getX(), pose.getY(), clear[0], clear[1]);
+				}
+				if (path == null){
+					nav.clear();
+					nav.setSpeeds(0, 0);
+					popGoal();
+					return;
+				}
+				destinationX = clear[0];
+				destinationY = clear[1];
+				goalX[goalCount - 1] = destinationX;
+				goalY[goalCount - 1] = destinationY;
+			}
+			routeActive = true;
+			routeX = destinationX;
+			routeY = destinationY;
+			nav.setCancelled(false);
+			nav.replaceWaypoints(path);
 		}
-		else if (x >= redZoneXa.get(index) && y <= redZoneYa.get(index)){
-			travel(redZoneXb.get(index)-SAFE_DISTANCE_AWAY, redZoneYa.get(index)+SAFE_DISTANCE_AWAY);
-			travel(redZoneXb.get(index)-SAFE_DISTANCE_AWAY, redZoneYb.get(index)-SAFE_DISTANCE_AWAY);
-			obstacleMode = false;
-			travel(destinationX, destinationY);
-		} 
-		
+		pushGoal(destinationX, destinationY, true);
+		state = State.DETOURING;
 	}
 	
-
-	private double[] avoidRed (double x, double y, int index){
-		double adjustedX = x;
-		double adjustedY = y;
-		
-		if (Math.abs( x - redZoneXa.get(index)) < Math.abs( x - redZoneXb.get(index))){
-			adjustedX = redZoneXa.get(index) - ERROR_MARGIN;
-		} else {
-			adjustedX = redZoneXb.get(index) + ERROR_MARGIN;
-		}
-		if (Math.abs( y - redZoneYa.get(index)) < Math.abs( y - redZoneYb.get(index))){
-			adjustedY = redZoneYa.get(index) - ERROR_MARGIN;
-		} else {
-			adjustedY = redZoneYb.get(index) + ERROR_MARGIN;
+	/**
+	 * Replan the detour being driven from the current position, and hand the new route to the navigation.
+	 * The planner keeps its work between plans, so only what the map change affects is redone. Keeps the old
+	 * route if the destination can no longer be reached. On a straight leg, checks whether the change blocks
+	 * it, and if so has the next step take a detour right away rather than when the zone is just ahead.
+	 */
+	private void repairRoute(){
+		synchronized (this){
+			Pose pose = odo.getPose();
+			if (!routeActive){
+				int top = goalCount - 1;
+				if (state != State.IDLE && top >= 0 && !goalDetour[top]
+						&& zones.findOnSegment(pose.getX(), pose.getY(), goalX[top], goalY[top]) >= 0){
+					legBlocked = true;
+				}
+				return;
+			}
+			double[][] path = planner.plan(pose.getX(), pose.getY(), routeX, routeY);
+			if (path != null){
+				nav.replaceWaypoints(path);
+			}
 		}
-		
-		double[] res = {adjustedX, adjustedY};
-		return res;
 	}
 	
+	/**
+	 * Getter for the map of red zones and obstacles
+	 * @return the <code>OccupancyGrid</code> the detours are planned on
+	 */
+	public OccupancyGrid getMap(){
+		return map;
+	}
+	
+	/**
+	 * Getter for the planner the detours are planned with
+	 * @return the <code>PathPlanner</code> over the red zones and obstacles
+	 */
+	public PathPlanner getPlanner(){
+		return planner;
+	}
 	
+	/**
+	 * Getter for the red zones and obstacles, grown by the robot's half width
+	 * @return the <code>ZoneIndex</code> of the zones to stay out of
+	 */
+	public ZoneIndex getZones(){
+		return zones;
+	}
+	
+	/**
+	 * Getter for the distances to the red zones, obstacles and walls
+	 * @return the <code>ClearanceMap</code> kept up to date with the map
+	 */
+	public ClearanceMap getClearanceMap(){
+		return clearance;
+	}
+
 	public void saveObstacleToMap(double x, double y, double angle) {
 		if (angle<=45 || angle>=315){
 			addRedZone(x, y-5, x+10, y+5);
@@ -379,45 +600,36 @@ public class ObjectAvoidance {
 		
 	}
 	
+	/**
+	 * Check if what the sensor sees ahead is the wall rather than a block
+	 * @return return true if the point one danger distance ahead is along or past a wall
+	 */
 	public boolean wallAhead(){
-		double radHeading = odo.getAng()/180.0*Math.PI;
-		boolean res = false;
-		double xReading = odo.getX() + Math.cos(radHeading)*DANGER_DIST;
-		double yReading = odo.getY() + Math.sin(radHeading)*DANGER_DIST;
-		if (xReading > 11*GRID_LENGTH || xReading < -GRID_LENGTH || yReading > 11*GRID_LENGTH || yReading < -GRID_LENGTH){
-			res = true;
-		}
-		return res;
+		Pose pose = odo.getPose();
+		double radHeading = pose.getAng()/180.0*Math.PI;
+		double xReading = pose.getX() + Math.cos(radHeading)*DANGER_DIST;
+		double yReading = pose.getY() + Math.sin(radHeading)*DANGER_DIST;
+		return clearance.getWallClearance(xReading, yReading) == 0;
 	}
 	
 	private double distanceTravelled(double x, double y){
-		return Math.sqrt(Math.pow(odo.getX() - x, 2) + Math.pow(odo.getY() - y, 2));
+		return odo.getPose().distanceTo(x, y);
 	}
 	
 	/**
 	 * remove X1 from the redzone before wishing to return to starting position
 	 */
 	public void removeX1(){
-		redZoneXa.remove(0);
-		redZoneXb.remove(0);
-		redZoneYa.remove(0);
-		redZoneYb.remove(0);
+		zones.remove(startZone);
+		map.removeRectangle(startZone);
 	}
 	
 	private boolean nearWall(){
-		double x = odo.getX();
-		double y = odo.getY();
-		if ( x < -20 || x > 11*30.48+20 || y<-20 || y>11*30.48+20){
-			return true;
-		}
-		return false;
+		Pose pose = odo.getPose();
+		return clearance.getWallClearance(pose.getX(), pose.getY()) <= OccupancyGrid.CELL_SIZE;
 	}
 	
 	private void evade(){
-		double minAng;
-		minAng = (Math.atan2(181 - odo.getY(), 181 - odo.getX())) * (180.0 / Math.PI);
-		if (minAng < 0)
-			minAng += 360.0;
-		nav.turnTo(minAng, true);
+		nav.turnTo(odo.getPose().headingTo(181, 181), true);
 	}
 }
@@ -0,0 +1,251 @@
+package team6.finalproject;
+
+/**
+ * Registry of the objects found on the field, by position, so each is inspected once.
+ * <o>
+ * An object seen within {@link #MERGE_DISTANCE} of a known one is taken for it: its count of observations
+ * goes up and its position moves to the mean of where it was seen. Objects are kept in primitive arrays,
+ * and the arena is split into buckets of half a tile, each listing the objects in it, so finding the known
+ * object near a point only looks at the buckets around it.
+ * <o>
+ * Each object has a kind, from the light sensor once it is inspected, and a confidence that it is really
+ * there, which grows with every observation and halves when an inspection finds nothing. A delivered block
+ * is no longer where it was seen, so it is left out when merging new observations.
+ *
+ * @author Erick Zhao
+ * @version 1.0
+ * @see ObjectSearch
+ */
+public class ObjectRegistry {
+
+	/**
+	 * What an object turned out to be.
+	 */
+	public enum Kind {
+		/** Not inspected yet */
+		UNKNOWN,
+		/** A styrofoam block to collect */
+		BLOCK,
+		/** A wooden block to avoid */
+		OBSTACLE
+	}
+
+	/**
+	 * Distance in cm within which an observation is taken for a known object.
+	 */
+	public static final double MERGE_DISTANCE = 12;
+	/**
+	 * Confidence below which an object is taken for a false echo.
+	 */
+	public static final double MIN_CONFIDENCE = 0.4;
+	private static final double BUCKET_SIZE = OccupancyGrid.GRID_LENGTH / 2;
+	private static final double MIN = OccupancyGrid.MIN, MAX = OccupancyGrid.MAX;
+	private static final int BUCKETS = (int) Math.round((MAX - MIN) / BUCKET_SIZE);
+
+	private double[] x = new double[16], y = new double[16], confidence = new double[16];
+	private int[] observations = new int[16];
+	private Kind[] kind = new Kind[16];
+	private boolean[] delivered = new boolean[16];
+	private int count = 0;
+
+	// object ids in each bucket
+	private int[][] bucketObjects = new int[BUCKETS * BUCKETS][];
+	private int[] bucketCount = new int[BUCKETS * BUCKETS];
+
+	/**
+	 * Records a sighting, merging it with the known object nearby if there is one.
+	 * @param x		the <code>double</code> X coordinate in cm
+	 * @param y		the <code>double</code> Y coordinate in cm
+	 * @return		the <code>int</code> id of the object
+	 */
+	public synchronized int observe(double x, double y) {
+		int id = find(x, y);
+		if (id < 0) {
+			if (count == this.x.length)
+				grow();
+			id = count++;
+			this.x[id] = x;
+			this.y[id] = y;
+			kind[id] = Kind.UNKNOWN;
+			insert(id);
+		} else {
+			int oldBucket = bucketOf(this.x[id], this.y[id]);
+			this.x[id] += (x - this.x[id]) / (observations[id] + 1);
+			this.y[id] += (y - this.y[id]) / (observations[id] + 1);
+			if (bucketOf(this.x[id], this.y[id]) != oldBucket) {
+				removeFromBucket(id, oldBucket);
+				insert(id);
+			}
+		}
+		observations[id]++;
+		confidence[id] += (1 - confidence[id]) / 2;
+		return id;
+	}
+
+	/**
+	 * Finds the known object nearest a point, leaving out the delivered blocks.
+	 * @param x		the <code>double</code> X coordinate in cm
+	 * @param y		the <code>double</code> Y coordinate in cm
+	 * @return		the <code>int</code> id of the object, -1 if none is within {@link #MERGE_DISTANCE}
+	 */
+	public synchronized int find(double x, double y) {
+		int col = clamp((int) Math.floor((x - MIN) / BUCKET_SIZE));
+		int row = clamp((int) Math.floor((y - MIN) / BUCKET_SIZE));
+		int best = -1;
+		double bestDistance = MERGE_DISTANCE;
+		for (int r = Math.max(0, row - 1); r <= Math.min(BUCKETS - 1, row + 1); r++) {
+			for (int c = Math.max(0, col - 1); c <= Math.min(BUCKETS - 1, col + 1); c++) {
+				int bucket = r * BUCKETS + c;
+				for (int i = 0; i < bucketCount[bucket]; i++) {
+					int id = bucketObjects[bucket][i];
+					double distance = Math.hypot(this.x[id] - x, this.y[id] - y);
+					if (!delivered[id] && distance <= bestDistance) {
+						best = id;
+						bestDistance = distance;
+					}
+				}
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Records what an inspection found the object to be.
+	 * @param id		the <code>int</code> id of the object
+	 * @param kind		the <code>Kind</code> of the object
+	 */
+	public synchronized void classify(int id, Kind kind) {
+		this.kind[id] = kind;
+	}
+
+	/**
+	 * Records that an inspection found nothing where the object was seen.
+	 * @param id		the <code>int</code> id of the object
+	 */
+	public synchronized void miss(int id) {
+		confidence[id] /= 2;
+	}
+
+	/**
+	 * Records that the block has been brought to the end zone.
+	 * @param id		the <code>int</code> id of the object
+	 */
+	public synchronized void setDelivered(int id) {
+		delivered[id] = true;
+	}
+
+	/**
+	 * Tells whether an object is worth driving to: seen often enough to be there, and not inspected yet.
+	 * @param id		the <code>int</code> id of the object
+	 * @return			<code>true</code> if the object should be inspected
+	 */
+	public synchronized boolean needsInspection(int id) {
+		return kind[id] == Kind.UNKNOWN && confidence[id] >= MIN_CONFIDENCE && !delivered[id];
+	}
+
+	/**
+	 * @param id		the <code>int</code> id of the object
+	 * @return			the <code>Kind</code> of the object
+	 */
+	public synchronized Kind getKind(int id) {
+		return kind[id];
+	}
+
+	/**
+	 * @param id		the <code>int</code> id of the object
+	 * @return			the <code>double</code> confidence from 0 to 1 that the object is there
+	 */
+	public synchronized double getConfidence(int id) {
+		return confidence[id];
+	}
+
+	/**
+	 * @param id		the <code>int</code> id of the object
+	 * @return			the <code>int</code> number of times the object was seen
+	 */
+	public synchronized int getObservations(int id) {
+		return observations[id];
+	}
+
+	/**
+	 * @param id		the <code>int</code> id of the object
+	 * @return			<code>true</code> if the block was brought to the end zone
+	 */
+	public synchronized boolean isDelivered(int id) {
+		return delivered[id];
+	}
+
+	/**
+	 * @param id		the <code>int</code> id of the object
+	 * @return			the <code>double</code> mean X coordinate it was seen at, in cm
+	 */
+	public synchronized double getX(int id) {
+		return x[id];
+	}
+
+	/**
+	 * @param id		the <code>int</code> id of the object
+	 * @return			the <code>double</code> mean Y coordinate it was seen at, in cm
+	 */
+	public synchronized double getY(int id) {
+		return y[id];
+	}
+
+	/**
+	 * @return		the <code>int</code> number of objects, ids going from 0 to one less
+	 */
+	public synchronized int size() {
+		return count;
+	}
+
+	private void insert(int id) {
+		int bucket = bucketOf(x[id], y[id]);
+		if (bucketObjects[bucket] == null) {
+			bucketObjects[bucket] = new int[4];
+		} else if (bucketCount[bucket] == bucketObjects[bucket].length) {
+			int[] grown = new int[bucketCount[bucket] * 2];
+			System.arraycopy(bucketObjects[bucket], 0, grown, 0, bucketCount[bucket]);
+			bucketObjects[bucket] = grown;
+		}
+		bucketObjects[bucket][bucketCount[bucket]++] = id;
+	}
+
+	private void removeFromBucket(int id, int bucket) {
+		int[] objects = bucketObjects[bucket];
+		for (int i = 0; i < bucketCount[bucket]; i++) {
+			if (objects[i] == id) {
+				objects[i] = objects[--bucketCount[bucket]];
+				return;
+			}
+		}
+	}
+
+	private void grow() {
+		int size = x.length * 2;
+		double[] grownX = new double[size], grownY = new double[size], grownConfidence = new double[size];
+		int[] grownObservations = new int[size];
+		Kind[] grownKind = new Kind[size];
+		boolean[] grownDelivered = new boolean[size];
+		System.arraycopy(x, 0, grownX, 0, count);
+		System.arraycopy(y, 0, grownY, 0, count);
+		System.arraycopy(confidence, 0, grownConfidence, 0, count);
+		System.arraycopy(observations, 0, grownObservations, 0, count);
+		System.arraycopy(kind, 0, grownKind, 0, count);
+		System.arraycopy(delivered, 0, grownDelivered, 0, count);
+		x = grownX;
+		y = grownY;
+		confidence = grownConfidence;
+		observations = grownObservations;
+		kind = grownKind;
+		delivered = grownDelivered;
+	}
+
+	private static int bucketOf(double x, double y) {
+		return clamp((int) Math.floor((y - MIN) / BUCKET_SIZE)) * BUCKETS
+				+ clamp((int) Math.floor((x - MIN) / BUCKET_SIZE));
+	}
+
+	private static int clamp(int bucket) {
+		return bucket < 0 ? 0 : (bucket >= BUCKETS ? BUCKETS - 1 : bucket);
+	}
+}
@@ -1,8 +1,5 @@
 package team6.finalproject;
 
-import java.util.ArrayList;
-import java.util.List;
-
 import lejos.hardware.Sound;
 import lejos.hardware.ev3.LocalEV3;
 import lejos.hardware.motor.EV3LargeRegulatedMotor;
@@ -20,24 +17,20 @@ public class ObjectSearch {
 	private final EV3LargeRegulatedMotor clawMotor;
 	private Navigation nav;
 	private CountdownTimer countdown;
+	private MissionScheduler scheduler;
 	private UltrasonicPoller lowerpoll;
 	private ObjectAvoidance oa;
-	private List<Float> obstacles = new ArrayList<Float>();
+	private ObjectRegistry registry = new ObjectRegistry();
 	private static final double THRESHOLD = 60;
 	private static final double TOLERANCE = 5;
 	private static float SPEED = 150;
 	private static final int CLAW_SPEED = 200;
 	private static final int CLAW_ACCELERATION = 3000;
-	private static int ADJUSTMENT_ANGLE = 21;
-	//If boardsize is 1 : It moves down one square at a time
-	//If boardsize is 2 : It moves down 2 squares at a time (etc.)
-	//For the final, since we're splitting 12 blocks in 3, boardsize = 4.
-	//For the beta demo, we can split 8 blocks in 3 with boardsize = 8/3.
-	private static final double BOARD_SIZE = 4;
-	private static final double SWEEP_ANG=90;
+	private static final double SWEEP_ANG=CoveragePlanner.SWEEP_END;
 	private double initX,initY,initTheta,endzoneX,endzoneY; //We take info for the endzone through wi-fi
-	private double distToObject; //Distance that the robot travels to inspect object
-	private boolean sameObject=false; //Determines if the robot is looking at the same object
+	private double sweepX,sweepY; //Point the current neighbourhood is swept from, which the candidates are measured from
+	private SweepScan scan = new SweepScan(); //Readings of the current sweep
+	private double[] samplePose = new double[3];
 	
 	/**
 	 * Constructor for the object search.
@@ -50,6 +43,7 @@ public class ObjectSearch {
 	 */
 	public ObjectSearch(Odometer odo, Navigation nav,UltrasonicPoller uspoll, ObjectAvoidance oa,EV3LargeRegulatedMotor claw, CountdownTimer countdown) {
 		this.countdown = countdown;
+		this.scheduler = new MissionScheduler(countdown, oa.getPlanner(), odo, 0, 0);
 		this.odo = odo;
 		this.nav = nav;
 		this.lowerpoll = uspoll;
@@ -64,22 +58,42 @@ public class ObjectSearch {
 	}
 	/**
 	 * Implements all the elements of the search into an algorithm.
-	 * Performs a sweep and moves to next neighbourhood.
-	 * Runs for 4 minutes and returns to starting point.
+	 * Plans the neighbourhoods to sweep from the sensor range and the known zones,
+	 * then moves to each one in turn and sweeps it, as long as the scheduler says
+	 * there is time left to do so and still get home before the end of the match.
+	 * The countdown's travel time is a hard stop, should the scheduler's estimates be off.
+	 * Returns to starting point afterwards.
 	 */
 	public void doSearch(){
-		//The amount of time for which the search runs is four minutes.
-		//After five minutes, this infinite loop would be interrupted and the robot
-		//will return to (0,0).
+		CoveragePlanner coverage = new CoveragePlanner(THRESHOLD, oa.getZones(), oa.getMap().getWallMargin(),
+				odo.getWheelRadius(), odo.getTrack());
+		Pose start = odo.getPose();
+		double[][] viewpoints = coverage.plan(start.getX(), start.getY(), start.getAng());
 		
-		int wp=1;
-		while(!countdown.isTimeUp() && wp<9){
-			//Scan the next neighbourhood
+		for (int wp = 0; wp < viewpoints.length; wp++){
+			if (countdown.isTimeUp() || scheduler.shouldReturn()){
+				break;
+			}
+			//Skip the neighbourhoods that are too far to sweep and still make it home
+			if (!scheduler.canSweepAt(viewpoints[wp][0], viewpoints[wp][1])){
+				continue;
+			}
+			//Move to the next neighbourhood, timing the trip to correct the estimates
+			Pose from = odo.getPose();
+			double estimate = scheduler.tripTime(from.getX(), from.getY(), from.getAng(),
+					viewpoints[wp][0], viewpoints[wp][1]);
+			long startTime = System.currentTimeMillis();
+			oa.travel(viewpoints[wp][0], viewpoints[wp][1]);
+			nav.turnTo(CoveragePlanner.SWEEP_START, true);
+			scheduler.recordTrip(estimate, (System.currentTimeMillis() - startTime) / 1000.0);
+			if (countdown.isTimeUp()){
+				break;
+			}
+			//Scan it
+			startTime = System.currentTimeMillis();
 			sweep();
+			scheduler.recordSweep((System.currentTimeMillis() - startTime) / 1000.0);
 			Sound.beep();
-			travelToWaypoint(wp);
-			nav.turnTo(0, true);
-			wp++;
 		}
 		
 		oa.removeX1();
@@ -93,127 +107,124 @@ public class ObjectSearch {
 	 * @param y	middle of endzone's y position
 	 */
 	public void bringToEndzone(double x, double y){
-		initX=odo.getX();
-		initY=odo.getY();
-		initTheta=odo.getAng();
+		Pose start = odo.getPose();
+		initX=start.getX();
+		initY=start.getY();
+		initTheta=start.getAng();
 		//Bring block to endzone
 		oa.travel(endzoneX, endzoneY);
 		handleBlock(false);
-		//Bring robot back to last neighborhood
-		oa.travel(endzoneX, endzoneY);
+		//Bring robot back to where it picked the block up
+		oa.travel(initX, initY);
 		nav.turnTo(initTheta, true);
 	}
 	
 	/**
-	 * Sweeps the current neighborhood by rotating about a point, 
-	 * keeping track of if objects are detected in the neighborhood
+	 * Sweeps the current neighborhood by rotating about a point, recording what the sensor
+	 * sees all the way round, then inspects the objects found in it, nearest first
 	 */
 	public void sweep(){
-		initX=odo.getX();
-		initY=odo.getY();
-		double currAng = odo.getAng();
-		//Start sweeping counter-clockwise (I think it increases the angle)
+		Pose start = odo.getPose();
+		sweepX=start.getX();
+		sweepY=start.getY();
+		double currAng = start.getAng();
+		scan.clear();
+		long lastSample = lowerpoll.getSampleTime();
+		//Start sweeping counter-clockwise
 		nav.setSpeeds(-SPEED,SPEED);
 		while(currAng<SWEEP_ANG || currAng>(SWEEP_ANG+180)){
-			//An object is seen
-			if(lowerpoll.getDistance()<=THRESHOLD){
-				//ADJUSTMENT_ANGLE = (int) Math.atan2(10,lowerpoll.getDistance());
-				Sound.beep();
-				//Add to object list
-				obstacles.add(new Float(currAng));
-				//Inspect object
-				inspectBlock();
-				nav.setSpeeds(-SPEED,SPEED);
-				//Continue turning as long as it sees the same object
-				while(lowerpoll.getDistance()<=THRESHOLD){
-					//If it turned for too big of an angle, check that it still sees the same object
-					if((odo.getAng()-currAng)>Math.atan(22.5/distToObject)){
-						//Next time the loop runs, it'll check if the object is the same
-						break;
-					} else {
-						continue;
-					}
-				}
-				//Stop, to show that the object isn't seen anymore
-				nav.setSpeeds(0,0);
-				try{Thread.sleep(100);}catch(Exception e){};
-				//Continue turning
-				nav.setSpeeds(-SPEED, SPEED);
+			//Record each new reading with where the robot was when it was taken
+			long sampleTime = lowerpoll.getSampleTime();
+			if (sampleTime != lastSample){
+				lastSample = sampleTime;
+				odo.poseAt(sampleTime, samplePose);
+				scan.add(samplePose[0], samplePose[1], samplePose[2], lowerpoll.getDistance());
 			}
 			currAng=odo.getAng();
 		}
 		nav.setSpeeds(0, 0);
+		
+		SweepScan.Candidate[] candidates = scan.segment(THRESHOLD);
+		for (int i = 0; i < candidates.length; i++){
+			//Match it to the objects seen from the other neighbourhoods
+			int id = registry.observe(candidates[i].getX(), candidates[i].getY());
+			//Skip what is already mapped as an obstacle
+			if (registry.getKind(id) == ObjectRegistry.Kind.UNKNOWN
+					&& oa.getZones().find(candidates[i].getX(), candidates[i].getY()) >= 0){
+				registry.classify(id, ObjectRegistry.Kind.OBSTACLE);
+			}
+			//Skip what was already inspected
+			if (!registry.needsInspection(id)){
+				continue;
+			}
+			Sound.beep();
+			//Inspect object
+			inspectBlock(candidates[i], id);
+		}
+	}
+	
+	/**
+	 * Getter for the objects seen so far
+	 * @return the <code>ObjectRegistry</code> of the objects found on the sweeps
+	 */
+	public ObjectRegistry getRegistry(){
+		return registry;
 	}
 	
 	/**
-	 * Uses light sensor to determine if block is wooden or if block is blue styrofoam
+	 * Drives up to an object found on the sweep and uses light sensor to determine if block
+	 * is wooden or if block is blue styrofoam, then comes back to the sweep point
+	 * @param candidate	the object to inspect
+	 * @param id		the object's id in the registry
 	 */
-	private void inspectBlock() {
-		nav.turnTo(odo.getAng()+ADJUSTMENT_ANGLE,true);
+	private void inspectBlock(SweepScan.Candidate candidate, int id) {
+		nav.turnTo(candidate.getHeading(),true);
 		nav.goForward();
-		double orgX = odo.getX();
-		double orgY = odo.getY();
+		Pose origin = odo.getPose();
 		while (!ColorPoller.isObject()) {
 			// Check if we are approching a red zone
 			if(oa.redAhead()){
 				break;
 			}
 			// Check if we are going too far
-			if(Math.sqrt(Math.pow(odo.getX()-orgX,2)+Math.pow(odo.getY()-orgY,2)) > THRESHOLD + TOLERANCE){
+			if(odo.getPose().distanceTo(origin.getX(), origin.getY()) > candidate.getDistance() + TOLERANCE){
 				break;
 			}
 			continue;
 		}
 		nav.setSpeeds(0,0);
 		
-		if (ColorPoller.isBlock()) {
+		if (ColorPoller.isBlock() && !scheduler.canDeliverTo(endzoneX, endzoneY)) {
+			//No time left to deliver it and get home, so leave it there
+			registry.classify(id, ObjectRegistry.Kind.BLOCK);
+			nav.goForward(-odo.getPose().distanceTo(sweepX, sweepY));
+		} else if (ColorPoller.isBlock()) {
+			registry.classify(id, ObjectRegistry.Kind.BLOCK);
 			lowerpoll.enable(false);
 			Sound.beep();
 			handleBlock(true);
 			bringToEndzone(endzoneX,endzoneY);
+			registry.setDelivered(id);
 			lowerpoll.enable(true);
-			oa.travel(initX,initY);
-		} else {
-			double theX = odo.getX();
-			double theY = odo.getY();
-			nav.goBackward();
-			while(Math.hypot(Math.abs(initX-odo.getX()), Math.abs(initY-odo.getY()))>0.5){
-				continue;
+			//Back to the sweep point, facing the way the sweep started, for the next candidate
+			oa.travel(sweepX,sweepY);
+			nav.turnTo(CoveragePlanner.SWEEP_START, true);
+		} else if (ColorPoller.isObject()) {
+			registry.classify(id, ObjectRegistry.Kind.OBSTACLE);
+			Pose found = odo.getPose();
+			//Back up to the sweep point, and map the obstacle meanwhile
+			MotionTask backUp = nav.goForwardAsync(-found.distanceTo(sweepX, sweepY));
+			oa.saveObstacleToMap(found.getX(), found.getY(), found.getAng());
+			try {
+				backUp.await();
+			} catch (InterruptedException e) {
+				backUp.cancel();
 			}
-			oa.saveObstacleToMap(theX, theY,odo.getAng());
-			distToObject = Math.hypot(Math.abs(initX-odo.getX()),Math.abs(initY-odo.getY()));
-			nav.setSpeeds(0,0);
-		}
-	}
-	
-	/**
-	 * Moves the robot to the starting point for the next neighborhood to scan
-	 * @param wayPoint	the <code>int</code> coordinate for start of next neighborhood to scan
-	 */
-	public void travelToWaypoint(int wayPoint) {
-		switch (wayPoint){
-		case 1:
-		case 2:
-			oa.travel(odo.getX()+BOARD_SIZE*30.48, odo.getY());
-			break;
-		case 3:
-		case 6:
-			oa.travel(odo.getX(), odo.getY()+30.48);
-			break;
-		case 4: 
-		case 5:
-			oa.travel(odo.getX()-BOARD_SIZE*30.48,odo.getY());
-			break;
-		case 7: 
-		case 8:
-			oa.travel(odo.getX()+BOARD_SIZE*30.48,odo.getY());
-			break;
-		case 9:
-			oa.travel(0, 0);
-			nav.turnTo(0,true);
-			break;
+		} else {
+			//Nothing there after all
+			registry.miss(id);
+			nav.goForward(-odo.getPose().distanceTo(sweepX, sweepY));
 		}
-			
 	}
 	
 	/**
@@ -227,18 +238,4 @@ public class ObjectSearch {
 			clawMotor.rotateTo(0);
 		}
 	}
-	
-	/**
-	 * Saves where a detected obstacle is located to mark that grid square as forbidden.
-	 * @param x	the x coordinate currently read by the odometer
-	 * @param y	the y coordinate currently read by the odometer
-	 */
-	private void saveObstacleToMap(double x, double y) { // Not used
-		boolean grid[][] = new boolean[12][12];
-		
-		int gridX = (x>=0) ? ((int) x/30+1):0;
-		int gridY = (y>=0) ? ((int) y/30+1):0;
-		
-		grid[gridX][gridY] = true;
-	}
 }
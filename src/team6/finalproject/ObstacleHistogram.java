@@ -0,0 +1,143 @@
+package team6.finalproject;
+
+/**
+ * Polar histogram of the obstacles around the robot, for vector field histogram steering.
+ * <o>
+ * Each ultrasonic echo is turned into a point on the field by the caller, from the robot's pose and the
+ * direction the sensor was facing when it was sampled. The points are kept for a while, so the oscillating
+ * sensor builds up a picture of the whole arc in front of the robot. When the histogram is updated, every recent point
+ * close enough adds a weight to the sectors it blocks as seen from the robot: more the closer it is, and
+ * over a wider arc the closer it is, since the robot's own half width must also get past it. Sectors whose
+ * total weight exceeds a threshold are blocked.
+ * <o>
+ * {@link #steer(double, double)} then picks the free sector closest to the heading the robot wants.
+ *
+ * @author Erick Zhao
+ * @version 1.0
+ * @see ObjectAvoidance
+ */
+public class ObstacleHistogram {
+
+	public static final int SECTORS = 72;
+	public static final double SECTOR_ANGLE = 360.0 / SECTORS;
+	private static final int MAX_POINTS = 64;
+
+	private final double window, radius, threshold;
+	private final long memory; // ns
+
+	// ring of recent echoes, as field coordinates and System.nanoTime()
+	private final double[] pointX = new double[MAX_POINTS], pointY = new double[MAX_POINTS];
+	private final long[] pointTime = new long[MAX_POINTS];
+	private int head = 0, count = 0;
+	private final double[] density = new double[SECTORS];
+
+	/**
+	 * Constructor for an empty histogram.
+	 * @param window		the <code>double</code> distance in cm beyond which echoes are ignored
+	 * @param radius		the <code>double</code> clearance in cm the robot needs from an obstacle's echo,
+	 * 						usually its half width plus a margin
+	 * @param threshold		the <code>double</code> weight above which a sector is blocked; an echo at distance
+	 * 						<code>d</code> weighs <code>window - d</code>
+	 * @param memory		the <code>long</code> time in ms an echo is kept
+	 */
+	public ObstacleHistogram(double window, double radius, double threshold, long memory) {
+		this.window = window;
+		this.radius = radius;
+		this.threshold = threshold;
+		this.memory = memory * 1000000L;
+	}
+
+	/**
+	 * Adds an obstacle point.
+	 * @param x			the <code>double</code> X coordinate in cm
+	 * @param y			the <code>double</code> Y coordinate in cm
+	 * @param time		the <code>long</code> <code>System.nanoTime()</code> at which it was seen
+	 */
+	public synchronized void addPoint(double x, double y, long time) {
+		pointX[head] = x;
+		pointY[head] = y;
+		pointTime[head] = time;
+		head = (head + 1) % MAX_POINTS;
+		count = Math.min(count + 1, MAX_POINTS);
+	}
+
+	/**
+	 * Rebuilds the histogram around the robot from the recent echoes.
+	 * @param pose		the <code>Pose</code> of the robot
+	 * @param range		the <code>double</code> distance in cm beyond which echoes are left out, e.g. the distance
+	 * 					to the destination when it is closer than the window
+	 * @param now		the <code>long</code> <code>System.nanoTime()</code>
+	 */
+	public synchronized void update(Pose pose, double range, long now) {
+		for (int k = 0; k < SECTORS; k++) {
+			density[k] = 0;
+		}
+		range = Math.min(range, window);
+		for (int i = 0; i < count; i++) {
+			if (now - pointTime[i] > memory)
+				continue;
+			double dx = pointX[i] - pose.getX(), dy = pointY[i] - pose.getY();
+			double distance = Math.hypot(dx, dy);
+			if (distance >= range)
+				continue;
+			double direction = Math.toDegrees(Math.atan2(dy, dx));
+			// widen the obstacle by the clearance the robot needs to pass it
+			double spread = distance <= radius ? 90 : Math.toDegrees(Math.asin(radius / distance));
+			double weight = window - distance;
+			int first = (int) Math.floor((direction - spread) / SECTOR_ANGLE);
+			int last = (int) Math.floor((direction + spread) / SECTOR_ANGLE);
+			for (int k = first; k <= last; k++) {
+				density[((k % SECTORS) + SECTORS) % SECTORS] += weight;
+			}
+		}
+	}
+
+	/**
+	 * Tells whether a direction is blocked, as of the last {@link #update(Pose, double, long)}.
+	 * @param heading	the <code>double</code> direction in degrees
+	 * @return			<code>true</code> if the sector of the direction is blocked
+	 */
+	public synchronized boolean isBlocked(double heading) {
+		return density[sectorOf(heading)] > threshold;
+	}
+
+	/**
+	 * Picks the free direction closest to the one wanted.
+	 * @param heading		the <code>double</code> direction wanted in degrees
+	 * @param maxDeviation	the <code>double</code> largest angle in degrees to deviate from it
+	 * @return				the <code>double</code> center in degrees of the closest free sector, or
+	 * 						<code>NaN</code> if none is free within the deviation
+	 */
+	public synchronized double steer(double heading, double maxDeviation) {
+		int wanted = sectorOf(heading);
+		double within = ((heading % 360) + 360) % 360 - wanted * SECTOR_ANGLE;
+		int steps = (int) Math.ceil(maxDeviation / SECTOR_ANGLE);
+		for (int step = 0; step <= steps; step++) {
+			// look on both sides, the side of the wanted heading within its sector first
+			int left = (wanted + step) % SECTORS, right = ((wanted - step) % SECTORS + SECTORS) % SECTORS;
+			boolean leftFirst = within >= SECTOR_ANGLE / 2;
+			int first = leftFirst ? left : right, second = leftFirst ? right : left;
+			if (density[first] <= threshold)
+				return (first + 0.5) * SECTOR_ANGLE;
+			if (density[second] <= threshold)
+				return (second + 0.5) * SECTOR_ANGLE;
+		}
+		return Double.NaN;
+	}
+
+	/**
+	 * Forgets every echo.
+	 */
+	public synchronized void clear() {
+		count = 0;
+		head = 0;
+		for (int k = 0; k < SECTORS; k++) {
+			density[k] = 0;
+		}
+	}
+
+	private static int sectorOf(double heading) {
+		double wrapped = ((heading % 360) + 360) % 360;
+		return (int) (wrapped / SECTOR_ANGLE) % SECTORS;
+	}
+}
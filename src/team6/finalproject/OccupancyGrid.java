@@ -0,0 +1,226 @@
+package team6.finalproject;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Occupancy grid of the 12x12 tile arena, at a quarter of a tile per cell.
+ * <o>
+ * The grid is a configuration space: the rectangles marked on it are expected to be already grown by the
+ * robot's half width, so the robot's center can go anywhere a cell is free. Each cell is one bit of a
+ * <code>BitSet</code>, set when any marked rectangle overlaps the cell. A strip along the walls is always
+ * occupied.
+ * <o>
+ * The rectangles are kept, so a single one can be removed later (e.g. the starting corner before heading
+ * home), after which the bits are rebuilt from the remaining ones.
+ * <o>
+ * Maps derived from the grid register a {@link Listener} to be told which cells changed. Listeners are
+ * called after the grid's lock is released, on the thread that changed the grid.
+ *
+ * @author Erick Zhao
+ * @version 1.0
+ * @see AStarPlanner
+ */
+public class OccupancyGrid {
+
+	/**
+	 * Callback for changes to the grid.
+	 */
+	public interface Listener {
+		/**
+		 * Called when cells of a block have changed.
+		 * @param colA		the <code>int</code> first column of the block
+		 * @param rowA		the <code>int</code> first row of the block
+		 * @param colB		the <code>int</code> last column of the block
+		 * @param rowB		the <code>int</code> last row of the block
+		 * @param occupied	<code>true</code> if cells were only marked, <code>false</code> if some may have been
+		 * 					freed
+		 */
+		void cellsChanged(int colA, int rowA, int colB, int rowB, boolean occupied);
+	}
+
+	public static final double GRID_LENGTH = 30.48;
+	public static final double CELL_SIZE = GRID_LENGTH / 4;
+	public static final double MIN = -GRID_LENGTH, MAX = 11 * GRID_LENGTH; //Arena walls
+	public static final int SIZE = (int) Math.round((MAX - MIN) / CELL_SIZE);
+
+	private final double wallMargin;
+	private final BitSet occupied = new BitSet(SIZE * SIZE);
+
+	// marked rectangles, as {xa, ya, xb, yb} at index 4*id
+	private double[] rectangles = new double[64];
+	private boolean[] removed = new boolean[16];
+	private int rectangleCount = 0;
+	private List<Listener> listeners = new ArrayList<Listener>();
+
+	/**
+	 * Constructor for an empty grid.
+	 * @param wallMargin	the <code>double</code> width in cm of the strip along the walls the robot's center
+	 * 						must stay out of, usually its half width
+	 */
+	public OccupancyGrid(double wallMargin) {
+		this.wallMargin = wallMargin;
+		markWalls();
+	}
+
+	/**
+	 * Marks a rectangle as occupied.
+	 * @param x1	the <code>double</code> X coordinate of one corner in cm
+	 * @param y1	the <code>double</code> Y coordinate of one corner in cm
+	 * @param x2	the <code>double</code> X coordinate of the opposite corner in cm
+	 * @param y2	the <code>double</code> Y coordinate of the opposite corner in cm
+	 * @return		the <code>int</code> id of the rectangle, to pass to {@link #removeRectangle(int)}
+	 */
+	public int markRectangle(double x1, double y1, double x2, double y2) {
+		int id;
+		synchronized (this) {
+			id = addRectangle(x1, y1, x2, y2);
+		}
+		notifyListeners(Math.max(0, cellOf(Math.min(x1, x2))), Math.max(0, cellOf(Math.min(y1, y2))),
+				Math.min(SIZE - 1, cellOf(Math.max(x1, x2))), Math.min(SIZE - 1, cellOf(Math.max(y1, y2))), true);
+		return id;
+	}
+
+	private int addRectangle(double x1, double y1, double x2, double y2) {
+		if (4 * rectangleCount == rectangles.length) {
+			double[] grownRectangles = new double[rectangles.length * 2];
+			System.arraycopy(rectangles, 0, grownRectangles, 0, rectangles.length);
+			rectangles = grownRectangles;
+			boolean[] grownRemoved = new boolean[removed.length * 2];
+			System.arraycopy(removed, 0, grownRemoved, 0, removed.length);
+			removed = grownRemoved;
+		}
+		int id = rectangleCount++;
+		rectangles[4 * id] = Math.min(x1, x2);
+		rectangles[4 * id + 1] = Math.min(y1, y2);
+		rectangles[4 * id + 2] = Math.max(x1, x2);
+		rectangles[4 * id + 3] = Math.max(y1, y2);
+		fill(rectangles[4 * id], rectangles[4 * id + 1], rectangles[4 * id + 2], rectangles[4 * id + 3]);
+		return id;
+	}
+
+	/**
+	 * Removes a rectangle marked earlier, and frees the cells no other rectangle overlaps.
+	 * @param id	the <code>int</code> id returned by {@link #markRectangle(double, double, double, double)}
+	 */
+	public void removeRectangle(int id) {
+		synchronized (this) {
+			if (id < 0 || id >= rectangleCount || removed[id])
+				return;
+			removed[id] = true;
+			occupied.clear();
+			markWalls();
+			for (int i = 0; i < rectangleCount; i++) {
+				if (!removed[i])
+					fill(rectangles[4 * i], rectangles[4 * i + 1], rectangles[4 * i + 2], rectangles[4 * i + 3]);
+			}
+		}
+		notifyListeners(0, 0, SIZE - 1, SIZE - 1, false);
+	}
+
+	/**
+	 * Registers a callback for changes to the grid.
+	 * @param listener		the <code>Listener</code> to call
+	 */
+	public synchronized void addListener(Listener listener) {
+		listeners.add(listener);
+	}
+
+	/**
+	 * Getter for the width of the strip along the walls.
+	 * @return		the <code>double</code> width in cm
+	 */
+	public double getWallMargin() {
+		return wallMargin;
+	}
+
+	/**
+	 * Tells whether a cell is in the strip along the walls.
+	 * @param col	the <code>int</code> column of the cell
+	 * @param row	the <code>int</code> row of the cell
+	 * @return		<code>true</code> if the cell is along a wall or outside the arena
+	 */
+	public boolean isWall(int col, int row) {
+		int low = cellOf(MIN + wallMargin), high = cellOf(MAX - wallMargin);
+		return col <= low || row <= low || col >= high || row >= high;
+	}
+
+	/**
+	 * Tells whether a cell is free. Cells outside the arena are never free.
+	 * @param col	the <code>int</code> column of the cell, from 0 at the left wall
+	 * @param row	the <code>int</code> row of the cell, from 0 at the bottom wall
+	 * @return		<code>true</code> if the cell is free
+	 */
+	public synchronized boolean isFree(int col, int row) {
+		if (col < 0 || row < 0 || col >= SIZE || row >= SIZE)
+			return false;
+		return !occupied.get(row * SIZE + col);
+	}
+
+	/**
+	 * Tells whether the cell holding a point is free.
+	 * @param x		the <code>double</code> X coordinate in cm
+	 * @param y		the <code>double</code> Y coordinate in cm
+	 * @return		<code>true</code> if the cell is free
+	 */
+	public boolean isFreeAt(double x, double y) {
+		return isFree(cellOf(x), cellOf(y));
+	}
+
+	/**
+	 * Copies the occupied cells, as bits at index <code>row * SIZE + col</code>. Planners work on a copy so
+	 * they do not hold the lock while searching.
+	 * @return		a new <code>BitSet</code> of the occupied cells
+	 */
+	public synchronized BitSet snapshot() {
+		return (BitSet) occupied.clone();
+	}
+
+	/**
+	 * Column or row of the cell holding a coordinate.
+	 * @param coordinate	the <code>double</code> X or Y coordinate in cm
+	 * @return				the <code>int</code> column or row, which may be outside the grid
+	 */
+	public static int cellOf(double coordinate) {
+		return (int) Math.floor((coordinate - MIN) / CELL_SIZE);
+	}
+
+	/**
+	 * Coordinate of the center of a column or row.
+	 * @param cell		the <code>int</code> column or row
+	 * @return			the <code>double</code> X or Y coordinate in cm
+	 */
+	public static double centerOf(int cell) {
+		return MIN + (cell + 0.5) * CELL_SIZE;
+	}
+
+	private void notifyListeners(int colA, int rowA, int colB, int rowB, boolean marked) {
+		List<Listener> toCall;
+		synchronized (this) {
+			toCall = new ArrayList<Listener>(listeners);
+		}
+		for (Listener listener : toCall) {
+			listener.cellsChanged(colA, rowA, colB, rowB, marked);
+		}
+	}
+
+	private void markWalls() {
+		fill(MIN, MIN, MAX, MIN + wallMargin);
+		fill(MIN, MAX - wallMargin, MAX, MAX);
+		fill(MIN, MIN, MIN + wallMargin, MAX);
+		fill(MAX - wallMargin, MIN, MAX, MAX);
+	}
+
+	/**
+	 * Sets the bits of every cell overlapping a rectangle.
+	 */
+	private void fill(double xa, double ya, double xb, double yb) {
+		int colA = Math.max(0, cellOf(xa)), colB = Math.min(SIZE - 1, cellOf(xb));
+		int rowA = Math.max(0, cellOf(ya)), rowB = Math.min(SIZE - 1, cellOf(yb));
+		for (int row = rowA; row <= rowB; row++) {
+			if (colA <= colB)
+				occupied.set(row * SIZE + colA, row * SIZE + colB + 1);
+		}
+	}
+}
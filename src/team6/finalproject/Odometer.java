@@ -35,10 +35,35 @@ import lejos.hardware.motor.EV3LargeRegulatedMotor;
  */
 public class Odometer extends PausableTimerListener {
 
+	/**
+	 * The ways in which a wheel displacement can be turned into a change of position.
+	 * <o>
+	 * <code>EULER</code> applies the whole displacement along the heading at the end of the update.
+	 * <code>MIDPOINT</code> applies it along the heading halfway through the update.
+	 * <code>EXACT_ARC</code> treats the update as a circular arc and applies the arc's chord along the
+	 * midpoint heading, which is exact for constant wheel speeds.
+	 */
+	public enum Integration { EULER, MIDPOINT, EXACT_ARC }
+
 	private EV3LargeRegulatedMotor leftMotor, rightMotor;
+	private MotorCommander commander;
 	private double leftRadius, rightRadius, width;
 	private double x, y, theta;
-	private double[] oldDH, dDH;
+	private int lastLeftTacho, lastRightTacho;
+	private double[] dDH, step;
+	private Integration integration = Integration.EULER;
+	private volatile Pose pose;
+
+	// pose history, written in the critical region on every update
+	private static final int HISTORY_SIZE = 64;
+	private final long[] historyTime = new long[HISTORY_SIZE];
+	private final double[] historyX = new double[HISTORY_SIZE];
+	private final double[] historyY = new double[HISTORY_SIZE];
+	private final double[] historyTheta = new double[HISTORY_SIZE];
+	private final int[] historyLeftTacho = new int[HISTORY_SIZE];
+	private final int[] historyRightTacho = new int[HISTORY_SIZE];
+	private int historyHead = 0, historyCount = 0;
+	private double historyFraction;
 	/**
 	 * Constructor for Odometer.
 	 * @param leftMotor 		the <code>EV3LargeRegulatedMotor</code> that is our left motor
@@ -53,6 +78,7 @@ public class Odometer extends PausableTimerListener {
 
 		this.leftMotor = leftMotor;
 		this.rightMotor = rightMotor;
+		this.commander = new MotorCommander(leftMotor, rightMotor);
 
 		//Calibrated values
 		this.rightRadius = wheelRadius;
@@ -62,11 +88,35 @@ public class Odometer extends PausableTimerListener {
 		this.x = 0.0;
 		this.y = 0.0;
 		this.theta = 90.0;
-		this.oldDH = new double[2];
+		publish();
 		this.dDH = new double[2];
+		this.step = new double[3];
 	}
+
+	/**
+	 * Selects how wheel displacements are integrated and how often the odometer updates.
+	 * <o>
+	 * The default is <code>EULER</code> at the shared <code>Timer</code> refresh rate. A shorter period with
+	 * <code>EXACT_ARC</code> keeps the drift low at high speeds and during turns.
+	 * @param integration 	the <code>Integration</code> mode to use from the next update on
+	 * @param period 		the <code>int</code> update period in milliseconds
+	 */
+	public void setIntegration(Integration integration, int period) {
+		this.integration = integration;
+		setRefreshRate(period);
+	}
+
+	/**
+	 * Getter for the integration mode
+	 * @return 		the <code>Integration</code> mode currently in use
+	 */
+	public Integration getIntegration() {
+		return this.integration;
+	}
+
 	/** 
-	 * Calculates displacement and heading of the robot.
+	 * Calculates the displacement and heading change of the robot since the last update.
+	 * Must be called from within the critical region, since the calibration can change at any time.
 	 * @param data 		a <code>double</code> array representing our input data.
 	 */
 	private void getDisplacementAndHeading(double[] data) {
@@ -74,29 +124,222 @@ public class Odometer extends PausableTimerListener {
 		leftTacho = leftMotor.getTachoCount();
 		rightTacho = rightMotor.getTachoCount();
 
-		data[0] = (leftTacho * leftRadius + rightTacho * rightRadius) * Math.PI / 360.0;
-		data[1] = (rightTacho * rightRadius - leftTacho * leftRadius) / width;
+		displacementAndHeading(leftTacho - lastLeftTacho, rightTacho - lastRightTacho,
+				leftRadius, rightRadius, width, data);
+
+		lastLeftTacho = leftTacho;
+		lastRightTacho = rightTacho;
 	}
 
 	/**
 	 * Recompute the odometer values using the displacement and heading changes every <code>Timer</code> loop. 
 	 */
 	public void timedOut() {
-		this.getDisplacementAndHeading(dDH);
-		dDH[0] -= oldDH[0];
-		dDH[1] -= oldDH[1];
-
 		// update the position in a critical region
 		synchronized (this) {
-			theta += dDH[1];
-			theta = fixDegAngle(theta);
+			this.getDisplacementAndHeading(dDH);
+
+			step[0] = x;
+			step[1] = y;
+			step[2] = theta;
+			integrate(integration, step, dDH[0], dDH[1]);
+			x = step[0];
+			y = step[1];
+			theta = step[2];
+			publish();
+		}
+	}
+
+	/**
+	 * Converts wheel rotations into a displacement and a heading change.
+	 * @param leftTacho 	the <code>int</code> rotation of the left wheel in degrees
+	 * @param rightTacho 	the <code>int</code> rotation of the right wheel in degrees
+	 * @param leftRadius 	the <code>double</code> radius of the left wheel in cm
+	 * @param rightRadius 	the <code>double</code> radius of the right wheel in cm
+	 * @param width 		the <code>double</code> distance between the wheels in cm
+	 * @param data 			the <code>double</code> array in which to store the displacement in cm and
+	 * 						the heading change in degrees
+	 */
+	public static void displacementAndHeading(int leftTacho, int rightTacho,
+			double leftRadius, double rightRadius, double width, double[] data) {
+		data[0] = (leftTacho * leftRadius + rightTacho * rightRadius) * Math.PI / 360.0;
+		data[1] = (rightTacho * rightRadius - leftTacho * leftRadius) / width;
+	}
+
+	/**
+	 * Applies one displacement and heading change to a position.
+	 * @param integration 	the <code>Integration</code> mode to use
+	 * @param position 		the <code>double</code> array holding the x, y, and theta values, updated in place
+	 * @param distance 		the <code>double</code> distance travelled by the centre of the robot in cm
+	 * @param dTheta 		the <code>double</code> heading change in degrees
+	 */
+	public static void integrate(Integration integration, double[] position, double distance, double dTheta) {
+		double heading, chord;
+		switch (integration) {
+		case EULER:
+			heading = fixDegAngle(position[2] + dTheta);
+			chord = distance;
+			break;
+		case MIDPOINT:
+			heading = position[2] + dTheta / 2.0;
+			chord = distance;
+			break;
+		default:
+			heading = position[2] + dTheta / 2.0;
+			double halfAngle = Math.toRadians(dTheta) / 2.0;
+			// chord of the arc; sin(a)/a tends to 1 for a straight line
+			chord = (Math.abs(halfAngle) < 1e-6) ? distance : distance * Math.sin(halfAngle) / halfAngle;
+			break;
+		}
+
+		position[0] += chord * Math.cos(Math.toRadians(heading));
+		position[1] += chord * Math.sin(Math.toRadians(heading));
+		position[2] = fixDegAngle(position[2] + dTheta);
+	}
+
+	/**
+	 * Publishes the current x, y and theta as a new {@link Pose} snapshot and records it in the pose history.
+	 * Must be called from within the critical region, after every change to the position.
+	 */
+	private void publish() {
+		long now = System.nanoTime();
+		pose = new Pose(x, y, theta, now);
+
+		historyTime[historyHead] = now;
+		historyX[historyHead] = x;
+		historyY[historyHead] = y;
+		historyTheta[historyHead] = theta;
+		historyLeftTacho[historyHead] = lastLeftTacho;
+		historyRightTacho[historyHead] = lastRightTacho;
+		historyHead = (historyHead + 1) % HISTORY_SIZE;
+		if (historyCount < HISTORY_SIZE)
+			historyCount++;
+	}
+
+	/**
+	 * Looks up where the robot was at a given time, interpolating between the two recorded updates around it.
+	 * <o>
+	 * Used to pair a sensor event with the pose at the moment the sensor was sampled, rather than the pose
+	 * at the moment the event was noticed. Times older than the history are clamped to the oldest entry,
+	 * and times newer than the last update are clamped to the latest entry.
+	 * @param time 		the <code>long</code> <code>System.nanoTime()</code> of interest
+	 * @param position 	the <code>double</code> array in which to store the x, y, and theta values
+	 * @return 			<code>true</code> if the time fell inside the recorded history, <code>false</code> if it was clamped
+	 */
+	public boolean poseAt(long time, double[] position) {
+		synchronized (this) {
+			int before = locateHistory(time);
+			int after = (before + 1) % HISTORY_SIZE;
+			double fraction = historyFraction;
+
+			position[0] = historyX[before];
+			position[1] = historyY[before];
+			position[2] = historyTheta[before];
+			if (fraction > 0) {
+				position[0] += fraction * (historyX[after] - historyX[before]);
+				position[1] += fraction * (historyY[after] - historyY[before]);
+				position[2] = fixDegAngle(historyTheta[before]
+						+ fraction * minimumAngleFromTo(historyTheta[before], historyTheta[after]));
+			}
+			return isInHistory(time);
+		}
+	}
+
+	/**
+	 * Looks up the wheel tacho counts at a given time, interpolating between the two recorded updates around it.
+	 * Follows the same clamping rules as {@link #poseAt(long, double[])}.
+	 * @param time 		the <code>long</code> <code>System.nanoTime()</code> of interest
+	 * @param tachos 	the <code>double</code> array in which to store the left and right tacho counts
+	 * @return 			<code>true</code> if the time fell inside the recorded history, <code>false</code> if it was clamped
+	 */
+	public boolean tachoAt(long time, double[] tachos) {
+		synchronized (this) {
+			int before = locateHistory(time);
+			int after = (before + 1) % HISTORY_SIZE;
+			double fraction = historyFraction;
+
+			tachos[0] = historyLeftTacho[before];
+			tachos[1] = historyRightTacho[before];
+			if (fraction > 0) {
+				tachos[0] += fraction * (historyLeftTacho[after] - historyLeftTacho[before]);
+				tachos[1] += fraction * (historyRightTacho[after] - historyRightTacho[before]);
+			}
+			return isInHistory(time);
+		}
+	}
+
+	/**
+	 * Finds the last history entry recorded at or before a given time, and stores how far the time is towards
+	 * the following entry in <code>historyFraction</code>. Must be called from within the critical region.
+	 * @param time 		the <code>long</code> <code>System.nanoTime()</code> of interest
+	 * @return 			the <code>int</code> index of the entry in the ring buffer
+	 */
+	private int locateHistory(long time) {
+		int newest = (historyHead + HISTORY_SIZE - 1) % HISTORY_SIZE;
+		int oldest = (historyHead + HISTORY_SIZE - historyCount) % HISTORY_SIZE;
+		historyFraction = 0;
+
+		if (time - historyTime[newest] >= 0)
+			return newest;
+		if (time - historyTime[oldest] <= 0)
+			return oldest;
+
+		// walk back from the newest entry until we find the one just before the requested time
+		int after = newest;
+		int before = (after + HISTORY_SIZE - 1) % HISTORY_SIZE;
+		while (time - historyTime[before] < 0) {
+			after = before;
+			before = (before + HISTORY_SIZE - 1) % HISTORY_SIZE;
+		}
+		historyFraction = (double) (time - historyTime[before]) / (historyTime[after] - historyTime[before]);
+		return before;
+	}
+
+	/**
+	 * Checks whether a time is covered by the recorded history. Must be called from within the critical region.
+	 * @param time 		the <code>long</code> <code>System.nanoTime()</code> of interest
+	 * @return 			<code>true</code> if the time lies between the oldest and newest entries
+	 */
+	private boolean isInHistory(long time) {
+		int newest = (historyHead + HISTORY_SIZE - 1) % HISTORY_SIZE;
+		int oldest = (historyHead + HISTORY_SIZE - historyCount) % HISTORY_SIZE;
+		return time - historyTime[oldest] >= 0 && time - historyTime[newest] <= 0;
+	}
 
-			x += dDH[0] * Math.cos(Math.toRadians(theta));
-			y += dDH[0] * Math.sin(Math.toRadians(theta));
+	/**
+	 * Looks up where the robot was at a given time.
+	 * @param time 		the <code>long</code> <code>System.nanoTime()</code> of interest
+	 * @return 			the interpolated <code>Pose</code> at that time
+	 * @see #poseAt(long, double[])
+	 */
+	public Pose poseAt(long time) {
+		double[] position = new double[3];
+		poseAt(time, position);
+		return new Pose(position[0], position[1], position[2], time);
+	}
+
+	/**
+	 * Shifts the whole pose history, so that lookups stay consistent after the position is corrected.
+	 * Must be called from within the critical region.
+	 */
+	private void shiftHistory(double dx, double dy, double dTheta) {
+		for (int i = 0; i < HISTORY_SIZE; i++) {
+			historyX[i] += dx;
+			historyY[i] += dy;
+			historyTheta[i] = fixDegAngle(historyTheta[i] + dTheta);
 		}
+	}
 
-		oldDH[0] += dDH[0];
-		oldDH[1] += dDH[1];
+	/**
+	 * Getter for the latest position snapshot.
+	 * <o>
+	 * This does not take the odometer's lock, so control loops can call it as often as they like without
+	 * holding up the odometer's <code>Timer</code>. All three values of the returned <code>Pose</code> come
+	 * from the same update.
+	 * @return 		the most recent <code>Pose</code> of the robot
+	 */
+	public Pose getPose() {
+		return pose;
 	}
 
 	/**
@@ -104,9 +347,7 @@ public class Odometer extends PausableTimerListener {
 	 * @return 		a <code>double</code> X value to be used with navigation methods.
 	 */
 	public double getX() {
-		synchronized (this) {
-			return x;
-		}
+		return pose.getX();
 	}
 
 	/**
@@ -114,9 +355,7 @@ public class Odometer extends PausableTimerListener {
 	 * @return 		a <code>double</code> Y value to be used with navigation methods.
 	 */
 	public double getY() {
-		synchronized (this) {
-			return y;
-		}
+		return pose.getY();
 	}
 
 	/**
@@ -124,9 +363,7 @@ public class Odometer extends PausableTimerListener {
 	 * @return 		a <code>double</code> theta value to be used with navigation methods
 	 */
 	public double getAng() {
-		synchronized (this) {
-			return theta;
-		}
+		return pose.getAng();
 	}
 
 	/**
@@ -136,12 +373,33 @@ public class Odometer extends PausableTimerListener {
 	 */
 	public void setPosition(double[] position, boolean[] update) {
 		synchronized (this) {
+			shiftHistory(update[0] ? position[0] - x : 0,
+					update[1] ? position[1] - y : 0,
+					update[2] ? minimumAngleFromTo(theta, position[2]) : 0);
 			if (update[0])
 				x = position[0];
 			if (update[1])
 				y = position[1];
 			if (update[2])
 				theta = position[2];
+			publish();
+		}
+	}
+
+	/**
+	 * Offsets the current position by a correction, for example one computed from a sensor reading taken
+	 * slightly in the past. The pose history is shifted by the same amount.
+	 * @param dx 		the <code>double</code> correction to apply to X in cm
+	 * @param dy 		the <code>double</code> correction to apply to Y in cm
+	 * @param dTheta 	the <code>double</code> correction to apply to theta in degrees
+	 */
+	public void correctPosition(double dx, double dy, double dTheta) {
+		synchronized (this) {
+			shiftHistory(dx, dy, dTheta);
+			x += dx;
+			y += dy;
+			theta = fixDegAngle(theta + dTheta);
+			publish();
 		}
 	}
 
@@ -150,22 +408,20 @@ public class Odometer extends PausableTimerListener {
 	 * @param position 		the <code>double</code> array holding the x, y, and theta values for the odometer
 	 */
 	public void getPosition(double[] position) {
-		synchronized (this) {
-			position[0] = x;
-			position[1] = y;
-			position[2] = theta;
-		}
+		Pose current = pose;
+		position[0] = current.getX();
+		position[1] = current.getY();
+		position[2] = current.getAng();
 	}
 	/**
 	 * Getter for position
 	 * <o>
-	 * but in a synchronized block to return a new position.
+	 * but taken from a single snapshot to return a new position.
 	 * @return 		position <code>double</code> array holding the x, y, and theta values for the odometer
 	 */
 	public double[] getPosition() {
-		synchronized (this) {
-			return new double[] { x, y, theta };
-		}
+		Pose current = pose;
+		return new double[] { current.getX(), current.getY(), current.getAng() };
 	}
 
 	/**
@@ -189,13 +445,67 @@ public class Odometer extends PausableTimerListener {
 	public EV3LargeRegulatedMotor getRightMotor() {
 		return this.rightMotor;
 	}
+	/**
+	 * Getter for the command layer of both motors
+	 * @return 		the <code>MotorCommander</code> shared by everything driving our motors
+	 */
+	public MotorCommander getCommander() {
+		return this.commander;
+	}
 	
+	/**
+	 * Getter for the wheel radius
+	 * @return 		the <code>double</code> average radius of both wheels in cm
+	 */
 	public double getWheelRadius(){
-		return this.leftRadius;
+		synchronized (this) {
+			return (this.leftRadius + this.rightRadius) / 2.0;
+		}
+	}
+	
+	/**
+	 * Getter for the left wheel radius
+	 * @return 		the <code>double</code> radius of the left wheel in cm
+	 */
+	public double getLeftRadius(){
+		synchronized (this) {
+			return this.leftRadius;
+		}
+	}
+	
+	/**
+	 * Getter for the right wheel radius
+	 * @return 		the <code>double</code> radius of the right wheel in cm
+	 */
+	public double getRightRadius(){
+		synchronized (this) {
+			return this.rightRadius;
+		}
 	}
 	
+	/**
+	 * Getter for the track
+	 * @return 		the <code>double</code> distance between the wheels in cm
+	 */
 	public double getTrack(){
-		return this.width;
+		synchronized (this) {
+			return this.width;
+		}
+	}
+	
+	/**
+	 * Replaces the wheel radii and track used to compute displacements. Takes effect on the next update,
+	 * so it can be called while the robot is moving.
+	 * @param leftRadius 	the <code>double</code> radius of the left wheel in cm
+	 * @param rightRadius 	the <code>double</code> radius of the right wheel in cm
+	 * @param width 		the <code>double</code> distance between the wheels in cm
+	 */
+	public void setCalibration(double leftRadius, double rightRadius, double width){
+		synchronized (this) {
+			this.leftRadius = leftRadius;
+			this.rightRadius = rightRadius;
+			this.width = width;
+		}
 	}
 	
 	// static 'helper' methods
@@ -0,0 +1,222 @@
+package team6.finalproject;
+
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Properties;
+
+/**
+ * Class that estimates each wheel's radius and the effective track while the robot is running, and keeps
+ * the {@link Odometer} up to date with the estimates.
+ * <o>
+ * Wheel radii are estimated from consecutive grid line crossings on straight runs: the lines are one tile
+ * apart, so the distance actually travelled is known and can be compared to how far each wheel turned.
+ * The track is estimated from in-place rotations of a known angle, such as a full turn between two
+ * crossings of the same line. Estimates are blended in gradually, and samples far from the current
+ * estimate (a missed line, a wheel slip) are thrown away.
+ * <o>
+ * The values are saved to a file so the next run starts from the last calibration instead of the
+ * hand-tuned constants.
+ *
+ * @author Erick Zhao
+ * @version 1.0
+ * @see OdometryCorrection
+ */
+public class OdometryCalibrator {
+
+	private static final String CALIBRATION_FILE = "calibration.properties";
+	private static final double GRID_WIDTH = 30.48;
+	private static final double GAIN = 0.2; //Weight given to each new sample
+	private static final double MAX_SAMPLE_ERROR = 0.1; //Samples more than 10% off the estimate are rejected
+	private static final double MAX_HEADING_CHANGE = 2; //Max heading change in degrees for a straight run
+	private static final double MAX_AXIS_ERROR = 20; //Max angle in degrees between the heading and a grid axis
+	private static final int MIN_SAMPLES_FOR_SAVE = 3;
+
+	private Odometer odometer;
+	private double leftRadius, rightRadius, track;
+	private boolean trackLoaded = false;
+	private int samples = 0;
+
+	// last line crossing, in odometer coordinates
+	private boolean hasPreviousCrossing = false;
+	private double[] previousPosition = new double[3];
+	private double[] previousTachos = new double[2];
+	private double[] position = new double[3];
+	private double[] tachos = new double[2];
+
+	/**
+	 * Constructor for the calibrator. Starts from the odometer's current calibration.
+	 * @param odometer		the <code>Odometer</code> to calibrate
+	 */
+	public OdometryCalibrator(Odometer odometer) {
+		this.odometer = odometer;
+		this.leftRadius = odometer.getLeftRadius();
+		this.rightRadius = odometer.getRightRadius();
+		this.track = odometer.getTrack();
+	}
+
+	/**
+	 * Loads the values saved by a previous run, if any, and applies them to the odometer.
+	 * @return		<code>true</code> if saved values were found
+	 */
+	public synchronized boolean load() {
+		Properties values = new Properties();
+		try {
+			FileInputStream in = new FileInputStream(CALIBRATION_FILE);
+			try {
+				values.load(in);
+			} finally {
+				in.close();
+			}
+			leftRadius = Double.parseDouble(values.getProperty("leftRadius"));
+			rightRadius = Double.parseDouble(values.getProperty("rightRadius"));
+			track = Double.parseDouble(values.getProperty("track"));
+		} catch (IOException e) {
+			return false;
+		} catch (RuntimeException e) {
+			// missing or malformed value: keep the current calibration
+			return false;
+		}
+		trackLoaded = true;
+		odometer.setCalibration(leftRadius, rightRadius, track);
+		return true;
+	}
+
+	/**
+	 * Saves the current values for the next run. Does nothing until a few samples have been accepted,
+	 * so a run that never crossed a line does not overwrite a good calibration.
+	 */
+	public synchronized void save() {
+		if (samples < MIN_SAMPLES_FOR_SAVE)
+			return;
+
+		Properties values = new Properties();
+		values.setProperty("leftRadius", String.valueOf(leftRadius));
+		values.setProperty("rightRadius", String.valueOf(rightRadius));
+		values.setProperty("track", String.valueOf(track));
+		try {
+			FileOutputStream out = new FileOutputStream(CALIBRATION_FILE);
+			try {
+				values.store(out, "Odometry calibration");
+			} finally {
+				out.close();
+			}
+		} catch (IOException e) {
+			System.out.println("Calibration not saved");
+		}
+	}
+
+	/**
+	 * Tells whether the track still needs a rotation sample, i.e. it was not loaded from a previous run
+	 * and has not been measured yet.
+	 * @return		<code>true</code> if a call to {@link #recordRotation(int, int, double)} would be useful
+	 */
+	public synchronized boolean needsTrackSample() {
+		return !trackLoaded;
+	}
+
+	/**
+	 * Records a grid line crossing. Called by {@link OdometryCorrection} whenever the light sensor sees a line.
+	 * When this crossing and the previous one bound a straight run of one tile along a grid axis, the wheel
+	 * radii are updated.
+	 * @param time		the <code>long</code> <code>System.nanoTime()</code> at which the line was sampled
+	 */
+	public synchronized void lineCrossed(long time) {
+		odometer.poseAt(time, position);
+		odometer.tachoAt(time, tachos);
+
+		if (hasPreviousCrossing) {
+			calibrateRadii();
+		}
+
+		System.arraycopy(position, 0, previousPosition, 0, 3);
+		System.arraycopy(tachos, 0, previousTachos, 0, 2);
+		hasPreviousCrossing = true;
+	}
+
+	/**
+	 * Records an in-place rotation of a known angle and updates the track.
+	 * @param leftTacho		the <code>int</code> rotation of the left wheel during the turn, in degrees
+	 * @param rightTacho	the <code>int</code> rotation of the right wheel during the turn, in degrees
+	 * @param angle			the <code>double</code> angle actually turned, in degrees, positive counter-clockwise
+	 */
+	public synchronized void recordRotation(int leftTacho, int rightTacho, double angle) {
+		double sample = (rightTacho * rightRadius - leftTacho * leftRadius) / angle;
+		if (Math.abs(sample - track) > MAX_SAMPLE_ERROR * track)
+			return;
+
+		// a full measured rotation is a much better estimate than the hand-tuned value, so take it as is
+		track = trackLoaded ? blend(track, sample) : sample;
+		trackLoaded = true;
+		samples++;
+		odometer.setCalibration(leftRadius, rightRadius, track);
+	}
+
+	/**
+	 * Compares the wheel rotations between the last two crossings to the one tile actually travelled.
+	 */
+	private void calibrateRadii() {
+		double headingChange = Odometer.minimumAngleFromTo(previousPosition[2], position[2]);
+		if (Math.abs(headingChange) > MAX_HEADING_CHANGE)
+			return;
+
+		// angle between the heading and the nearest grid axis
+		double axisError = Odometer.minimumAngleFromTo(0, position[2]) % 90.0;
+		if (axisError > 45)
+			axisError -= 90;
+		else if (axisError < -45)
+			axisError += 90;
+		if (Math.abs(axisError) > MAX_AXIS_ERROR)
+			return;
+
+		double leftTacho = tachos[0] - previousTachos[0];
+		double rightTacho = tachos[1] - previousTachos[1];
+		if (leftTacho * rightTacho <= 0)
+			return;
+
+		// lines are crossed at a right angle to the axis, so the distance along the heading is a bit over a tile
+		double distance = GRID_WIDTH / Math.cos(Math.toRadians(axisError));
+		double leftSample = Math.abs(distance * 180.0 / (Math.PI * leftTacho));
+		double rightSample = Math.abs(distance * 180.0 / (Math.PI * rightTacho));
+
+		if (Math.abs(leftSample - leftRadius) > MAX_SAMPLE_ERROR * leftRadius
+				|| Math.abs(rightSample - rightRadius) > MAX_SAMPLE_ERROR * rightRadius)
+			return;
+
+		leftRadius = blend(leftRadius, leftSample);
+		rightRadius = blend(rightRadius, rightSample);
+		samples++;
+		odometer.setCalibration(leftRadius, rightRadius, track);
+	}
+
+	/**
+	 * Blends a new sample into an estimate.
+	 */
+	private static double blend(double estimate, double sample) {
+		return estimate + GAIN * (sample - estimate);
+	}
+
+	/**
+	 * Getter for the left wheel radius estimate
+	 * @return		the <code>double</code> radius in cm
+	 */
+	public synchronized double getLeftRadius() {
+		return leftRadius;
+	}
+
+	/**
+	 * Getter for the right wheel radius estimate
+	 * @return		the <code>double</code> radius in cm
+	 */
+	public synchronized double getRightRadius() {
+		return rightRadius;
+	}
+
+	/**
+	 * Getter for the track estimate
+	 * @return		the <code>double</code> track in cm
+	 */
+	public synchronized double getTrack() {
+		return track;
+	}
+}
@@ -5,7 +5,9 @@ import lejos.hardware.Sound;
 /**
  * Class that corrects odometer values while the robot is traveling to waypoints (i.e. moving in a straight line).
  * <o>
- * Works by snapping the odometer's position to a grid line's X or Y position when passing over it.
+ * Works by snapping the odometer's position to a grid line's X or Y position when passing over it, or, when
+ * a {@link PoseEstimator} is given, by handing each crossing to the estimator, which also corrects the heading
+ * and is not limited to small errors.
  * 
  * @author Erick Zhao
  * @version 2.0
@@ -16,6 +18,10 @@ public class OdometryCorrection extends PausableTimerListener {
 	
 	//variables
 	private Odometer odometer;
+	private OdometryCalibrator calibrator;
+	private PoseEstimator estimator;
+	private double[] samplePosition = new double[3];
+	private boolean onLine = false;
 	
 	private static final double SENSOR_TO_CENTRE = 9.5;
 	private static final double GRID_WIDTH = 30.48;
@@ -28,6 +34,28 @@ public class OdometryCorrection extends PausableTimerListener {
 	public OdometryCorrection(Odometer odometer) {
 		this.odometer = odometer;
 	}
+	
+	/**
+	 * Constructor for Odometer correction that also feeds every line crossing to a calibrator.
+	 * @param odometer		the <code>Odometer</code> object running on a separate </code>Timer</code> that is to be corrected
+	 * @param calibrator	the <code>OdometryCalibrator</code> that estimates the wheel radii from the crossings
+	 */
+	public OdometryCorrection(Odometer odometer, OdometryCalibrator calibrator) {
+		this.odometer = odometer;
+		this.calibrator = calibrator;
+	}
+	
+	/**
+	 * Constructor for Odometer correction that corrects through a pose estimator instead of snapping.
+	 * @param odometer		the <code>Odometer</code> object running on a separate </code>Timer</code> that is to be corrected
+	 * @param calibrator	the <code>OdometryCalibrator</code> that estimates the wheel radii from the crossings, or <code>null</code>
+	 * @param estimator		the <code>PoseEstimator</code> that fuses the crossings into the odometer's pose
+	 */
+	public OdometryCorrection(Odometer odometer, OdometryCalibrator calibrator, PoseEstimator estimator) {
+		this.odometer = odometer;
+		this.calibrator = calibrator;
+		this.estimator = estimator;
+	}
 
 	/**
 	 * Checks if the odometer reading can be corrected every <code>Timer</code> loop and executes the correction
@@ -36,7 +64,22 @@ public class OdometryCorrection extends PausableTimerListener {
 	@Override
 	public void timedOut() {
 		if(LightPoller.blackLine()){
-			correctOdometerPosition();
+			// the calibrator and estimator only want the first sample of each line
+			if (!onLine) {
+				long sampleTime = LightPoller.getSampleTime();
+				if (calibrator != null) {
+					calibrator.lineCrossed(sampleTime);
+				}
+				if (estimator != null) {
+					estimator.updateLine(sampleTime);
+				}
+			}
+			onLine = true;
+			if (estimator == null) {
+				correctOdometerPosition();
+			}
+		} else {
+			onLine = false;
 		}
 	}
 
@@ -44,26 +87,23 @@ public class OdometryCorrection extends PausableTimerListener {
 	 * Corrects the odometer's reading whenever a black line is detected.
 	 * This works by snapping the odometer to a value of the grid when it passes over a black line.
 	 * The odometer reading snaps to the value of the nearest black grid line.
+	 * The sensor's position is taken from the odometer's pose at the moment the light sensor was sampled,
+	 * and the resulting offset is applied to the current position.
 	 */
 	private void correctOdometerPosition(){
 		
-		double positionX = odometer.getX()+getHorizontalSensorToCentreDistance();
-		double positionY = odometer.getY()+getVerticalSensorToCentreDistance();
+		odometer.poseAt(LightPoller.getSampleTime(), samplePosition);
+		double heading = samplePosition[2];
+		double positionX = samplePosition[0]+getHorizontalSensorToCentreDistance(heading);
+		double positionY = samplePosition[1]+getVerticalSensorToCentreDistance(heading);
 		
 		if (isRobotNearGridLine(positionX)) {
-			double actualPosition = getNearestGridLine(positionX)-getHorizontalSensorToCentreDistance();
-			double[] position = {actualPosition,0,0};
-			boolean[] update =  {true,false,false};
-			odometer.setPosition(position,update);
+			odometer.correctPosition(getNearestGridLine(positionX)-positionX, 0, 0);
 			Sound.beepSequenceUp();
 		}
 		
 		if (isRobotNearGridLine(positionY)) {
-			double actualPosition = getNearestGridLine(positionY)-getVerticalSensorToCentreDistance();
-			double[] position = {0,actualPosition,0};
-			boolean[] update = {false,true,false};
-			
-			odometer.setPosition(position,update);
+			odometer.correctPosition(0, getNearestGridLine(positionY)-positionY, 0);
 			Sound.beepSequence();
 		}
 	}
@@ -102,18 +142,20 @@ public class OdometryCorrection extends PausableTimerListener {
 	
 	/**
 	 * Gets the horizontal distance between the sensor and the centre of rotation.
+	 * @param heading	the <code>double</code> heading of the robot in degrees
 	 * @return		a <code>double</code> representing the horizontal distance in cm
 	 */
-	private double getHorizontalSensorToCentreDistance() {
-		return Math.cos(angleToRadians(odometer.getAng()))*SENSOR_TO_CENTRE;
+	private double getHorizontalSensorToCentreDistance(double heading) {
+		return Math.cos(angleToRadians(heading))*SENSOR_TO_CENTRE;
 	}
 	
 	/**
 	 * Gets the vertical distance between the sensor and the centre of rotation.
+	 * @param heading	the <code>double</code> heading of the robot in degrees
 	 * @return		a <code>double</code> representing the vertical distance in cm
 	 */
-	private double getVerticalSensorToCentreDistance() {
-		return Math.sin(angleToRadians(odometer.getAng()))*SENSOR_TO_CENTRE;
+	private double getVerticalSensorToCentreDistance(double heading) {
+		return Math.sin(angleToRadians(heading))*SENSOR_TO_CENTRE;
 	}
 	
 	/**
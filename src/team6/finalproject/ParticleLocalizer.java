@@ -0,0 +1,343 @@
+package team6.finalproject;
+
+import java.util.Random;
+
+/**
+ * Class that localizes the robot with a particle filter (Monte Carlo localization) against the known arena walls.
+ * <o>
+ * Each particle is a guess of the robot's x, y and heading in the starting tile. While the robot turns, every
+ * particle is moved by the odometer's motion, and weighted by how well the distance it would see to the walls
+ * matches what the ultrasonic sensors actually read. Unlikely particles die out and likely ones are copied, until
+ * the particles agree on a single pose. Coordinates are in the frame set up by {@link Wifi}, where the starting
+ * corner is always the lower-left tile, so the same walls apply to every <code>Wifi.ourStartingCorner</code>.
+ * <o>
+ * The particles are kept in fixed-size primitive arrays, so an update does not allocate.
+ *
+ * @author Andrei Ungur
+ * @version 1.0
+ * @see USLocalizer
+ * @see LightLocalizer
+ */
+public class ParticleLocalizer {
+
+	private static final double GRID_WIDTH = 30.48;
+	private static final double WALL_LOW = -GRID_WIDTH; //Position of the left and bottom walls
+	private static final double WALL_HIGH = 11 * GRID_WIDTH; //Position of the right and top walls
+	private static final double ROBOT_HALF_WIDTH = 6.7;
+
+	private static final int PARTICLES = 500;
+	private static final int MAX_SENSORS = 2;
+	private static final double MAX_RANGE = 150; //Readings beyond this are treated as "no echo"
+	private static final double RANGE_NOISE = 4.0; //Std dev of a reading, in cm
+	private static final double OUTLIER_PROBABILITY = 0.05; //Chance a reading is unrelated to the walls
+	private static final double DISTANCE_NOISE = 0.05; //Std dev per cm travelled, in cm
+	private static final double TURN_NOISE = 0.05; //Std dev per degree turned, in degrees
+	private static final double JITTER_POSITION = 1.0; //Std dev added to copied particles, in cm
+	private static final double JITTER_HEADING = 2.0; //Std dev added to copied particles, in degrees
+
+	private static final double CONFIDENCE_RADIUS = 4.0; //cm
+	private static final double CONFIDENCE_ANGLE = 5.0; //degrees
+	private static final double MIN_CONFIDENCE = 0.5;
+	private static final int STEP_PERIOD = 20; //ms
+	private static final float SPEED = 150;
+
+	private Odometer odo;
+	private UltrasonicPoller[] sensors = new UltrasonicPoller[MAX_SENSORS];
+	private double[] sensorOffsets = new double[MAX_SENSORS];
+	private long[] lastSampleTimes = new long[MAX_SENSORS];
+	private int sensorCount = 0;
+	private Random random = new Random();
+
+	// particles
+	private double[] px = new double[PARTICLES];
+	private double[] py = new double[PARTICLES];
+	private double[] pt = new double[PARTICLES];
+	private double[] pw = new double[PARTICLES];
+	private double[] nx = new double[PARTICLES];
+	private double[] ny = new double[PARTICLES];
+	private double[] nt = new double[PARTICLES];
+
+	// odometer pose the particles were last moved to
+	private double[] samplePosition = new double[3];
+	private double lastX, lastY, lastTheta;
+
+	// estimate
+	private double meanX, meanY, meanTheta, confidence;
+
+	/**
+	 * Constructor for the particle localizer.
+	 * @param odo		the <code>Odometer</code> object that reports the robot's motion, or <code>null</code> if
+	 * 					the readings are only fed through {@link #addReading(double[], double, double)}
+	 */
+	public ParticleLocalizer(Odometer odo) {
+		this.odo = odo;
+	}
+
+	/**
+	 * Adds an ultrasonic sensor facing straight ahead of the robot.
+	 * @param poller		the <code>UltrasonicPoller</code> of the sensor
+	 * @param offset		the <code>double</code> distance from the centre of rotation to the sensor, in cm
+	 */
+	public void addSensor(UltrasonicPoller poller, double offset) {
+		sensors[sensorCount] = poller;
+		sensorOffsets[sensorCount] = offset;
+		sensorCount++;
+	}
+
+	/**
+	 * Localizes the robot by turning on the spot for at most one rotation while filtering, then sets the odometer
+	 * to the estimated pose.
+	 * @return		<code>true</code> if the particles converged, <code>false</code> if the odometer was left as is
+	 */
+	public boolean doLocalization() {
+		Navigation navigator = new Navigation(odo);
+		reset();
+
+		double turned = 0;
+		double previousTheta = odo.getAng();
+		navigator.setSpeeds(-SPEED, SPEED);
+		while (turned < 360 && !(turned > 270 && confidence >= MIN_CONFIDENCE)) {
+			step();
+			double theta = odo.getAng();
+			turned += Math.abs(Odometer.minimumAngleFromTo(previousTheta, theta));
+			previousTheta = theta;
+			try { Thread.sleep(STEP_PERIOD); } catch (InterruptedException e) {}
+		}
+		navigator.setSpeeds(0, 0);
+		step();
+
+		if (confidence < MIN_CONFIDENCE)
+			return false;
+
+		// the particles are in sync with the odometer up to lastX/lastY/lastTheta; carry over any motion since
+		Pose pose = odo.getPose();
+		double dTheta = Odometer.minimumAngleFromTo(lastTheta, pose.getAng());
+		odo.setPosition(new double[] { meanX + pose.getX() - lastX, meanY + pose.getY() - lastY,
+				Odometer.fixDegAngle(meanTheta + dTheta) }, new boolean[] { true, true, true });
+		return true;
+	}
+
+	/**
+	 * Spreads the particles uniformly over the starting tile, with any heading.
+	 */
+	public void reset() {
+		Pose pose = odo.getPose();
+		reset(new double[] { pose.getX(), pose.getY(), pose.getAng() });
+		for (int s = 0; s < sensorCount; s++) {
+			lastSampleTimes[s] = sensors[s].getSampleTime();
+		}
+	}
+
+	/**
+	 * Spreads the particles uniformly over the starting tile, with any heading, from a given odometer pose.
+	 * @param odometerPose	the <code>double[]</code> x, y and theta reported by the odometer at the start
+	 */
+	public void reset(double[] odometerPose) {
+		double low = WALL_LOW + ROBOT_HALF_WIDTH;
+		double high = 0;
+		for (int i = 0; i < PARTICLES; i++) {
+			px[i] = low + random.nextDouble() * (high - low);
+			py[i] = low + random.nextDouble() * (high - low);
+			pt[i] = random.nextDouble() * 360.0;
+			pw[i] = 1.0 / PARTICLES;
+		}
+		lastX = odometerPose[0];
+		lastY = odometerPose[1];
+		lastTheta = odometerPose[2];
+		confidence = 0;
+	}
+
+	/**
+	 * Processes every new sensor reading: moves the particles to where the odometer was when it was sampled,
+	 * weighs them against it, and resamples when too few particles carry most of the weight.
+	 */
+	public void step() {
+		for (int s = 0; s < sensorCount; s++) {
+			long sampleTime = sensors[s].getSampleTime();
+			if (sampleTime == lastSampleTimes[s])
+				continue;
+			lastSampleTimes[s] = sampleTime;
+
+			odo.poseAt(sampleTime, samplePosition);
+			filter(samplePosition, sensors[s].getDistance(), sensorOffsets[s]);
+		}
+		estimate();
+	}
+
+	/**
+	 * Processes one reading taken away from the sensors, e.g. replayed from a recording.
+	 * @param odometerPose	the <code>double[]</code> x, y and theta reported by the odometer when it was sampled
+	 * @param reading		the <code>double</code> distance read, in cm
+	 * @param offset		the <code>double</code> distance from the centre of rotation to the sensor, in cm
+	 */
+	public void addReading(double[] odometerPose, double reading, double offset) {
+		filter(odometerPose, reading, offset);
+		estimate();
+	}
+
+	private void filter(double[] odometerPose, double reading, double offset) {
+		move(odometerPose);
+		weigh(reading, offset);
+		if (effectiveParticles() < PARTICLES / 2) {
+			resample();
+		}
+	}
+
+	/**
+	 * Moves every particle by the odometer's motion since the last move, plus some noise.
+	 */
+	private void move(double[] odometerPose) {
+		double dTheta = Odometer.minimumAngleFromTo(lastTheta, odometerPose[2]);
+		double heading = Math.toRadians(lastTheta + dTheta / 2.0);
+		double distance = (odometerPose[0] - lastX) * Math.cos(heading) + (odometerPose[1] - lastY) * Math.sin(heading);
+		lastX = odometerPose[0];
+		lastY = odometerPose[1];
+		lastTheta = odometerPose[2];
+
+		double distanceNoise = DISTANCE_NOISE * Math.abs(distance);
+		double turnNoise = TURN_NOISE * Math.abs(dTheta);
+		for (int i = 0; i < PARTICLES; i++) {
+			double d = distance + distanceNoise * random.nextGaussian();
+			double t = dTheta + turnNoise * random.nextGaussian();
+			double midHeading = Math.toRadians(pt[i] + t / 2.0);
+			px[i] += d * Math.cos(midHeading);
+			py[i] += d * Math.sin(midHeading);
+			pt[i] = Odometer.fixDegAngle(pt[i] + t);
+		}
+	}
+
+	/**
+	 * Multiplies every particle's weight by the likelihood of a reading from its pose.
+	 */
+	private void weigh(double reading, double offset) {
+		double total = 0;
+		for (int i = 0; i < PARTICLES; i++) {
+			double expected = expectedRange(px[i], py[i], pt[i], offset);
+			double likelihood;
+			if (reading >= MAX_RANGE) {
+				likelihood = (expected >= MAX_RANGE) ? 1.0 : OUTLIER_PROBABILITY;
+			} else {
+				double error = (reading - expected) / RANGE_NOISE;
+				likelihood = (1 - OUTLIER_PROBABILITY) * Math.exp(-0.5 * error * error) + OUTLIER_PROBABILITY;
+			}
+			// a particle that puts the robot inside a wall is impossible
+			if (px[i] < WALL_LOW || py[i] < WALL_LOW || px[i] > WALL_HIGH || py[i] > WALL_HIGH) {
+				likelihood = 0;
+			}
+			pw[i] *= likelihood;
+			total += pw[i];
+		}
+
+		if (total <= 0) {
+			// every particle disagrees with the reading: start again rather than divide by zero
+			for (int i = 0; i < PARTICLES; i++) {
+				pw[i] = 1.0 / PARTICLES;
+			}
+			return;
+		}
+		for (int i = 0; i < PARTICLES; i++) {
+			pw[i] /= total;
+		}
+	}
+
+	/**
+	 * Distance a forward-facing sensor would read from a given pose, looking for the nearest wall along its beam.
+	 */
+	private static double expectedRange(double x, double y, double theta, double offset) {
+		double cos = Math.cos(Math.toRadians(theta));
+		double sin = Math.sin(Math.toRadians(theta));
+		double sensorX = x + offset * cos;
+		double sensorY = y + offset * sin;
+		double range = MAX_RANGE;
+
+		if (cos > 1e-6)
+			range = Math.min(range, (WALL_HIGH - sensorX) / cos);
+		else if (cos < -1e-6)
+			range = Math.min(range, (WALL_LOW - sensorX) / cos);
+		if (sin > 1e-6)
+			range = Math.min(range, (WALL_HIGH - sensorY) / sin);
+		else if (sin < -1e-6)
+			range = Math.min(range, (WALL_LOW - sensorY) / sin);
+
+		return Math.max(range, 0);
+	}
+
+	/**
+	 * Number of particles that effectively carry the weight, 1 / sum(w^2).
+	 */
+	private double effectiveParticles() {
+		double sum = 0;
+		for (int i = 0; i < PARTICLES; i++) {
+			sum += pw[i] * pw[i];
+		}
+		return 1.0 / sum;
+	}
+
+	/**
+	 * Low-variance resampling: copies particles in proportion to their weight, with a little jitter so copies spread out.
+	 */
+	private void resample() {
+		double stepSize = 1.0 / PARTICLES;
+		double target = random.nextDouble() * stepSize;
+		double cumulative = pw[0];
+		int source = 0;
+		for (int i = 0; i < PARTICLES; i++) {
+			while (target > cumulative && source < PARTICLES - 1) {
+				source++;
+				cumulative += pw[source];
+			}
+			nx[i] = px[source] + JITTER_POSITION * random.nextGaussian();
+			ny[i] = py[source] + JITTER_POSITION * random.nextGaussian();
+			nt[i] = Odometer.fixDegAngle(pt[source] + JITTER_HEADING * random.nextGaussian());
+			target += stepSize;
+		}
+		for (int i = 0; i < PARTICLES; i++) {
+			px[i] = nx[i];
+			py[i] = ny[i];
+			pt[i] = nt[i];
+			pw[i] = stepSize;
+		}
+	}
+
+	/**
+	 * Computes the weighted mean pose, and the confidence as the weight held by particles close to it.
+	 */
+	private void estimate() {
+		double sumX = 0, sumY = 0, sumCos = 0, sumSin = 0;
+		for (int i = 0; i < PARTICLES; i++) {
+			sumX += pw[i] * px[i];
+			sumY += pw[i] * py[i];
+			sumCos += pw[i] * Math.cos(Math.toRadians(pt[i]));
+			sumSin += pw[i] * Math.sin(Math.toRadians(pt[i]));
+		}
+		meanX = sumX;
+		meanY = sumY;
+		meanTheta = Odometer.fixDegAngle(Math.toDegrees(Math.atan2(sumSin, sumCos)));
+
+		double close = 0;
+		for (int i = 0; i < PARTICLES; i++) {
+			if (Math.hypot(px[i] - meanX, py[i] - meanY) <= CONFIDENCE_RADIUS
+					&& Math.abs(Odometer.minimumAngleFromTo(meanTheta, pt[i])) <= CONFIDENCE_ANGLE) {
+				close += pw[i];
+			}
+		}
+		confidence = close;
+	}
+
+	/**
+	 * Getter for the estimated pose
+	 * @return		the weighted mean <code>Pose</code> of the particles
+	 */
+	public Pose getEstimate() {
+		return new Pose(meanX, meanY, meanTheta);
+	}
+
+	/**
+	 * Getter for the confidence
+	 * @return		a <code>double</code> from 0 to 1, the share of the weight held by particles within
+	 * 				4 cm and 5 degrees of the estimate
+	 */
+	public double getConfidence() {
+		return confidence;
+	}
+}
@@ -0,0 +1,179 @@
+package team6.finalproject;
+
+/**
+ * Pure pursuit path follower: drives along a polyline of waypoints without stopping at each one.
+ * <o>
+ * On every control step, the follower finds the point of the path one look-ahead distance past the point
+ * closest to the robot, and sets the wheel speeds so the robot drives along the arc that reaches it.
+ * A short look-ahead hugs the path closely but weaves; a long one drives smoothly but cuts corners.
+ * The robot only stops to turn on the spot when the path doubles back behind it, e.g. at the start.
+ *
+ * @author Erick Zhao
+ * @version 1.0
+ * @see PathMetrics
+ */
+public class PathFollower {
+
+	private static final double DEFAULT_LOOK_AHEAD = 15.0; //cm
+	private static final double GOAL_TOLERANCE = 1.5; //cm
+	private static final double MAX_STEER_ANGLE = 60; //deg, above which the robot turns on the spot
+	private static final int CONTROL_PERIOD = 10; //ms
+
+	private Navigation nav;
+	private Odometer odometer;
+	private PathMetrics metrics = new PathMetrics();
+	private double lookAhead = DEFAULT_LOOK_AHEAD;
+	private int speed = Navigation.FAST;
+	private volatile boolean cancelled = false;
+
+	/**
+	 * Constructor for the follower.
+	 * @param nav		the <code>Navigation</code> used to set the wheel speeds and turn
+	 * @param odometer	the <code>Odometer</code> giving the robot's pose
+	 */
+	public PathFollower(Navigation nav, Odometer odometer) {
+		this.nav = nav;
+		this.odometer = odometer;
+	}
+
+	/**
+	 * Sets the look-ahead distance.
+	 * @param lookAhead		the <code>double</code> distance in cm
+	 */
+	public void setLookAhead(double lookAhead) {
+		this.lookAhead = lookAhead;
+	}
+
+	/**
+	 * Getter for the look-ahead distance.
+	 * @return		the <code>double</code> distance in cm
+	 */
+	public double getLookAhead() {
+		return lookAhead;
+	}
+
+	/**
+	 * Sets the cruising speed.
+	 * @param speed		the <code>int</code> speed in deg/s of the wheels
+	 */
+	public void setSpeed(int speed) {
+		this.speed = speed;
+	}
+
+	/**
+	 * Getter for the metrics of the last path followed.
+	 * @return		the <code>PathMetrics</code>
+	 */
+	public PathMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Makes {@link #follow(double[][])} stop at the next control step.
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+
+	/**
+	 * Follows a path starting from the robot's current position. Returns once the last waypoint is reached.
+	 * @param path		the <code>double[][]</code> waypoints, each as {x, y} in cm
+	 * @return			<code>true</code> if the end of the path was reached, <code>false</code> if cancelled
+	 */
+	public boolean follow(double[][] path) {
+		cancelled = false;
+		Pose pose = odometer.getPose();
+
+		// the robot's position is the start of the first segment
+		double[] x = new double[path.length + 1];
+		double[] y = new double[path.length + 1];
+		x[0] = pose.getX();
+		y[0] = pose.getY();
+		for (int i = 0; i < path.length; i++) {
+			x[i + 1] = path[i][0];
+			y[i + 1] = path[i][1];
+		}
+		int last = x.length - 1;
+		int segment = 0;
+		double[] target = new double[2];
+
+		metrics.begin();
+		while (!cancelled && last > 0) {
+			pose = odometer.getPose();
+
+			// move on to the next segment once the robot is past the end of this one
+			double t = projection(pose, x, y, segment);
+			while (segment < last - 1 && t >= 1) {
+				segment++;
+				t = projection(pose, x, y, segment);
+			}
+			metrics.sample(pose, x[segment], y[segment], x[segment + 1], y[segment + 1]);
+
+			if (segment == last - 1 && (t >= 1 || pose.distanceTo(x[last], y[last]) < GOAL_TOLERANCE))
+				break;
+
+			lookAheadPoint(x, y, segment, clamp(t), target);
+			double heading = pose.headingTo(target[0], target[1]);
+			double alpha = Odometer.minimumAngleFromTo(pose.getAng(), heading);
+
+			if (Math.abs(alpha) > MAX_STEER_ANGLE) {
+				metrics.countStop();
+				nav.turnTo(heading, true);
+				continue;
+			}
+
+			// arc through the look-ahead point: curvature = 2 sin(alpha) / distance
+			double distance = pose.distanceTo(target[0], target[1]);
+			double curvature = 2 * Math.sin(Math.toRadians(alpha)) / Math.max(distance, GOAL_TOLERANCE);
+			// past a differential of 1 the inner wheel would reverse and the robot pivot instead of following the arc
+			double differential = Math.max(-1, Math.min(1, curvature * odometer.getTrack() / 2));
+			nav.setSpeeds((float) (speed * (1 - differential)), (float) (speed * (1 + differential)));
+
+			try {
+				Thread.sleep(CONTROL_PERIOD);
+			} catch (InterruptedException e) {
+				break;
+			}
+		}
+		nav.stopMotors();
+		metrics.end();
+		return !cancelled;
+	}
+
+	/**
+	 * Position of the robot projected on a segment, as a fraction of the segment: 0 at its start, 1 at its end.
+	 */
+	private static double projection(Pose pose, double[] x, double[] y, int segment) {
+		double dx = x[segment + 1] - x[segment], dy = y[segment + 1] - y[segment];
+		double lengthSq = dx * dx + dy * dy;
+		if (lengthSq == 0)
+			return 1;
+		return ((pose.getX() - x[segment]) * dx + (pose.getY() - y[segment]) * dy) / lengthSq;
+	}
+
+	private static double clamp(double t) {
+		return t < 0 ? 0 : (t > 1 ? 1 : t);
+	}
+
+	/**
+	 * Walks the look-ahead distance along the path from the closest point on a segment.
+	 */
+	private void lookAheadPoint(double[] x, double[] y, int segment, double t, double[] target) {
+		double px = x[segment] + t * (x[segment + 1] - x[segment]);
+		double py = y[segment] + t * (y[segment + 1] - y[segment]);
+		double remaining = lookAhead;
+		for (int i = segment; i < x.length - 1; i++) {
+			double rest = Math.hypot(x[i + 1] - px, y[i + 1] - py);
+			if (remaining <= rest) {
+				target[0] = px + (x[i + 1] - px) * remaining / rest;
+				target[1] = py + (y[i + 1] - py) * remaining / rest;
+				return;
+			}
+			remaining -= rest;
+			px = x[i + 1];
+			py = y[i + 1];
+		}
+		target[0] = x[x.length - 1];
+		target[1] = y[y.length - 1];
+	}
+}
@@ -0,0 +1,121 @@
+package team6.finalproject;
+
+/**
+ * Collects figures on how well the robot followed a path, so the stop-and-turn driving of
+ * {@link Navigation#travelTo(double, double)} can be compared to the {@link PathFollower}.
+ * <o>
+ * A run starts with {@link #begin()} and ends with {@link #end()}. In between, the driving code reports each
+ * pose along with the segment it is meant to be on, and every time it stops to turn on the spot.
+ *
+ * @author Erick Zhao
+ * @version 1.0
+ */
+public class PathMetrics {
+
+	private long startTime, endTime;
+	private boolean running = false;
+	private int samples, stops;
+	private double errorSum, maxError;
+
+	/**
+	 * Clears the figures of the last run and starts timing a new one.
+	 */
+	public synchronized void begin() {
+		startTime = System.currentTimeMillis();
+		endTime = startTime;
+		running = true;
+		samples = 0;
+		stops = 0;
+		errorSum = 0;
+		maxError = 0;
+	}
+
+	/**
+	 * Stops timing the current run.
+	 */
+	public synchronized void end() {
+		if (running) {
+			endTime = System.currentTimeMillis();
+			running = false;
+		}
+	}
+
+	/**
+	 * Records the cross-track error of a pose, i.e. its distance to the segment being followed.
+	 * @param pose		the current <code>Pose</code>
+	 * @param x0		the <code>double</code> X coordinate of the start of the segment in cm
+	 * @param y0		the <code>double</code> Y coordinate of the start of the segment in cm
+	 * @param x1		the <code>double</code> X coordinate of the end of the segment in cm
+	 * @param y1		the <code>double</code> Y coordinate of the end of the segment in cm
+	 */
+	public synchronized void sample(Pose pose, double x0, double y0, double x1, double y1) {
+		if (!running)
+			return;
+		double error = distanceToSegment(pose.getX(), pose.getY(), x0, y0, x1, y1);
+		errorSum += error;
+		samples++;
+		if (error > maxError)
+			maxError = error;
+	}
+
+	/**
+	 * Records a stop to turn on the spot.
+	 */
+	public synchronized void countStop() {
+		if (running)
+			stops++;
+	}
+
+	/**
+	 * Getter for the duration of the run.
+	 * @return		the <code>long</code> time in ms, up to now if the run has not ended
+	 */
+	public synchronized long getTraversalTime() {
+		return (running ? System.currentTimeMillis() : endTime) - startTime;
+	}
+
+	/**
+	 * Getter for the mean cross-track error.
+	 * @return		the <code>double</code> mean error in cm
+	 */
+	public synchronized double getMeanCrossTrackError() {
+		return samples == 0 ? 0 : errorSum / samples;
+	}
+
+	/**
+	 * Getter for the largest cross-track error.
+	 * @return		the <code>double</code> max error in cm
+	 */
+	public synchronized double getMaxCrossTrackError() {
+		return maxError;
+	}
+
+	/**
+	 * Getter for the number of stops to turn.
+	 * @return		the <code>int</code> number of stops
+	 */
+	public synchronized int getStops() {
+		return stops;
+	}
+
+	/**
+	 * Distance from a point to a segment.
+	 * @return		the <code>double</code> distance in cm
+	 */
+	public static double distanceToSegment(double x, double y, double x0, double y0, double x1, double y1) {
+		double dx = x1 - x0, dy = y1 - y0;
+		double lengthSq = dx * dx + dy * dy;
+		double t = lengthSq == 0 ? 0 : ((x - x0) * dx + (y - y0) * dy) / lengthSq;
+		if (t < 0)
+			t = 0;
+		else if (t > 1)
+			t = 1;
+		return Math.hypot(x - (x0 + t * dx), y - (y0 + t * dy));
+	}
+
+	@Override
+	public synchronized String toString() {
+		return getTraversalTime() + "ms, xte " + (int) (getMeanCrossTrackError() * 10) / 10.0 + "/"
+				+ (int) (maxError * 10) / 10.0 + "cm, " + stops + " stops";
+	}
+}
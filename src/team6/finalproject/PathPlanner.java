@@ -0,0 +1,21 @@
+package team6.finalproject;
+
+/**
+ * Interface for the path planners, which find a collision-free path between two points of the arena.
+ *
+ * @author Erick Zhao
+ * @version 1.0
+ */
+public interface PathPlanner {
+
+	/**
+	 * Plans a path from a start point to a goal.
+	 * @param startX	the <code>double</code> X coordinate of the start in cm
+	 * @param startY	the <code>double</code> Y coordinate of the start in cm
+	 * @param goalX		the <code>double</code> X coordinate of the goal in cm
+	 * @param goalY		the <code>double</code> Y coordinate of the goal in cm
+	 * @return			the <code>double[][]</code> waypoints after the start, each as {x, y} in cm and ending with
+	 * 					the goal, or <code>null</code> if the goal cannot be reached
+	 */
+	double[][] plan(double startX, double startY, double goalX, double goalY);
+}
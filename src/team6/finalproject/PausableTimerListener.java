@@ -8,7 +8,7 @@ import lejos.utility.Timer;
  * <o>
  * Allows for any <code>TimerListener</code> to be instantiated and paused using the <code>start()</code>
  * and <code>stop()</code> methods within this class. Also instantiates every timer at a refresh rate of
- * 50 milliseconds.
+ * 50 milliseconds, which can be changed with <code>setRefreshRate()</code>.
  * 
  * @author	Erick Zhao
  * @version 1.0
@@ -32,6 +32,15 @@ public abstract class PausableTimerListener implements TimerListener {
 		this.timer = new Timer(REFRESH_RATE, this);
 	}
 	
+	/**
+	 * Changes how often the <code>Timer</code> calls this instance. Takes effect on the next loop.
+	 * @param refreshRate	the <code>int</code> period in milliseconds
+	 */
+	public void setRefreshRate(int refreshRate) {
+		if (this.timer != null)
+			this.timer.setDelay(refreshRate);
+	}
+	
 	/**
 	 * Starts the <code>Timer</code>, which resumes the instance of this class.
 	 */
@@ -0,0 +1,99 @@
+package team6.finalproject;
+
+/**
+ * Immutable snapshot of the robot's position and heading, as published by the {@link Odometer}.
+ * <o>
+ * A <code>Pose</code> never changes once created, so a reader can hold on to one and use its
+ * x, y and theta values together without any locking, and without the risk of mixing values from two
+ * different odometer updates.
+ *
+ * @author Erick Zhao
+ * @version 1.0
+ * @see Odometer
+ */
+public final class Pose {
+
+	private final double x, y, theta;
+	private final long time;
+
+	/**
+	 * Constructor for Pose, timestamped with the current <code>System.nanoTime()</code>.
+	 * @param x			the <code>double</code> X coordinate in cm
+	 * @param y			the <code>double</code> Y coordinate in cm
+	 * @param theta		the <code>double</code> heading in degrees
+	 */
+	public Pose(double x, double y, double theta) {
+		this(x, y, theta, System.nanoTime());
+	}
+
+	/**
+	 * Constructor for Pose.
+	 * @param x			the <code>double</code> X coordinate in cm
+	 * @param y			the <code>double</code> Y coordinate in cm
+	 * @param theta		the <code>double</code> heading in degrees
+	 * @param time		the <code>long</code> <code>System.nanoTime()</code> at which the robot was at this pose
+	 */
+	public Pose(double x, double y, double theta, long time) {
+		this.x = x;
+		this.y = y;
+		this.theta = theta;
+		this.time = time;
+	}
+
+	/**
+	 * Getter for X value
+	 * @return 		a <code>double</code> X value in cm
+	 */
+	public double getX() {
+		return x;
+	}
+
+	/**
+	 * Getter for Y value
+	 * @return 		a <code>double</code> Y value in cm
+	 */
+	public double getY() {
+		return y;
+	}
+
+	/**
+	 * Getter for theta value
+	 * @return 		a <code>double</code> heading in degrees, from 0 to 360
+	 */
+	public double getAng() {
+		return theta;
+	}
+
+	/**
+	 * Getter for the timestamp
+	 * @return 		the <code>long</code> <code>System.nanoTime()</code> at which the robot was at this pose
+	 */
+	public long getTime() {
+		return time;
+	}
+
+	/**
+	 * Euclidean distance from this pose to a point.
+	 * @param x		the <code>double</code> X coordinate of the point in cm
+	 * @param y		the <code>double</code> Y coordinate of the point in cm
+	 * @return		the <code>double</code> distance in cm
+	 */
+	public double distanceTo(double x, double y) {
+		return Math.hypot(x - this.x, y - this.y);
+	}
+
+	/**
+	 * Heading from this pose towards a point.
+	 * @param x		the <code>double</code> X coordinate of the point in cm
+	 * @param y		the <code>double</code> Y coordinate of the point in cm
+	 * @return		the <code>double</code> heading in degrees, from 0 to 360
+	 */
+	public double headingTo(double x, double y) {
+		return Odometer.fixDegAngle(Math.toDegrees(Math.atan2(y - this.y, x - this.x)));
+	}
+
+	@Override
+	public String toString() {
+		return "(" + x + ", " + y + ", " + theta + ")";
+	}
+}
@@ -0,0 +1,308 @@
+package team6.finalproject;
+
+/**
+ * Extended Kalman filter that keeps track of how uncertain the odometer's pose is, and corrects it with
+ * grid line crossings and ultrasonic wall readings.
+ * <o>
+ * The {@link Odometer} still integrates the wheel rotations; every <code>Timer</code> loop this class takes
+ * the motion since the last loop and grows the 3x3 covariance of x, y and theta accordingly. When a
+ * measurement arrives, it is compared with what the current pose predicts, weighted against the covariance,
+ * and the resulting correction to x, y <i>and</i> theta is applied to the odometer. Measurements that are too
+ * unlikely given the covariance (a reflection, an obstacle in front of a wall) are ignored.
+ * <o>
+ * All the matrices are kept in preallocated arrays, so an update does not allocate.
+ *
+ * @author Erick Zhao
+ * @version 1.0
+ * @see Odometer
+ * @see OdometryCorrection
+ */
+public class PoseEstimator extends PausableTimerListener {
+
+	private static final double GRID_WIDTH = 30.48;
+	private static final double WALL_LOW = -GRID_WIDTH; //Position of the left and bottom walls
+	private static final double WALL_HIGH = 11 * GRID_WIDTH; //Position of the right and top walls
+	private static final double LIGHT_SENSOR_TO_CENTRE = 9.5;
+	private static final double US_SENSOR_TO_CENTRE = 8.0;
+
+	// noise model
+	private static final double DISTANCE_NOISE = 0.02; //Std dev per cm travelled, in cm
+	private static final double TURN_NOISE = 0.03; //Std dev per radian turned, in radians
+	private static final double DRIFT_NOISE = 0.002; //Heading std dev per cm travelled, in radians
+	private static final double LINE_NOISE = 0.5; //Std dev of a line crossing, in cm
+	private static final double RANGE_NOISE = 1.5; //Std dev of an ultrasonic reading, in cm
+	private static final double GATE = 9.0; //Max squared Mahalanobis distance of an accepted measurement (3 std devs)
+
+	// ultrasonic readings are only used when facing a wall squarely and close enough to trust the echo
+	private static final double MAX_WALL_ANGLE = Math.toRadians(15);
+	private static final double MAX_RANGE = 100;
+
+	private Odometer odometer;
+	private UltrasonicPoller rangeSensor;
+
+	// state
+	private double[] covariance = new double[9];
+	private double lastX, lastY, lastTheta;
+	private long lastRangeTime;
+
+	// preallocated work arrays
+	private double[] jacobian = new double[9];
+	private double[] product = new double[9];
+	private double[] gain = new double[3];
+	private double[] observation = new double[3];
+	private double[] observationX = new double[3];
+	private double[] observationY = new double[3];
+	private double[] samplePosition = new double[3];
+
+	/**
+	 * Constructor for the pose estimator.
+	 * @param odometer		the <code>Odometer</code> whose pose is filtered and corrected
+	 * @param rangeSensor	the forward-facing <code>UltrasonicPoller</code> used to range walls, or <code>null</code>
+	 */
+	public PoseEstimator(Odometer odometer, UltrasonicPoller rangeSensor) {
+		this.odometer = odometer;
+		this.rangeSensor = rangeSensor;
+		reset(1.0, 2.0);
+	}
+
+	/**
+	 * Restarts the filter from the odometer's current pose, for example right after localization.
+	 * @param positionStdDev	the <code>double</code> uncertainty of x and y in cm
+	 * @param headingStdDev		the <code>double</code> uncertainty of theta in degrees
+	 */
+	public synchronized void reset(double positionStdDev, double headingStdDev) {
+		for (int i = 0; i < 9; i++) {
+			covariance[i] = 0;
+		}
+		covariance[0] = positionStdDev * positionStdDev;
+		covariance[4] = positionStdDev * positionStdDev;
+		covariance[8] = Math.toRadians(headingStdDev) * Math.toRadians(headingStdDev);
+
+		Pose pose = odometer.getPose();
+		lastX = pose.getX();
+		lastY = pose.getY();
+		lastTheta = pose.getAng();
+		lastRangeTime = (rangeSensor == null) ? 0 : rangeSensor.getSampleTime();
+	}
+
+	/**
+	 * Propagates the covariance with the odometer's motion, then uses the latest ultrasonic reading if there is one.
+	 */
+	@Override
+	public void timedOut() {
+		predict();
+		if (rangeSensor != null && rangeSensor.getSampleTime() != lastRangeTime) {
+			lastRangeTime = rangeSensor.getSampleTime();
+			updateRange(rangeSensor.getDistance());
+		}
+	}
+
+	/**
+	 * Grows the covariance by the motion the odometer reported since the last loop.
+	 */
+	private synchronized void predict() {
+		Pose pose = odometer.getPose();
+		double dTheta = Math.toRadians(Odometer.minimumAngleFromTo(lastTheta, pose.getAng()));
+		double heading = Math.toRadians(lastTheta) + dTheta / 2.0;
+		double cos = Math.cos(heading);
+		double sin = Math.sin(heading);
+		double distance = (pose.getX() - lastX) * cos + (pose.getY() - lastY) * sin;
+
+		lastX = pose.getX();
+		lastY = pose.getY();
+		lastTheta = pose.getAng();
+
+		if (distance == 0 && dTheta == 0)
+			return;
+
+		// P = F P F' + G Q G'
+		jacobian[0] = 1; jacobian[1] = 0; jacobian[2] = -distance * sin;
+		jacobian[3] = 0; jacobian[4] = 1; jacobian[5] = distance * cos;
+		jacobian[6] = 0; jacobian[7] = 0; jacobian[8] = 1;
+		multiply(jacobian, covariance, product);
+		multiplyTransposed(product, jacobian, covariance);
+
+		double distanceVariance = square(DISTANCE_NOISE * distance);
+		double headingVariance = square(TURN_NOISE * dTheta) + square(DRIFT_NOISE * distance);
+		covariance[0] += distanceVariance * cos * cos;
+		covariance[1] += distanceVariance * cos * sin;
+		covariance[3] += distanceVariance * cos * sin;
+		covariance[4] += distanceVariance * sin * sin;
+		covariance[8] += headingVariance;
+	}
+
+	/**
+	 * Uses a grid line crossing to correct the pose. The light sensor's position when it was sampled is compared
+	 * with the nearest vertical and horizontal grid lines, and the more likely of the two is used.
+	 * @param time		the <code>long</code> <code>System.nanoTime()</code> at which the line was sampled
+	 */
+	public synchronized void updateLine(long time) {
+		odometer.poseAt(time, samplePosition);
+		double theta = Math.toRadians(samplePosition[2]);
+		double cos = Math.cos(theta);
+		double sin = Math.sin(theta);
+		double sensorX = samplePosition[0] + LIGHT_SENSOR_TO_CENTRE * cos;
+		double sensorY = samplePosition[1] + LIGHT_SENSOR_TO_CENTRE * sin;
+
+		// vertical line: h = x + d cos(theta)
+		observationX[0] = 1; observationX[1] = 0; observationX[2] = -LIGHT_SENSOR_TO_CENTRE * sin;
+		double innovationX = nearestGridLine(sensorX) - sensorX;
+		double distanceX = mahalanobis(observationX, innovationX, LINE_NOISE * LINE_NOISE);
+
+		// horizontal line: h = y + d sin(theta)
+		observationY[0] = 0; observationY[1] = 1; observationY[2] = LIGHT_SENSOR_TO_CENTRE * cos;
+		double innovationY = nearestGridLine(sensorY) - sensorY;
+		double distanceY = mahalanobis(observationY, innovationY, LINE_NOISE * LINE_NOISE);
+
+		if (distanceX <= distanceY && distanceX < GATE) {
+			correct(observationX, innovationX, LINE_NOISE * LINE_NOISE);
+		} else if (distanceY < distanceX && distanceY < GATE) {
+			correct(observationY, innovationY, LINE_NOISE * LINE_NOISE);
+		}
+	}
+
+	/**
+	 * Uses an ultrasonic reading to correct the pose, if the robot is squarely facing one of the arena walls.
+	 * @param range		the <code>double</code> distance read by the forward-facing sensor, in cm
+	 */
+	public synchronized void updateRange(double range) {
+		if (range > MAX_RANGE)
+			return;
+
+		Pose pose = odometer.getPose();
+		double theta = Math.toRadians(pose.getAng());
+		double cos = Math.cos(theta);
+		double sin = Math.sin(theta);
+		double expected;
+
+		if (Math.abs(cos) > Math.cos(MAX_WALL_ANGLE)) {
+			// facing the left or right wall: r = (wall - x) / cos(theta) - offset
+			double wall = (cos > 0) ? WALL_HIGH : WALL_LOW;
+			expected = (wall - pose.getX()) / cos - US_SENSOR_TO_CENTRE;
+			observation[0] = -1 / cos;
+			observation[1] = 0;
+			observation[2] = (wall - pose.getX()) * sin / (cos * cos);
+		} else if (Math.abs(sin) > Math.cos(MAX_WALL_ANGLE)) {
+			// facing the top or bottom wall: r = (wall - y) / sin(theta) - offset
+			double wall = (sin > 0) ? WALL_HIGH : WALL_LOW;
+			expected = (wall - pose.getY()) / sin - US_SENSOR_TO_CENTRE;
+			observation[0] = 0;
+			observation[1] = -1 / sin;
+			observation[2] = -(wall - pose.getY()) * cos / (sin * sin);
+		} else {
+			return;
+		}
+
+		if (expected > MAX_RANGE)
+			return;
+
+		double innovation = range - expected;
+		if (mahalanobis(observation, innovation, RANGE_NOISE * RANGE_NOISE) < GATE) {
+			correct(observation, innovation, RANGE_NOISE * RANGE_NOISE);
+		}
+	}
+
+	/**
+	 * Squared Mahalanobis distance of a scalar measurement's innovation.
+	 */
+	private double mahalanobis(double[] h, double innovation, double noise) {
+		return innovation * innovation / innovationVariance(h, noise);
+	}
+
+	/**
+	 * Variance of a scalar measurement's innovation, H P H' + R.
+	 */
+	private double innovationVariance(double[] h, double noise) {
+		double variance = noise;
+		for (int i = 0; i < 3; i++) {
+			for (int j = 0; j < 3; j++) {
+				variance += h[i] * covariance[i * 3 + j] * h[j];
+			}
+		}
+		return variance;
+	}
+
+	/**
+	 * Kalman update for a scalar measurement; applies the correction to the odometer.
+	 */
+	private void correct(double[] h, double innovation, double noise) {
+		double variance = innovationVariance(h, noise);
+
+		// K = P H' / S
+		for (int i = 0; i < 3; i++) {
+			gain[i] = (covariance[i * 3] * h[0] + covariance[i * 3 + 1] * h[1] + covariance[i * 3 + 2] * h[2])
+					/ variance;
+		}
+
+		// P = P - K S K'
+		for (int i = 0; i < 3; i++) {
+			for (int j = 0; j < 3; j++) {
+				covariance[i * 3 + j] -= gain[i] * variance * gain[j];
+			}
+		}
+
+		double dx = gain[0] * innovation;
+		double dy = gain[1] * innovation;
+		double dTheta = Math.toDegrees(gain[2] * innovation);
+		odometer.correctPosition(dx, dy, dTheta);
+
+		// the correction is not motion
+		lastX += dx;
+		lastY += dy;
+		lastTheta = Odometer.fixDegAngle(lastTheta + dTheta);
+	}
+
+	/**
+	 * Copies the current covariance, row by row, with x and y in cm and theta in radians.
+	 * @param out	the <code>double</code> array of 9 elements in which to store the covariance
+	 */
+	public synchronized void getCovariance(double[] out) {
+		System.arraycopy(covariance, 0, out, 0, 9);
+	}
+
+	/**
+	 * Getter for the position uncertainty
+	 * @return		the <code>double</code> standard deviation of the position, in cm
+	 */
+	public synchronized double getPositionStdDev() {
+		return Math.sqrt(covariance[0] + covariance[4]);
+	}
+
+	/**
+	 * Getter for the heading uncertainty
+	 * @return		the <code>double</code> standard deviation of the heading, in degrees
+	 */
+	public synchronized double getHeadingStdDev() {
+		return Math.toDegrees(Math.sqrt(covariance[8]));
+	}
+
+	private static double nearestGridLine(double position) {
+		return Math.round(position / GRID_WIDTH) * GRID_WIDTH;
+	}
+
+	private static double square(double value) {
+		return value * value;
+	}
+
+	/**
+	 * out = a b, for 3x3 matrices
+	 */
+	private static void multiply(double[] a, double[] b, double[] out) {
+		for (int i = 0; i < 3; i++) {
+			for (int j = 0; j < 3; j++) {
+				out[i * 3 + j] = a[i * 3] * b[j] + a[i * 3 + 1] * b[3 + j] + a[i * 3 + 2] * b[6 + j];
+			}
+		}
+	}
+
+	/**
+	 * out = a b', for 3x3 matrices
+	 */
+	private static void multiplyTransposed(double[] a, double[] b, double[] out) {
+		for (int i = 0; i < 3; i++) {
+			for (int j = 0; j < 3; j++) {
+				out[i * 3 + j] = a[i * 3] * b[j * 3] + a[i * 3 + 1] * b[j * 3 + 1] + a[i * 3 + 2] * b[j * 3 + 2];
+			}
+		}
+	}
+}
@@ -0,0 +1,26 @@
+package team6.finalproject;
+
+/**
+ * Interface for the filters of a stream of sensor readings, one reading at a time.
+ * <o>
+ * Filters keep their state in arrays allocated once, so filtering does not create garbage for the EV3's
+ * collector. They can be chained with {@link FilterChain}.
+ *
+ * @author Erick Zhao
+ * @version 1.0
+ * @see FilteredPoller
+ */
+public interface SampleFilter {
+
+	/**
+	 * Takes in the next reading.
+	 * @param sample	the <code>float</code> new reading
+	 * @return			the <code>float</code> filtered value
+	 */
+	float filter(float sample);
+
+	/**
+	 * Forgets the readings taken in so far.
+	 */
+	void reset();
+}
@@ -0,0 +1,109 @@
+package team6.finalproject;
+
+/**
+ * The last few readings of a stream, kept both in arrival order and sorted.
+ * <o>
+ * Adding a reading drops the oldest one from the sorted copy and inserts the new one, in one pass over the
+ * window, so the median is always at hand. Used by the {@link MedianFilter} and the {@link HampelFilter}.
+ *
+ * @author Erick Zhao
+ * @version 1.0
+ */
+public class SlidingWindow {
+
+	private final float[] ring;
+	private final float[] sorted;
+	private final float[] deviations;
+	private int head = 0, count = 0;
+
+	/**
+	 * Constructor for an empty window.
+	 * @param size		the <code>int</code> number of readings kept
+	 */
+	public SlidingWindow(int size) {
+		if (size < 1)
+			throw new IllegalArgumentException("Window size must be at least 1");
+		ring = new float[size];
+		sorted = new float[size];
+		deviations = new float[size];
+	}
+
+	/**
+	 * Adds a reading, dropping the oldest one once the window is full.
+	 * @param sample	the <code>float</code> new reading
+	 */
+	public void add(float sample) {
+		int slot;
+		if (count == ring.length) {
+			// take the oldest reading out of the sorted copy
+			float oldest = ring[head];
+			slot = 0;
+			while (sorted[slot] != oldest)
+				slot++;
+			System.arraycopy(sorted, slot + 1, sorted, slot, count - slot - 1);
+			slot = count - 1;
+		} else {
+			slot = count++;
+		}
+		ring[head] = sample;
+		head = (head + 1) % ring.length;
+
+		// insert the new reading, shifting the larger ones up
+		while (slot > 0 && sorted[slot - 1] > sample) {
+			sorted[slot] = sorted[slot - 1];
+			slot--;
+		}
+		sorted[slot] = sample;
+	}
+
+	/**
+	 * Median of the readings in the window.
+	 * @return			the <code>float</code> median, the mean of the two middle readings for an even count,
+	 * 					or <code>NaN</code> if the window is empty
+	 */
+	public float median() {
+		if (count == 0)
+			return Float.NaN;
+		if (count % 2 == 1)
+			return sorted[count / 2];
+		return (sorted[count / 2 - 1] + sorted[count / 2]) / 2;
+	}
+
+	/**
+	 * Median absolute deviation of the readings from their median.
+	 * @return			the <code>float</code> deviation, or <code>NaN</code> if the window is empty
+	 */
+	public float medianDeviation() {
+		if (count == 0)
+			return Float.NaN;
+		float median = median();
+		for (int i = 0; i < count; i++) {
+			float deviation = Math.abs(sorted[i] - median);
+			int slot = i;
+			while (slot > 0 && deviations[slot - 1] > deviation) {
+				deviations[slot] = deviations[slot - 1];
+				slot--;
+			}
+			deviations[slot] = deviation;
+		}
+		if (count % 2 == 1)
+			return deviations[count / 2];
+		return (deviations[count / 2 - 1] + deviations[count / 2]) / 2;
+	}
+
+	/**
+	 * Getter for the number of readings in the window.
+	 * @return			the <code>int</code> count, up to the window's size
+	 */
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * Empties the window.
+	 */
+	public void clear() {
+		head = 0;
+		count = 0;
+	}
+}
@@ -0,0 +1,235 @@
+package team6.finalproject;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Angle and distance profile recorded over a sweep, split into the objects it saw.
+ * <o>
+ * The readings are kept in primitive arrays in the order they were taken, with the pose the robot was in
+ * when each was sampled. Once the sweep is over, {@link #segment(double)} walks the profile and groups
+ * consecutive readings within range whose distances stay close into one object. A reading out of range
+ * or a jump in distance ends an object, except for a single missed echo. An object seen on both sides of a
+ * nearer one is put back together. Groups of too few readings are taken for noise and dropped.
+ * <o>
+ * Each object becomes a {@link Candidate}: its heading is the middle of the arc it was seen over, its
+ * distance the shortest reading on it, and its position the point at that distance along that heading.
+ * Since the sensor's cone widens every object by the beam's width, that width is taken off the arc to
+ * estimate the object's size. The candidates come out nearest first.
+ *
+ * @author Erick Zhao
+ * @version 1.0
+ * @see ObjectSearch
+ */
+public class SweepScan {
+
+	/**
+	 * Width in degrees of the ultrasonic sensor's cone, by which every object looks wider.
+	 */
+	public static final double BEAM_ANGLE = 25;
+	private static final int CAPACITY = 512;
+	private static final double MAX_JUMP = 8; // cm between neighbouring readings on one object
+	private static final int MAX_MISSED = 1; // readings out of range an object can span
+	private static final int MIN_READINGS = 2;
+
+	private final double[] x = new double[CAPACITY], y = new double[CAPACITY];
+	private final double[] heading = new double[CAPACITY];
+	private final float[] distance = new float[CAPACITY];
+	private int count = 0;
+
+	/**
+	 * An object seen on a sweep.
+	 */
+	public static class Candidate {
+		private final double x, y, heading, distance, arc, width;
+		private final int readings;
+
+		Candidate(double x, double y, double heading, double distance, double arc, double width, int readings) {
+			this.x = x;
+			this.y = y;
+			this.heading = heading;
+			this.distance = distance;
+			this.arc = arc;
+			this.width = width;
+			this.readings = readings;
+		}
+
+		/**
+		 * @return the <code>double</code> X coordinate in cm of the object's near side
+		 */
+		public double getX() {
+			return x;
+		}
+
+		/**
+		 * @return the <code>double</code> Y coordinate in cm of the object's near side
+		 */
+		public double getY() {
+			return y;
+		}
+
+		/**
+		 * @return the <code>double</code> heading in degrees from the sweep point to the object's middle
+		 */
+		public double getHeading() {
+			return heading;
+		}
+
+		/**
+		 * @return the <code>double</code> shortest distance read to the object in cm
+		 */
+		public double getDistance() {
+			return distance;
+		}
+
+		/**
+		 * @return the <code>double</code> arc in degrees the object was seen over, beam included
+		 */
+		public double getArc() {
+			return arc;
+		}
+
+		/**
+		 * @return the <code>double</code> estimated width of the object in cm, 0 if no wider than the beam
+		 */
+		public double getWidth() {
+			return width;
+		}
+
+		/**
+		 * @return the <code>int</code> number of readings on the object
+		 */
+		public int getReadings() {
+			return readings;
+		}
+	}
+
+	/**
+	 * Records a reading. Readings past the capacity are dropped.
+	 * @param x				the <code>double</code> X coordinate in cm of the robot when it was sampled
+	 * @param y				the <code>double</code> Y coordinate in cm of the robot when it was sampled
+	 * @param heading		the <code>double</code> heading in degrees of the sensor when it was sampled
+	 * @param distance		the <code>float</code> distance read in cm
+	 */
+	public void add(double x, double y, double heading, float distance) {
+		if (count == CAPACITY)
+			return;
+		this.x[count] = x;
+		this.y[count] = y;
+		this.heading[count] = heading;
+		this.distance[count] = distance;
+		count++;
+	}
+
+	/**
+	 * Forgets every reading, for the next sweep.
+	 */
+	public void clear() {
+		count = 0;
+	}
+
+	/**
+	 * Getter for the number of readings recorded.
+	 * @return		the <code>int</code> number of readings
+	 */
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * Splits the profile into objects.
+	 * @param range		the <code>double</code> distance in cm past which readings are ignored
+	 * @return			the <code>Candidate[]</code> objects seen, nearest first
+	 */
+	public Candidate[] segment(double range) {
+		// runs of readings, in the order they were taken
+		int[] runFirst = new int[count + 1], runLast = new int[count + 1];
+		int runs = 0;
+		int first = -1, last = -1, missed = 0;
+		for (int i = 0; i <= count; i++) {
+			boolean inRange = i < count && distance[i] <= range;
+			if (inRange && first >= 0 && Math.abs(distance[i] - distance[last]) > MAX_JUMP) {
+				// another object, nearer or further, in front of or behind this one
+				runFirst[runs] = first;
+				runLast[runs++] = last;
+				first = -1;
+			}
+			if (inRange) {
+				if (first < 0)
+					first = i;
+				last = i;
+				missed = 0;
+			} else if (first >= 0 && (i == count || ++missed > MAX_MISSED)) {
+				runFirst[runs] = first;
+				runLast[runs++] = last;
+				first = -1;
+			}
+		}
+
+		Candidate[] found = new Candidate[runs];
+		int foundCount = 0;
+		for (int k = 0; k < runs; k++) {
+			// an object seen on both sides of a nearer one in front of it is one object
+			if (k + 2 < runs && runFirst[k + 1] == runLast[k] + 1 && runFirst[k + 2] == runLast[k + 1] + 1) {
+				float before = nearest(runFirst[k], runLast[k], 0, range);
+				float front = nearest(runFirst[k + 1], runLast[k + 1], 0, range);
+				float after = nearest(runFirst[k + 2], runLast[k + 2], 0, range);
+				if (front < Math.min(before, after) && Math.abs(before - after) <= MAX_JUMP) {
+					foundCount = close(found, foundCount, runFirst[k + 1], runLast[k + 1], 0, range);
+					foundCount = close(found, foundCount, runFirst[k], runLast[k + 2], front + MAX_JUMP, range);
+					k += 2;
+					continue;
+				}
+			}
+			foundCount = close(found, foundCount, runFirst[k], runLast[k], 0, range);
+		}
+
+		Candidate[] ranked = Arrays.copyOf(found, foundCount);
+		Arrays.sort(ranked, new Comparator<Candidate>() {
+			@Override
+			public int compare(Candidate a, Candidate b) {
+				return Double.compare(a.distance, b.distance);
+			}
+		});
+		return ranked;
+	}
+
+	/**
+	 * Shortest reading from first to last between the floor and the range.
+	 */
+	private float nearest(int first, int last, double floor, double range) {
+		float nearest = Float.MAX_VALUE;
+		for (int i = first; i <= last; i++) {
+			if (distance[i] >= floor && distance[i] <= range)
+				nearest = Math.min(nearest, distance[i]);
+		}
+		return nearest;
+	}
+
+	/**
+	 * Turns the readings from first to last between the floor and the range into a candidate, if there are
+	 * enough of them.
+	 */
+	private int close(Candidate[] found, int foundCount, int first, int last, double floor, double range) {
+		int readings = 0, nearest = -1;
+		for (int i = first; i <= last; i++) {
+			if (distance[i] < floor || distance[i] > range)
+				continue;
+			readings++;
+			if (nearest < 0 || distance[i] < distance[nearest])
+				nearest = i;
+		}
+		if (readings < MIN_READINGS)
+			return foundCount;
+
+		double arc = Math.abs(Odometer.minimumAngleFromTo(heading[first], heading[last]));
+		double middle = Odometer.fixDegAngle(heading[first] + Odometer.minimumAngleFromTo(heading[first],
+				heading[last]) / 2);
+		double d = distance[nearest];
+		double angle = Math.toRadians(middle);
+		double width = Math.max(0, d * Math.toRadians(arc - BEAM_ANGLE));
+		found[foundCount] = new Candidate(x[nearest] + d * Math.cos(angle), y[nearest] + d * Math.sin(angle),
+				middle, d, arc, width, readings);
+		return foundCount + 1;
+	}
+}
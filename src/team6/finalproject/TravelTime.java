@@ -0,0 +1,75 @@
+package team6.finalproject;
+
+/**
+ * Expected durations of the robot's moves, from the motion profiles <code>Navigation</code> drives with.
+ * <o>
+ * Drives are profiled at <code>CRUISE</code> and turns on the spot at <code>FAST</code>, each
+ * accelerating and braking as the motors would, so short moves are not underestimated.
+ *
+ * @author Erick Zhao
+ * @version 1.0
+ * @see MotionProfile
+ */
+public class TravelTime {
+
+	private final double wheelRadius, track;
+	private final MotionProfile drive = new MotionProfile(Navigation.CRUISE, Navigation.PROFILE_ACCELERATION,
+			Navigation.CREEP);
+	private final MotionProfile turn = new MotionProfile(Navigation.FAST, Navigation.ACCELERATION,
+			Navigation.CREEP);
+
+	/**
+	 * Constructor for the estimator.
+	 * @param wheelRadius	the <code>double</code> wheel radius in cm
+	 * @param track			the <code>double</code> distance between the wheels in cm
+	 */
+	public TravelTime(double wheelRadius, double track) {
+		this.wheelRadius = wheelRadius;
+		this.track = track;
+	}
+
+	/**
+	 * Time to drive straight.
+	 * @param distance	the <code>double</code> distance in cm
+	 * @return			the <code>double</code> time in s
+	 */
+	public synchronized double drive(double distance) {
+		drive.start(MotionProfile.forDistance(wheelRadius, distance));
+		return drive.getDuration();
+	}
+
+	/**
+	 * Time to turn on the spot, the short way round.
+	 * @param from		the <code>double</code> starting heading in degrees
+	 * @param to		the <code>double</code> final heading in degrees
+	 * @return			the <code>double</code> time in s
+	 */
+	public synchronized double turn(double from, double to) {
+		double angle = Math.abs(to - from) % 360;
+		if (angle > 180)
+			angle = 360 - angle;
+		turn.start(MotionProfile.forTurn(wheelRadius, track, angle));
+		return turn.getDuration();
+	}
+
+	/**
+	 * Time to drive along waypoints, turning towards each one first.
+	 * @param x			the <code>double</code> X coordinate of the start in cm
+	 * @param y			the <code>double</code> Y coordinate of the start in cm
+	 * @param heading	the <code>double</code> heading at the start in degrees
+	 * @param path		the <code>double[][]</code> waypoints, each as {x, y} in cm
+	 * @return			the <code>double</code> time in s
+	 */
+	public double path(double x, double y, double heading, double[][] path) {
+		double time = 0;
+		for (int i = 0; i < path.length; i++) {
+			double dx = path[i][0] - x, dy = path[i][1] - y;
+			double legHeading = Math.toDegrees(Math.atan2(dy, dx));
+			time += turn(heading, legHeading) + drive(Math.hypot(dx, dy));
+			x = path[i][0];
+			y = path[i][1];
+			heading = legHeading;
+		}
+		return time;
+	}
+}
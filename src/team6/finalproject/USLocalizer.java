@@ -15,6 +15,10 @@ public class USLocalizer {
 	private Navigation navigator;
 	private double THRESHOLD = 30.0;
 	private float speed = 350;
+	private static final int HAMPEL_WINDOW = 5;
+	private static final float HAMPEL_THRESHOLD = 3; // standard deviations
+	private static final float HAMPEL_MIN_DEVIATION = 1; // cm
+	private FilteredPoller usFilter;
 
 	/**
 	 * Constructor for the UltraSonic Localizer
@@ -23,6 +27,8 @@ public class USLocalizer {
 	public USLocalizer(Odometer odo,UltrasonicPoller uspoll) {
 		this.odo = odo;
 		this.uspoll=uspoll;
+		//Reject the odd 255 reading without delaying the wall's edges
+		this.usFilter=new FilteredPoller(uspoll, new HampelFilter(HAMPEL_WINDOW, HAMPEL_THRESHOLD, HAMPEL_MIN_DEVIATION));
 	}
 
 	/**
@@ -114,18 +120,7 @@ public class USLocalizer {
 	 * @return 		filtered <code>float</code> distance
 	 */
 	private float getFilteredData() {
-		//Filter out faulty 255 data
-		int filter=0;
-
-		//Fetch data
-		float distance = uspoll.getDistance();			
-		
-		//Check five times if the data is accurate
-		while (filter<5 && distance==255){
-			filter++;
-			distance=uspoll.getDistance();
-		}
-		filter=0;
+		float distance = usFilter.getDistance();
 		
 		//Clip if distance is greater than hypotenuse of one square
 		if (distance>THRESHOLD){
@@ -17,7 +17,8 @@ public class UltrasonicPoller extends PausableTimerListener {
 	
 	private SampleProvider us;
 	private float[] usData;
-	private static float distance;
+	private volatile float distance;
+	private volatile long sampleTime;
 	private EV3UltrasonicSensor sensor;
 	
 	/**
@@ -38,7 +39,9 @@ public class UltrasonicPoller extends PausableTimerListener {
 	public void timedOut() {
 		if (sensor.isEnabled()){
 			us.fetchSample(usData,0);
+			// distance first, so a new sample time always comes with its distance
 			distance=usData[0]*100;
+			sampleTime=System.nanoTime();
 		}
 	}
 	
@@ -49,6 +52,15 @@ public class UltrasonicPoller extends PausableTimerListener {
 	public float getDistance(){
 		return distance;
 	}
+	
+	/**
+	 * Gets the time at which the current distance value was sampled.
+	 * Can be passed to {@link Odometer#poseAt(long)} to find where the robot was when the reading was taken.
+	 * @return		the <code>long</code> <code>System.nanoTime()</code> of the current reading
+	 */
+	public long getSampleTime(){
+		return sampleTime;
+	}
 	public void enable(boolean on){
 		if (on && !this.sensor.isEnabled()){
 			Sound.beepSequenceUp();
@@ -0,0 +1,306 @@
+package team6.finalproject;
+
+/**
+ * Visibility graph path planner over the rectangular zones of a {@link ZoneIndex}.
+ * <o>
+ * Every zone to avoid is an axis-aligned rectangle, already grown by the robot's half width, so the
+ * shortest path around them only turns at their corners. The graph's nodes are the zone corners, pushed
+ * out by {@link #CORNER_OFFSET} so the robot does not graze them, and its edges are the pairs of corners
+ * that see each other. A plan links the start and the goal to the corners they see, then runs Dijkstra on
+ * the graph. The result is the exact shortest path, with one waypoint per corner turned around. A start
+ * inside a zone, as odometry error leaves it after overshooting a zone's edge, is first taken straight out
+ * through the nearest edge, and that exit point leads the path.
+ * <o>
+ * The edges are cached between plans. Before planning, the zones added to the index since the last plan
+ * are brought in: only the cached edges crossing a new zone are dropped, and only the new corners are
+ * tested against the others. Removing a zone, which is rare, rebuilds the graph.
+ *
+ * @author Erick Zhao
+ * @version 1.0
+ * @see ZoneIndex
+ */
+public class VisibilityPlanner implements PathPlanner {
+
+	/**
+	 * Distance in cm the corners are moved out from the zones' corners, diagonally.
+	 */
+	public static final double CORNER_OFFSET = 1;
+
+	private final ZoneIndex zones;
+	private final double low, high; // bounds of the robot's center, inside the walls
+
+	// copies of the zones, by id
+	private double[] xa = new double[16], ya = new double[16], xb = new double[16], yb = new double[16];
+	private boolean[] active = new boolean[16];
+	private int zoneCount = 0;
+
+	// corners 4*id to 4*id+3 of each zone, and which of them see each other
+	private double[] nodeX = new double[64], nodeY = new double[64];
+	private boolean[] nodeValid = new boolean[64];
+	private boolean[][] visible = new boolean[64][64];
+
+	// search state, sized like the nodes, with the goal as one extra node
+	private double[] distance = new double[65];
+	private int[] previous = new int[65];
+	private boolean[] done = new boolean[65];
+	private boolean[] fromStart = new boolean[64], toGoal = new boolean[64];
+	private int edgeTests;
+
+	/**
+	 * Constructor for the planner.
+	 * @param zones			the <code>ZoneIndex</code> of the zones to avoid, read again on every plan
+	 * @param wallMargin	the <code>double</code> width in cm of the strip along the walls the robot's
+	 * 						center must stay out of
+	 */
+	public VisibilityPlanner(ZoneIndex zones, double wallMargin) {
+		this.zones = zones;
+		this.low = OccupancyGrid.MIN + wallMargin;
+		this.high = OccupancyGrid.MAX - wallMargin;
+	}
+
+	@Override
+	public synchronized double[][] plan(double startX, double startY, double goalX, double goalY) {
+		update();
+		edgeTests = 0;
+		if (!inArena(goalX, goalY) || inZone(goalX, goalY))
+			return null;
+		// a start inside a zone first drives out of it the shortest way, then plans from there
+		double[] exit = null;
+		if (inZone(startX, startY)) {
+			exit = exitPoint(startX, startY);
+			if (exit == null)
+				return null;
+			startX = exit[0];
+			startY = exit[1];
+		}
+		if (clear(startX, startY, goalX, goalY))
+			return prepend(exit, new double[][] { { goalX, goalY } });
+
+		int nodes = 4 * zoneCount, goal = nodes;
+		for (int n = 0; n < nodes; n++) {
+			fromStart[n] = nodeValid[n] && clear(startX, startY, nodeX[n], nodeY[n]);
+			toGoal[n] = nodeValid[n] && clear(nodeX[n], nodeY[n], goalX, goalY);
+			distance[n] = fromStart[n] ? Math.hypot(nodeX[n] - startX, nodeY[n] - startY) : Double.MAX_VALUE;
+			previous[n] = -1;
+			done[n] = false;
+		}
+		distance[goal] = Double.MAX_VALUE;
+		previous[goal] = -1;
+		done[goal] = false;
+
+		// dense Dijkstra: the graph is small and most corners see each other
+		while (true) {
+			int current = -1;
+			for (int n = 0; n <= nodes; n++) {
+				if (!done[n] && distance[n] < Double.MAX_VALUE && (current < 0 || distance[n] < distance[current]))
+					current = n;
+			}
+			if (current < 0)
+				return null;
+			if (current == goal)
+				break;
+			done[current] = true;
+			for (int n = 0; n < nodes; n++) {
+				if (done[n] || !nodeValid[n] || !visible[current][n])
+					continue;
+				relax(current, n, distance[current] + Math.hypot(nodeX[n] - nodeX[current], nodeY[n] - nodeY[current]));
+			}
+			if (toGoal[current])
+				relax(current, goal, distance[current] + Math.hypot(goalX - nodeX[current], goalY - nodeY[current]));
+		}
+
+		int length = 0;
+		for (int n = previous[goal]; n >= 0; n = previous[n])
+			length++;
+		double[][] waypoints = new double[length + 1][];
+		int i = length - 1;
+		for (int n = previous[goal]; n >= 0; n = previous[n], i--)
+			waypoints[i] = new double[] { nodeX[n], nodeY[n] };
+		waypoints[length] = new double[] { goalX, goalY };
+		return prepend(exit, waypoints);
+	}
+
+	/**
+	 * Nearest point just outside the zones holding a point, straight out through one of the edges of the
+	 * zone it is in.
+	 * @return	the {x, y} in cm, or <code>null</code> if every way out ends in another zone or past the walls
+	 */
+	private double[] exitPoint(double x, double y) {
+		double[] best = null;
+		double bestDistance = Double.MAX_VALUE;
+		for (int id = 0; id < zoneCount; id++) {
+			if (!active[id] || !(x > xa[id] && x < xb[id] && y > ya[id] && y < yb[id]))
+				continue;
+			double[][] exits = { { xa[id] - CORNER_OFFSET, y }, { xb[id] + CORNER_OFFSET, y },
+					{ x, ya[id] - CORNER_OFFSET }, { x, yb[id] + CORNER_OFFSET } };
+			for (int e = 0; e < exits.length; e++) {
+				double d = Math.hypot(exits[e][0] - x, exits[e][1] - y);
+				if (d < bestDistance && inArena(exits[e][0], exits[e][1]) && !inZone(exits[e][0], exits[e][1])) {
+					best = exits[e];
+					bestDistance = d;
+				}
+			}
+		}
+		return best;
+	}
+
+	private static double[][] prepend(double[] first, double[][] waypoints) {
+		if (first == null)
+			return waypoints;
+		double[][] path = new double[waypoints.length + 1][];
+		path[0] = first;
+		System.arraycopy(waypoints, 0, path, 1, waypoints.length);
+		return path;
+	}
+
+	/**
+	 * Getter for the number of segments tested against the zones by the last plan, for benchmarking.
+	 * @return		the <code>int</code> number of segments
+	 */
+	public synchronized int getEdgeTests() {
+		return edgeTests;
+	}
+
+	private void relax(int from, int to, double through) {
+		if (through < distance[to]) {
+			distance[to] = through;
+			previous[to] = from;
+		}
+	}
+
+	/**
+	 * Brings the graph up to date with the zone index.
+	 */
+	private void update() {
+		int count = zones.size();
+		for (int id = 0; id < zoneCount; id++) {
+			if (active[id] && !zones.isActive(id)) {
+				rebuild();
+				return;
+			}
+		}
+		for (int id = zoneCount; id < count; id++) {
+			addZone(id, zones.getXa(id), zones.getYa(id), zones.getXb(id), zones.getYb(id), zones.isActive(id));
+		}
+	}
+
+	private void rebuild() {
+		int count = zones.size();
+		zoneCount = 0;
+		for (int id = 0; id < count; id++) {
+			addZone(id, zones.getXa(id), zones.getYa(id), zones.getXb(id), zones.getYb(id), zones.isActive(id));
+		}
+	}
+
+	/**
+	 * Adds a zone to the graph: drops the corners it covers and the edges it cuts, then links its own corners.
+	 */
+	private void addZone(int id, double x1, double y1, double x2, double y2, boolean isActive) {
+		grow(id + 1);
+		zoneCount = id + 1;
+		xa[id] = x1;
+		ya[id] = y1;
+		xb[id] = x2;
+		yb[id] = y2;
+		active[id] = isActive;
+		for (int c = 0; c < 4; c++) {
+			nodeValid[4 * id + c] = false;
+		}
+		if (!isActive)
+			return;
+
+		int oldNodes = 4 * id;
+		for (int n = 0; n < oldNodes; n++) {
+			if (!nodeValid[n])
+				continue;
+			if (nodeX[n] > x1 && nodeX[n] < x2 && nodeY[n] > y1 && nodeY[n] < y2) {
+				nodeValid[n] = false;
+				continue;
+			}
+			for (int m = n + 1; m < oldNodes; m++) {
+				if (visible[n][m] && ZoneIndex.crosses(x1, y1, x2, y2, nodeX[n], nodeY[n], nodeX[m], nodeY[m])) {
+					visible[n][m] = false;
+					visible[m][n] = false;
+				}
+			}
+		}
+
+		for (int c = 0; c < 4; c++) {
+			int node = 4 * id + c;
+			nodeX[node] = (c == 0 || c == 3) ? x1 - CORNER_OFFSET : x2 + CORNER_OFFSET;
+			nodeY[node] = (c < 2) ? y1 - CORNER_OFFSET : y2 + CORNER_OFFSET;
+			nodeValid[node] = inArena(nodeX[node], nodeY[node]) && !inZone(nodeX[node], nodeY[node]);
+			for (int m = 0; m < node; m++) {
+				boolean sees = nodeValid[node] && nodeValid[m]
+						&& clear(nodeX[node], nodeY[node], nodeX[m], nodeY[m]);
+				visible[node][m] = sees;
+				visible[m][node] = sees;
+			}
+		}
+	}
+
+	/**
+	 * Tells whether a segment crosses no zone.
+	 */
+	private boolean clear(double x0, double y0, double x1, double y1) {
+		edgeTests++;
+		for (int id = 0; id < zoneCount; id++) {
+			if (!active[id])
+				continue;
+			if (ZoneIndex.crosses(xa[id], ya[id], xb[id], yb[id], x0, y0, x1, y1))
+				return false;
+		}
+		return true;
+	}
+
+	private boolean inZone(double x, double y) {
+		for (int id = 0; id < zoneCount; id++) {
+			if (active[id] && x > xa[id] && x < xb[id] && y > ya[id] && y < yb[id])
+				return true;
+		}
+		return false;
+	}
+
+	private boolean inArena(double x, double y) {
+		return x >= low && x <= high && y >= low && y <= high;
+	}
+
+	/**
+	 * Makes room for a number of zones.
+	 */
+	private void grow(int count) {
+		if (count <= xa.length)
+			return;
+		int zoneCapacity = Math.max(count, xa.length * 2), nodeCapacity = 4 * zoneCapacity;
+		xa = copy(xa, zoneCapacity);
+		ya = copy(ya, zoneCapacity);
+		xb = copy(xb, zoneCapacity);
+		yb = copy(yb, zoneCapacity);
+		boolean[] grownActive = new boolean[zoneCapacity];
+		System.arraycopy(active, 0, grownActive, 0, active.length);
+		active = grownActive;
+
+		nodeX = copy(nodeX, nodeCapacity);
+		nodeY = copy(nodeY, nodeCapacity);
+		boolean[] grownValid = new boolean[nodeCapacity];
+		System.arraycopy(nodeValid, 0, grownValid, 0, nodeValid.length);
+		nodeValid = grownValid;
+		boolean[][] grownVisible = new boolean[nodeCapacity][nodeCapacity];
+		for (int n = 0; n < visible.length; n++) {
+			System.arraycopy(visible[n], 0, grownVisible[n], 0, visible.length);
+		}
+		visible = grownVisible;
+
+		distance = new double[nodeCapacity + 1];
+		previous = new int[nodeCapacity + 1];
+		done = new boolean[nodeCapacity + 1];
+		fromStart = new boolean[nodeCapacity];
+		toGoal = new boolean[nodeCapacity];
+	}
+
+	private static double[] copy(double[] values, int capacity) {
+		double[] grown = new double[capacity];
+		System.arraycopy(values, 0, grown, 0, values.length);
+		return grown;
+	}
+}
@@ -0,0 +1,90 @@
+package team6.finalproject;
+
+/**
+ * Proportional-derivative controller keeping the robot at a set distance from a wall on its left.
+ * <o>
+ * The error is the distance read minus the distance wanted, clamped to the distance wanted on either side
+ * so that the gap past a corner does not turn the robot on the spot. The correction is the error times
+ * the proportional gain plus its rate of change times the derivative gain. It is taken off the left wheel
+ * and added to the right one, so the robot turns towards the wall when too far and away from it when too
+ * close. The derivative term damps the weave that the proportional term alone settles with.
+ * <o>
+ * {@link #update(float, long)} is meant to be called once per control period, with a new reading each time.
+ *
+ * @author Erick Zhao
+ * @version 1.0
+ * @see ObjectAvoidance
+ */
+public class WallFollower {
+
+	private final float target, kp, kd;
+	private final float baseSpeed, maxCorrection;
+	private float lastError;
+	private long lastTime;
+	private boolean started = false;
+	private float leftSpeed, rightSpeed;
+
+	/**
+	 * Constructor for the controller.
+	 * @param target			the <code>float</code> distance to keep from the wall in cm
+	 * @param kp				the <code>float</code> proportional gain, in deg/s of wheel speed per cm
+	 * @param kd				the <code>float</code> derivative gain, in deg/s of wheel speed per cm/s
+	 * @param baseSpeed			the <code>float</code> speed of both wheels at no error, in deg/s
+	 * @param maxCorrection		the <code>float</code> largest correction applied to each wheel, in deg/s
+	 */
+	public WallFollower(float target, float kp, float kd, float baseSpeed, float maxCorrection) {
+		this.target = target;
+		this.kp = kp;
+		this.kd = kd;
+		this.baseSpeed = baseSpeed;
+		this.maxCorrection = maxCorrection;
+		this.leftSpeed = baseSpeed;
+		this.rightSpeed = baseSpeed;
+	}
+
+	/**
+	 * Computes the wheel speeds from a new reading.
+	 * @param distance		the <code>float</code> filtered distance to the wall in cm
+	 * @param time			the <code>long</code> <code>System.nanoTime()</code> of the reading
+	 */
+	public void update(float distance, long time) {
+		float error = Math.max(-target, Math.min(target, distance - target));
+		float rate = 0;
+		if (started && time != lastTime) {
+			rate = (error - lastError) / ((time - lastTime) / 1e9f);
+		}
+		lastError = error;
+		lastTime = time;
+		started = true;
+
+		float correction = kp * error + kd * rate;
+		correction = Math.max(-maxCorrection, Math.min(maxCorrection, correction));
+		leftSpeed = baseSpeed - correction;
+		rightSpeed = baseSpeed + correction;
+	}
+
+	/**
+	 * Getter for the left wheel speed from the last update.
+	 * @return		the <code>float</code> speed in deg/s
+	 */
+	public float getLeftSpeed() {
+		return leftSpeed;
+	}
+
+	/**
+	 * Getter for the right wheel speed from the last update.
+	 * @return		the <code>float</code> speed in deg/s
+	 */
+	public float getRightSpeed() {
+		return rightSpeed;
+	}
+
+	/**
+	 * Forgets the last error, so the next update has no derivative term.
+	 */
+	public void reset() {
+		started = false;
+		leftSpeed = baseSpeed;
+		rightSpeed = baseSpeed;
+	}
+}
@@ -0,0 +1,217 @@
+package team6.finalproject;
+
+/**
+ * Index of the rectangular zones the robot must stay out of, for fast point and segment queries.
+ * <o>
+ * The zones are kept in primitive arrays, and the arena is split into one bucket per tile, each listing
+ * the zones overlapping it. A query only tests the zones of the buckets it falls in, so its cost does not
+ * grow with the number of obstacles added elsewhere on the field. Zones are never moved once added;
+ * removing one only marks it inactive, so ids stay valid.
+ *
+ * @author Erick Zhao
+ * @version 1.0
+ * @see ObjectAvoidance
+ */
+public class ZoneIndex {
+
+	private static final double BUCKET_SIZE = OccupancyGrid.GRID_LENGTH;
+	private static final double MIN = OccupancyGrid.MIN, MAX = OccupancyGrid.MAX;
+	private static final int BUCKETS = (int) Math.round((MAX - MIN) / BUCKET_SIZE);
+
+	private double[] xa = new double[16], ya = new double[16], xb = new double[16], yb = new double[16];
+	private boolean[] active = new boolean[16];
+	private int count = 0;
+
+	// zone ids overlapping each bucket, in increasing order
+	private int[][] bucketZones = new int[BUCKETS * BUCKETS][];
+	private int[] bucketCount = new int[BUCKETS * BUCKETS];
+
+	/**
+	 * Adds a zone.
+	 * @param x1	the <code>double</code> X coordinate of one corner in cm
+	 * @param y1	the <code>double</code> Y coordinate of one corner in cm
+	 * @param x2	the <code>double</code> X coordinate of the opposite corner in cm
+	 * @param y2	the <code>double</code> Y coordinate of the opposite corner in cm
+	 * @return		the <code>int</code> id of the zone
+	 */
+	public synchronized int add(double x1, double y1, double x2, double y2) {
+		if (count == xa.length) {
+			xa = grow(xa);
+			ya = grow(ya);
+			xb = grow(xb);
+			yb = grow(yb);
+			boolean[] grownActive = new boolean[active.length * 2];
+			System.arraycopy(active, 0, grownActive, 0, count);
+			active = grownActive;
+		}
+		int id = count++;
+		xa[id] = Math.min(x1, x2);
+		ya[id] = Math.min(y1, y2);
+		xb[id] = Math.max(x1, x2);
+		yb[id] = Math.max(y1, y2);
+		active[id] = true;
+
+		for (int row = bucketOf(ya[id]); row <= bucketOf(yb[id]); row++) {
+			for (int col = bucketOf(xa[id]); col <= bucketOf(xb[id]); col++) {
+				int bucket = row * BUCKETS + col;
+				if (bucketZones[bucket] == null) {
+					bucketZones[bucket] = new int[4];
+				} else if (bucketCount[bucket] == bucketZones[bucket].length) {
+					int[] grown = new int[bucketCount[bucket] * 2];
+					System.arraycopy(bucketZones[bucket], 0, grown, 0, bucketCount[bucket]);
+					bucketZones[bucket] = grown;
+				}
+				bucketZones[bucket][bucketCount[bucket]++] = id;
+			}
+		}
+		return id;
+	}
+
+	/**
+	 * Removes a zone. Its id is not reused.
+	 * @param id	the <code>int</code> id returned by {@link #add(double, double, double, double)}
+	 */
+	public synchronized void remove(int id) {
+		if (id >= 0 && id < count)
+			active[id] = false;
+	}
+
+	/**
+	 * Finds a zone strictly containing a point.
+	 * @param x		the <code>double</code> X coordinate in cm
+	 * @param y		the <code>double</code> Y coordinate in cm
+	 * @return		the <code>int</code> lowest id of the zones containing the point, or -1 if there is none
+	 */
+	public synchronized int find(double x, double y) {
+		int bucket = bucketOf(y) * BUCKETS + bucketOf(x);
+		int[] zones = bucketZones[bucket];
+		for (int i = 0; i < bucketCount[bucket]; i++) {
+			int id = zones[i];
+			if (active[id] && x > xa[id] && x < xb[id] && y > ya[id] && y < yb[id])
+				return id;
+		}
+		return -1;
+	}
+
+	/**
+	 * Finds a zone crossed by a segment.
+	 * @param x0	the <code>double</code> X coordinate of the start of the segment in cm
+	 * @param y0	the <code>double</code> Y coordinate of the start of the segment in cm
+	 * @param x1	the <code>double</code> X coordinate of the end of the segment in cm
+	 * @param y1	the <code>double</code> Y coordinate of the end of the segment in cm
+	 * @return		the <code>int</code> lowest id of the zones crossed, or -1 if there is none
+	 */
+	public synchronized int findOnSegment(double x0, double y0, double x1, double y1) {
+		int result = -1;
+		int colA = bucketOf(Math.min(x0, x1)), colB = bucketOf(Math.max(x0, x1));
+		int rowA = bucketOf(Math.min(y0, y1)), rowB = bucketOf(Math.max(y0, y1));
+		for (int row = rowA; row <= rowB; row++) {
+			for (int col = colA; col <= colB; col++) {
+				int bucket = row * BUCKETS + col;
+				int[] zones = bucketZones[bucket];
+				for (int i = 0; i < bucketCount[bucket]; i++) {
+					int id = zones[i];
+					if (active[id] && (result < 0 || id < result)
+							&& crosses(xa[id], ya[id], xb[id], yb[id], x0, y0, x1, y1))
+						result = id;
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Getter for the number of zones added, including the removed ones.
+	 * @return		the <code>int</code> count, one more than the highest id
+	 */
+	public synchronized int size() {
+		return count;
+	}
+
+	/**
+	 * Tells whether a zone is still in use.
+	 * @param id	the <code>int</code> id of the zone
+	 * @return		<code>false</code> if the zone was removed
+	 */
+	public synchronized boolean isActive(int id) {
+		return active[id];
+	}
+
+	/**
+	 * Getter for the left edge of a zone.
+	 * @param id	the <code>int</code> id of the zone
+	 * @return		the <code>double</code> lowest X coordinate in cm
+	 */
+	public synchronized double getXa(int id) {
+		return xa[id];
+	}
+
+	/**
+	 * Getter for the bottom edge of a zone.
+	 * @param id	the <code>int</code> id of the zone
+	 * @return		the <code>double</code> lowest Y coordinate in cm
+	 */
+	public synchronized double getYa(int id) {
+		return ya[id];
+	}
+
+	/**
+	 * Getter for the right edge of a zone.
+	 * @param id	the <code>int</code> id of the zone
+	 * @return		the <code>double</code> highest X coordinate in cm
+	 */
+	public synchronized double getXb(int id) {
+		return xb[id];
+	}
+
+	/**
+	 * Getter for the top edge of a zone.
+	 * @param id	the <code>int</code> id of the zone
+	 * @return		the <code>double</code> highest Y coordinate in cm
+	 */
+	public synchronized double getYb(int id) {
+		return yb[id];
+	}
+
+	/**
+	 * Slab test of a segment against the inside of a rectangle. Segments running along an edge or through a
+	 * corner do not cross it.
+	 * @return		<code>true</code> if part of the segment is strictly inside the rectangle
+	 */
+	static boolean crosses(double xa, double ya, double xb, double yb, double x0, double y0, double x1, double y1) {
+		double tMin = 0, tMax = 1;
+		double dx = x1 - x0, dy = y1 - y0;
+		if (dx == 0) {
+			if (x0 <= xa || x0 >= xb)
+				return false;
+		} else {
+			double ta = (xa - x0) / dx, tb = (xb - x0) / dx;
+			tMin = Math.max(tMin, Math.min(ta, tb));
+			tMax = Math.min(tMax, Math.max(ta, tb));
+		}
+		if (dy == 0) {
+			if (y0 <= ya || y0 >= yb)
+				return false;
+		} else {
+			double ta = (ya - y0) / dy, tb = (yb - y0) / dy;
+			tMin = Math.max(tMin, Math.min(ta, tb));
+			tMax = Math.min(tMax, Math.max(ta, tb));
+		}
+		return tMin < tMax;
+	}
+
+	/**
+	 * Bucket column or row of a coordinate, clamped to the arena so zones and points past the walls land
+	 * in the edge buckets.
+	 */
+	private static int bucketOf(double coordinate) {
+		int bucket = (int) Math.floor((coordinate - MIN) / BUCKET_SIZE);
+		return bucket < 0 ? 0 : (bucket >= BUCKETS ? BUCKETS - 1 : bucket);
+	}
+
+	private double[] grow(double[] values) {
+		double[] grown = new double[values.length * 2];
+		System.arraycopy(values, 0, grown, 0, count);
+		return grown;
+	}
+}
@@ -0,0 +1,253 @@
+package team6.test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.Random;
+
+import lejos.hardware.Button;
+import lejos.hardware.Sound;
+import lejos.hardware.ev3.LocalEV3;
+import lejos.hardware.lcd.TextLCD;
+import team6.finalproject.ExponentialFilter;
+import team6.finalproject.FilterChain;
+import team6.finalproject.HampelFilter;
+import team6.finalproject.MedianFilter;
+import team6.finalproject.SampleFilter;
+
+/**
+ * Benchmark of the ultrasonic filters on the EV3's CPU.
+ * <o>
+ * Each filter runs over a recorded trace, read from <code>TRACE_FILE</code> one reading in cm per line,
+ * or over a simulated one with noise, 255 dropouts and spikes if there is no recording. The trace is
+ * recorded with the "raw trace" choice of <code>team6.usTest.UStest</code>, which logs the lower sensor's
+ * readings as <code>UltrasonicPoller</code> gives them, unrounded and unclamped, while the robot turns.
+ * <o>
+ * The time per reading and the number of 255 readings let through are measured on the trace. The delay is
+ * measured both on a clean step from 20 to 60 cm and on the steps in the trace itself: the points where it
+ * jumps by at least <code>STEP_MIN</code> between two steady distances, e.g. as the sensor sweeps past a
+ * block's edge. The results are shown and written to a file. The old <code>ObjectAvoidance</code> filter is
+ * included for comparison.
+ */
+public class TestFilters {
+
+	private static final String TRACE_FILE = "us_trace.txt";
+	private static final String RESULT_FILE = "Filters_results.txt";
+	private static final int SIMULATED_LENGTH = 6000;
+	private static final int REPEATS = 20;
+	private static final float DROPOUT = 255;
+	private static final int STEP_AT = 20, STEP_LENGTH = 60;
+	private static final int STEP_WINDOW = 5; // readings held steady on each side of a step in the trace
+	private static final float STEP_MIN = 10, STEP_SPREAD = 2; // cm
+
+	public static void main(String[] args) {
+		final TextLCD t = LocalEV3.get().getTextLCD();
+		String[] names = { "old", "median3", "median5", "hampel5", "hampel+med3", "hampel+exp" };
+
+		t.clear();
+		t.drawString("Filtering...", 0, 0);
+		try {
+			float[] trace = readTrace();
+			if (trace == null)
+				trace = simulateTrace(new Random(6));
+
+			int[] steps = findSteps(trace);
+
+			PrintWriter writer = new PrintWriter(RESULT_FILE, "UTF-8");
+			writer.print("filter,readings,ns_per_reading,dropouts_passed,step_delay_readings,trace_steps,"
+					+ "trace_step_delay_readings\r\n");
+			for (int f = 0; f < names.length; f++) {
+				SampleFilter filter = create(f);
+				int passed = 0;
+				for (int i = 0; i < trace.length; i++) {
+					if (filter.filter(trace[i]) >= DROPOUT)
+						passed++;
+				}
+
+				long start = System.nanoTime();
+				for (int r = 0; r < REPEATS; r++) {
+					filter.reset();
+					for (int i = 0; i < trace.length; i++)
+						filter.filter(trace[i]);
+				}
+				long perReading = (System.nanoTime() - start) / ((long) REPEATS * trace.length);
+
+				int delay = stepDelay(create(f));
+				double traceDelay = traceDelay(create(f), trace, steps);
+				writer.print(names[f] + "," + trace.length + "," + perReading + "," + passed + "," + delay + ","
+						+ steps.length + "," + traceDelay + "\r\n");
+				t.drawString(names[f] + " " + perReading + "ns " + delay + " " + (int) (traceDelay * 10) / 10.0,
+						0, f + 1);
+			}
+			writer.close();
+			Sound.beepSequenceUp();
+		} catch (Exception e) {
+			System.out.println("Write failed");
+		}
+
+		while (Button.waitForAnyPress() != Button.ID_ESCAPE);
+		System.exit(0);
+	}
+
+	private static SampleFilter create(int index) {
+		switch (index) {
+		case 0:
+			return new OldFilter();
+		case 1:
+			return new MedianFilter(3);
+		case 2:
+			return new MedianFilter(5);
+		case 3:
+			return new HampelFilter(5, 3, 1);
+		case 4:
+			return new FilterChain(new HampelFilter(5, 3, 1), new MedianFilter(3));
+		default:
+			return new FilterChain(new HampelFilter(5, 3, 1), new ExponentialFilter(0.3f));
+		}
+	}
+
+	/**
+	 * Readings it takes the output to get past the middle of a clean step.
+	 */
+	private static int stepDelay(SampleFilter filter) {
+		for (int i = 0; i < STEP_AT + STEP_LENGTH; i++) {
+			float output = filter.filter(i < STEP_AT ? 20 : 60);
+			if (i >= STEP_AT && output > 40)
+				return i - STEP_AT;
+		}
+		return STEP_LENGTH;
+	}
+
+	/**
+	 * Readings in the trace at which it jumps from one steady distance to another.
+	 */
+	private static int[] findSteps(float[] trace) {
+		int[] steps = new int[trace.length];
+		int count = 0;
+		for (int i = STEP_WINDOW; i + STEP_WINDOW <= trace.length; i++) {
+			if (count > 0 && i - steps[count - 1] < 2 * STEP_WINDOW)
+				continue;
+			float before = steadyLevel(trace, i - STEP_WINDOW), after = steadyLevel(trace, i);
+			if (!Float.isNaN(before) && !Float.isNaN(after) && Math.abs(after - before) >= STEP_MIN)
+				steps[count++] = i;
+		}
+		return Arrays.copyOf(steps, count);
+	}
+
+	/**
+	 * Median of the window starting at a reading, or NaN if the readings in it are not steady.
+	 */
+	private static float steadyLevel(float[] trace, int first) {
+		float[] window = Arrays.copyOfRange(trace, first, first + STEP_WINDOW);
+		Arrays.sort(window);
+		float median = window[STEP_WINDOW / 2];
+		if (median >= DROPOUT || window[STEP_WINDOW - 1] - median > STEP_SPREAD
+				|| median - window[0] > STEP_SPREAD)
+			return Float.NaN;
+		return median;
+	}
+
+	/**
+	 * Mean number of readings it takes the output to get past the middle of each step in the trace.
+	 */
+	private static double traceDelay(SampleFilter filter, float[] trace, int[] steps) {
+		if (steps.length == 0)
+			return Double.NaN;
+		float[] output = new float[trace.length];
+		for (int i = 0; i < trace.length; i++)
+			output[i] = filter.filter(trace[i]);
+		long total = 0;
+		for (int s = 0; s < steps.length; s++) {
+			int step = steps[s];
+			float before = steadyLevel(trace, step - STEP_WINDOW), after = steadyLevel(trace, step);
+			float middle = (before + after) / 2;
+			int delay = STEP_LENGTH;
+			for (int i = step; i < Math.min(trace.length, step + STEP_LENGTH); i++) {
+				if (after > before ? output[i] > middle : output[i] < middle) {
+					delay = i - step;
+					break;
+				}
+			}
+			total += delay;
+		}
+		return (double) total / steps.length;
+	}
+
+	private static float[] readTrace() throws Exception {
+		File file = new File(TRACE_FILE);
+		if (!file.exists())
+			return null;
+		float[] trace = new float[1024];
+		int count = 0;
+		BufferedReader reader = new BufferedReader(new FileReader(file));
+		String line;
+		while ((line = reader.readLine()) != null) {
+			line = line.trim();
+			if (line.length() == 0)
+				continue;
+			if (count == trace.length) {
+				float[] grown = new float[count * 2];
+				System.arraycopy(trace, 0, grown, 0, count);
+				trace = grown;
+			}
+			trace[count++] = Float.parseFloat(line);
+		}
+		reader.close();
+		float[] trimmed = new float[count];
+		System.arraycopy(trace, 0, trimmed, 0, count);
+		return trimmed;
+	}
+
+	/**
+	 * Distances holding for a while then jumping, with sensor noise, 255 dropouts and spikes.
+	 */
+	private static float[] simulateTrace(Random random) {
+		float[] trace = new float[SIMULATED_LENGTH];
+		float level = 30;
+		for (int i = 0; i < trace.length; i++) {
+			if (random.nextInt(100) == 0)
+				level = 10 + random.nextFloat() * 90;
+			float reading = level + (float) random.nextGaussian();
+			int glitch = random.nextInt(100);
+			if (glitch < 5)
+				reading = DROPOUT;
+			else if (glitch < 7)
+				reading = level * (0.3f + random.nextFloat());
+			trace[i] = reading;
+		}
+		return trace;
+	}
+
+	/**
+	 * The filter <code>ObjectAvoidance</code> used before: a 3-slot ring whose new reading is clamped to
+	 * one of the older ones.
+	 */
+	private static class OldFilter implements SampleFilter {
+		private static final int MAX_FILTER = 3;
+		private float[] archivedValues = new float[MAX_FILTER];
+		private int archivedCount = 0;
+
+		OldFilter() {
+			reset();
+		}
+
+		@Override
+		public float filter(float distance) {
+			archivedValues[archivedCount] = distance;
+			archivedCount = (archivedCount + 1) % MAX_FILTER;
+			float median = archivedValues[(MAX_FILTER / 2 + archivedCount) % MAX_FILTER];
+			if (archivedValues[archivedCount] > median)
+				archivedValues[archivedCount] = median;
+			return archivedValues[archivedCount];
+		}
+
+		@Override
+		public void reset() {
+			for (int i = 0; i < MAX_FILTER; i++)
+				archivedValues[i] = DROPOUT;
+			archivedCount = 0;
+		}
+	}
+}
@@ -0,0 +1,111 @@
+package team6.test;
+
+import lejos.hardware.Button;
+import lejos.hardware.Sound;
+import lejos.hardware.ev3.LocalEV3;
+import lejos.hardware.lcd.TextLCD;
+import lejos.hardware.motor.EV3LargeRegulatedMotor;
+import lejos.hardware.port.Port;
+import lejos.hardware.sensor.EV3ColorSensor;
+import lejos.hardware.sensor.EV3UltrasonicSensor;
+import lejos.hardware.sensor.SensorModes;
+import lejos.robotics.SampleProvider;
+import team6.finalproject.LightLocalizer;
+import team6.finalproject.LightPoller;
+import team6.finalproject.Odometer;
+import team6.finalproject.ParticleLocalizer;
+import team6.finalproject.Pose;
+import team6.finalproject.USLocalizer;
+import team6.finalproject.UltrasonicPoller;
+
+/**
+ * Benchmark for the time taken to localize.
+ * <o>
+ * Left button: the US + LIGHT localization used so far. Right button: the particle filter localization.
+ * Place the robot anywhere in the starting tile before each run; the time and final pose are shown on the screen.
+ */
+public class TestLocalizationTime {
+
+	 private static final EV3LargeRegulatedMotor rightMotor = new EV3LargeRegulatedMotor(LocalEV3.get().getPort("A"));
+	 private static final EV3LargeRegulatedMotor leftMotor = new EV3LargeRegulatedMotor(LocalEV3.get().getPort("D"));
+
+	 private static final Port lightPort = LocalEV3.get().getPort("S1");
+	 private static final Port usTopPort = LocalEV3.get().getPort("S2");
+	 private static final Port usBottomPort = LocalEV3.get().getPort("S4");
+
+	 //constants
+	 public static final double WHEEL_RADIUS = 2.15; //needs to be changed for robots physical configs
+	 public static final double TRACK = 15.6; //needs to be changed for robots physical configs
+	 private static final double LStoWB = 7.5; //Light Sensor to Wheel Base value
+	 private static final double UStoWB = 8.0; //Ultrasonic Sensors to Wheel Base value
+
+	public static void main(String[] args) {
+		int buttonChoice;
+		final TextLCD t = LocalEV3.get().getTextLCD();
+
+		Odometer odo = new Odometer(leftMotor, rightMotor, 30, true, WHEEL_RADIUS, TRACK);
+		odo.setIntegration(Odometer.Integration.EXACT_ARC, 10);
+
+		@SuppressWarnings("resource")
+		EV3UltrasonicSensor bottomSensor = new EV3UltrasonicSensor(usBottomPort);
+		SampleProvider usValue = bottomSensor.getMode("Distance");
+		float[] usData = new float[usValue.sampleSize()];
+
+		@SuppressWarnings("resource")
+		EV3UltrasonicSensor topSensor = new EV3UltrasonicSensor(usTopPort);
+		SampleProvider usValueTop = topSensor.getMode("Distance");
+		float[] usDataTop = new float[usValueTop.sampleSize()];
+
+		@SuppressWarnings("resource")
+		SensorModes lightSensor = new EV3ColorSensor(lightPort);
+		SampleProvider lightValue = lightSensor.getMode("Red");
+		float[] lightData = new float[lightValue.sampleSize()];
+
+		UltrasonicPoller uspoll = new UltrasonicPoller(usValue, usData, bottomSensor);
+		UltrasonicPoller topus = new UltrasonicPoller(usValueTop, usDataTop, topSensor);
+		LightPoller lightpoll = new LightPoller(lightValue, lightData);
+
+		odo.start();
+		uspoll.start();
+		topus.start();
+		lightpoll.start();
+
+		do {
+			t.clear();
+			t.drawString("< Left | Right >", 0, 0);
+			t.drawString("       |        ", 0, 1);
+			t.drawString("  US + | particle", 0, 2);
+			t.drawString(" LIGHT | filter ", 0, 3);
+
+			buttonChoice = Button.waitForAnyPress();
+		} while (buttonChoice != Button.ID_LEFT && buttonChoice != Button.ID_RIGHT);
+
+		t.clear();
+		long start = System.currentTimeMillis();
+		boolean localized = true;
+		double confidence = 1;
+		if (buttonChoice == Button.ID_LEFT) {
+			new USLocalizer(odo, topus).doLocalization();
+			new LightLocalizer(odo, LStoWB).doLocalization();
+		} else {
+			ParticleLocalizer particleloc = new ParticleLocalizer(odo);
+			particleloc.addSensor(uspoll, UStoWB);
+			particleloc.addSensor(topus, UStoWB);
+			localized = particleloc.doLocalization();
+			confidence = particleloc.getConfidence();
+		}
+		long elapsed = System.currentTimeMillis() - start;
+		Sound.beep();
+
+		Pose pose = odo.getPose();
+		t.drawString("Time: " + elapsed + " ms", 0, 0);
+		t.drawString("X: " + (int) pose.getX(), 0, 1);
+		t.drawString("Y: " + (int) pose.getY(), 0, 2);
+		t.drawString("H: " + (int) pose.getAng(), 0, 3);
+		t.drawString("Localized: " + localized, 0, 4);
+		t.drawString("Conf: " + (int) (confidence * 100) + "%", 0, 5);
+
+		while (Button.waitForAnyPress() != Button.ID_ESCAPE);
+		System.exit(0);
+	}
+}
@@ -0,0 +1,174 @@
+package team6.test;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import lejos.hardware.Button;
+import lejos.hardware.Sound;
+import lejos.hardware.ev3.LocalEV3;
+import lejos.hardware.lcd.TextLCD;
+import lejos.hardware.motor.EV3LargeRegulatedMotor;
+import team6.finalproject.Odometer;
+
+/**
+ * Benchmark for the odometer's integration modes.
+ * <o>
+ * Left button: drives the <code>LineDriver</code> pattern while logging both tacho counts every 2 ms.
+ * Right button: replays the last recorded trace through every <code>Odometer.Integration</code> mode at
+ * 5, 10 and 50 ms, and reports the drift from an exact-arc reference at full trace rate along with the
+ * CPU cost of each update.
+ */
+public class TestOdometryIntegration {
+
+	private static final EV3LargeRegulatedMotor rightMotor = new EV3LargeRegulatedMotor(LocalEV3.get().getPort("A"));
+	private static final EV3LargeRegulatedMotor leftMotor = new EV3LargeRegulatedMotor(LocalEV3.get().getPort("D"));
+
+	//constants
+	public static final double WHEEL_RADIUS = 2.15; //needs to be changed for robots physical configs
+	public static final double TRACK = 15.6; //needs to be changed for robots physical configs
+
+	private static final String TRACE_FILE = "Tacho_trace.txt";
+	private static final String RESULT_FILE = "Integration_results.txt";
+	private static final int RECORD_PERIOD = 2;
+	private static final int[] PERIODS = { 5, 10, 50 };
+	private static final int CPU_REPEATS = 200;
+
+	private static volatile boolean driving;
+
+	public static void main(String[] args) {
+		int buttonChoice;
+		final TextLCD t = LocalEV3.get().getTextLCD();
+
+		do {
+			t.clear();
+			t.drawString("< Left | Right >", 0, 0);
+			t.drawString("       |        ", 0, 1);
+			t.drawString(" record| compare", 0, 2);
+			t.drawString(" trace | modes  ", 0, 3);
+
+			buttonChoice = Button.waitForAnyPress();
+		} while (buttonChoice != Button.ID_LEFT && buttonChoice != Button.ID_RIGHT);
+
+		t.clear();
+		if (buttonChoice == Button.ID_LEFT) {
+			record();
+		} else {
+			compare();
+		}
+
+		while (Button.waitForAnyPress() != Button.ID_ESCAPE);
+		System.exit(0);
+	}
+
+	/**
+	 * Drives the test pattern and writes one "time,left,right" line per sample to the trace file.
+	 */
+	private static void record() {
+		driving = true;
+		(new Thread(){
+			public void run(){
+				LineDriver.drive(leftMotor, rightMotor, WHEEL_RADIUS, WHEEL_RADIUS, TRACK);
+				driving = false;
+			}
+		}).start();
+
+		try {
+			PrintWriter writer = new PrintWriter(TRACE_FILE, "UTF-8");
+			long start = System.nanoTime();
+			while (driving) {
+				writer.print(((System.nanoTime() - start) / 1000) + "," + leftMotor.getTachoCount() + ","
+						+ rightMotor.getTachoCount() + "\r\n");
+				try { Thread.sleep(RECORD_PERIOD); } catch (InterruptedException e) {}
+			}
+			writer.close();
+			Sound.beepSequence();
+		} catch (Exception e) {
+			System.out.println("Record failed");
+		}
+	}
+
+	/**
+	 * Replays the trace through every integration mode and period, and reports drift and CPU cost.
+	 */
+	private static void compare() {
+		long[] time;
+		int[] left, right;
+		try {
+			List<String> lines = new ArrayList<String>();
+			BufferedReader reader = new BufferedReader(new FileReader(TRACE_FILE));
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.trim().length() > 0)
+					lines.add(line.trim());
+			}
+			reader.close();
+
+			time = new long[lines.size()];
+			left = new int[lines.size()];
+			right = new int[lines.size()];
+			for (int i = 0; i < lines.size(); i++) {
+				String[] fields = lines.get(i).split(",");
+				time[i] = Long.parseLong(fields[0]);
+				left[i] = Integer.parseInt(fields[1]);
+				right[i] = Integer.parseInt(fields[2]);
+			}
+		} catch (Exception e) {
+			System.out.println("No trace found");
+			return;
+		}
+
+		double[] reference = replay(Odometer.Integration.EXACT_ARC, 0, time, left, right);
+
+		try {
+			PrintWriter writer = new PrintWriter(RESULT_FILE, "UTF-8");
+			writer.print("mode,period_ms,updates,drift_cm,heading_err_deg,ns_per_update\r\n");
+			for (Odometer.Integration mode : Odometer.Integration.values()) {
+				for (int period : PERIODS) {
+					double[] result = replay(mode, period, time, left, right);
+					double drift = Math.hypot(result[0] - reference[0], result[1] - reference[1]);
+					double headingError = Math.abs(Odometer.minimumAngleFromTo(reference[2], result[2]));
+
+					long startCpu = System.nanoTime();
+					for (int i = 0; i < CPU_REPEATS; i++) {
+						replay(mode, period, time, left, right);
+					}
+					double nsPerUpdate = (double) (System.nanoTime() - startCpu) / CPU_REPEATS / result[3];
+
+					writer.print(mode + "," + period + "," + (int) result[3] + "," + drift + ","
+							+ headingError + "," + nsPerUpdate + "\r\n");
+					System.out.println(mode.name().charAt(0) + " " + period + "ms " + (int) (drift * 10) / 10.0
+							+ "cm " + (int) nsPerUpdate + "ns");
+				}
+			}
+			writer.close();
+			Sound.beepSequenceUp();
+		} catch (Exception e) {
+			System.out.println("Write failed");
+		}
+	}
+
+	/**
+	 * Integrates a tacho trace, only taking samples at least <code>period</code> ms apart like the odometer
+	 * <code>Timer</code> would.
+	 * @return		the final x, y, theta and the number of updates
+	 */
+	private static double[] replay(Odometer.Integration mode, int period, long[] time, int[] left, int[] right) {
+		double[] position = { 0.0, 0.0, 90.0, 0 };
+		double[] data = new double[2];
+		long periodMicros = period * 1000L;
+		int lastIndex = 0;
+		for (int i = 1; i < time.length; i++) {
+			if (time[i] - time[lastIndex] < periodMicros && i != time.length - 1)
+				continue;
+			Odometer.displacementAndHeading(left[i] - left[lastIndex], right[i] - right[lastIndex],
+					WHEEL_RADIUS, WHEEL_RADIUS, TRACK, data);
+			Odometer.integrate(mode, position, data[0], data[1]);
+			position[3]++;
+			lastIndex = i;
+		}
+		return position;
+	}
+}
@@ -0,0 +1,121 @@
+package team6.test;
+
+import java.io.PrintWriter;
+import java.util.Random;
+
+import lejos.hardware.Button;
+import lejos.hardware.Sound;
+import lejos.hardware.ev3.LocalEV3;
+import lejos.hardware.lcd.TextLCD;
+import team6.finalproject.Odometer;
+import team6.finalproject.ParticleLocalizer;
+import team6.finalproject.Pose;
+
+/**
+ * Offline replay of the particle filter localization from random start poses.
+ * <o>
+ * Each run puts the robot at a random pose in the starting tile and turns it on the spot as
+ * <code>ParticleLocalizer.doLocalization()</code> does. The odometer sees the turn with a small scale error
+ * and noise, and both sensors read the distance to the walls from the true pose every 50 ms, with noise,
+ * echoes lost past the sensor's range and random outliers. The readings are fed to the filter through
+ * <code>addReading</code>, and the run stops at the same point the robot would: after 270 degrees once
+ * confident, or after a full turn. The distance and heading between the estimate and the true pose are
+ * shown and written to a file, for each run and at worst.
+ */
+public class TestParticleReplay {
+
+	private static final String RESULT_FILE = "ParticleReplay_results.txt";
+	private static final int RUNS = 10;
+	private static final double WHEEL_RADIUS = 2.15, TRACK = 15.6;
+	private static final double WHEEL_SPEED = 150; // deg/s, as the localizer turns
+	private static final double UStoWB = 8.0; // as Final adds the sensors
+	private static final double SENSOR_PERIOD = 0.05; // s
+	private static final double WALL_LOW = -30.48, WALL_HIGH = 11 * 30.48, HALF_WIDTH = 6.7;
+	private static final double SENSOR_RANGE = 200; // cm, no echo past this
+	private static final double READING_NOISE = 1.5; // cm
+	private static final int OUTLIER_PERCENT = 5;
+	private static final double TURN_SCALE = 1.02; // odometer's error on the turn
+	private static final double TURN_NOISE = 0.2; // deg per reading
+	private static final double MIN_CONFIDENCE = 0.5;
+
+	public static void main(String[] args) {
+		final TextLCD t = LocalEV3.get().getTextLCD();
+		t.clear();
+		t.drawString("Replaying...", 0, 0);
+		try {
+			PrintWriter writer = new PrintWriter(RESULT_FILE, "UTF-8");
+			writer.print("run,true_x,true_y,true_theta,error_cm,error_deg,turned_deg,confidence\r\n");
+			Random random = new Random(6);
+			double worstDistance = 0, worstAngle = 0;
+			for (int run = 0; run < RUNS; run++) {
+				double[] result = replay(random);
+				worstDistance = Math.max(worstDistance, result[3]);
+				worstAngle = Math.max(worstAngle, result[4]);
+				writer.print(run + "," + result[0] + "," + result[1] + "," + result[2] + "," + result[3] + ","
+						+ result[4] + "," + result[5] + "," + result[6] + "\r\n");
+			}
+			writer.print("worst,,,," + worstDistance + "," + worstAngle + ",,\r\n");
+			writer.close();
+			t.drawString("Worst: " + (int) Math.ceil(worstDistance) + " cm", 0, 1);
+			t.drawString("       " + (int) Math.ceil(worstAngle) + " deg", 0, 2);
+			Sound.beepSequenceUp();
+		} catch (Exception e) {
+			System.out.println("Write failed");
+		}
+
+		while (Button.waitForAnyPress() != Button.ID_ESCAPE);
+		System.exit(0);
+	}
+
+	/**
+	 * One localization from a random start pose.
+	 * @return	the true start x, y and heading, the distance and heading errors of the estimate, the angle
+	 * 			turned and the final confidence
+	 */
+	private static double[] replay(Random random) {
+		double low = WALL_LOW + HALF_WIDTH;
+		double startX = low + random.nextDouble() * (0 - low), startY = low + random.nextDouble() * (0 - low);
+		double startTheta = random.nextDouble() * 360;
+		double turnRate = 2 * WHEEL_SPEED * WHEEL_RADIUS / TRACK; // deg/s on the spot
+
+		ParticleLocalizer localizer = new ParticleLocalizer(null);
+		double[] odometer = { 0, 0, 0 };
+		localizer.reset(odometer);
+		double turned = 0, theta = startTheta;
+		while (turned < 360 && !(turned > 270 && localizer.getConfidence() >= MIN_CONFIDENCE)) {
+			// the two sensors are sampled in turn
+			double step = turnRate * SENSOR_PERIOD / 2;
+			turned += step;
+			theta = Odometer.fixDegAngle(theta + step);
+			odometer[2] = Odometer.fixDegAngle(odometer[2] + step * TURN_SCALE + TURN_NOISE * random.nextGaussian());
+			localizer.addReading(odometer, read(startX, startY, theta, random), UStoWB);
+		}
+
+		Pose estimate = localizer.getEstimate();
+		double distance = Math.hypot(estimate.getX() - startX, estimate.getY() - startY);
+		double angle = Math.abs(Odometer.minimumAngleFromTo(theta, estimate.getAng()));
+		return new double[] { startX, startY, startTheta, distance, angle, turned, localizer.getConfidence() };
+	}
+
+	/**
+	 * Distance a forward sensor reads from a pose to the nearest wall, with the sensor's faults.
+	 */
+	private static double read(double x, double y, double theta, Random random) {
+		if (random.nextInt(100) < OUTLIER_PERCENT)
+			return random.nextDouble() * 255;
+		double cos = Math.cos(Math.toRadians(theta)), sin = Math.sin(Math.toRadians(theta));
+		double sensorX = x + UStoWB * cos, sensorY = y + UStoWB * sin;
+		double range = Double.MAX_VALUE;
+		if (cos > 1e-6)
+			range = Math.min(range, (WALL_HIGH - sensorX) / cos);
+		else if (cos < -1e-6)
+			range = Math.min(range, (WALL_LOW - sensorX) / cos);
+		if (sin > 1e-6)
+			range = Math.min(range, (WALL_HIGH - sensorY) / sin);
+		else if (sin < -1e-6)
+			range = Math.min(range, (WALL_LOW - sensorY) / sin);
+		if (range > SENSOR_RANGE)
+			return 255;
+		return Math.max(0, range + READING_NOISE * random.nextGaussian());
+	}
+}
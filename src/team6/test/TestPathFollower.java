@@ -0,0 +1,100 @@
+package team6.test;
+
+import java.io.PrintWriter;
+
+import lejos.hardware.Button;
+import lejos.hardware.Sound;
+import lejos.hardware.ev3.LocalEV3;
+import lejos.hardware.lcd.TextLCD;
+import lejos.hardware.motor.EV3LargeRegulatedMotor;
+import team6.finalproject.MotorCommander;
+import team6.finalproject.Navigation;
+import team6.finalproject.Odometer;
+import team6.finalproject.PathMetrics;
+
+/**
+ * Benchmark comparing the stop-and-turn <code>travelTo</code> with the pure pursuit path follower.
+ * <o>
+ * Left button: drives the path with <code>travelTo</code>, one waypoint at a time. Right button: drives the
+ * same path with <code>followPath</code>, once for each look-ahead distance. The traversal time, cross-track
+ * error and number of stops of each run are shown and written to a file, along with how many motor commands
+ * were sent and how many were skipped as redundant.
+ */
+public class TestPathFollower {
+
+	private static final EV3LargeRegulatedMotor rightMotor = new EV3LargeRegulatedMotor(LocalEV3.get().getPort("A"));
+	private static final EV3LargeRegulatedMotor leftMotor = new EV3LargeRegulatedMotor(LocalEV3.get().getPort("D"));
+
+	//constants
+	public static final double WHEEL_RADIUS = 2.15; //needs to be changed for robots physical configs
+	public static final double TRACK = 15.6; //needs to be changed for robots physical configs
+
+	private static final String RESULT_FILE = "Path_results.txt";
+	private static final double[][] PATH = { { 60.96, 0 }, { 60.96, 60.96 }, { 0, 60.96 }, { 0, 0 } };
+	private static final double[] LOOK_AHEADS = { 8, 15, 25 };
+
+	public static void main(String[] args) {
+		int buttonChoice;
+		final TextLCD t = LocalEV3.get().getTextLCD();
+
+		Odometer odo = new Odometer(leftMotor, rightMotor, 30, true, WHEEL_RADIUS, TRACK);
+		odo.setIntegration(Odometer.Integration.EXACT_ARC, 10);
+		Navigation nav = new Navigation(odo);
+		odo.start();
+
+		do {
+			t.clear();
+			t.drawString("< Left | Right >", 0, 0);
+			t.drawString("       |        ", 0, 1);
+			t.drawString(" stop &| pure   ", 0, 2);
+			t.drawString(" turn  | pursuit", 0, 3);
+
+			buttonChoice = Button.waitForAnyPress();
+		} while (buttonChoice != Button.ID_LEFT && buttonChoice != Button.ID_RIGHT);
+
+		t.clear();
+		try {
+			PrintWriter writer = new PrintWriter(RESULT_FILE, "UTF-8");
+			writer.print("mode,look_ahead_cm,time_ms,mean_xte_cm,max_xte_cm,stops\r\n");
+			if (buttonChoice == Button.ID_LEFT) {
+				// sum the metrics of each leg
+				long time = 0;
+				double meanSum = 0, max = 0;
+				int stops = 0;
+				for (double[] waypoint : PATH) {
+					nav.travelTo(waypoint[0], waypoint[1]);
+					PathMetrics leg = nav.getMetrics();
+					time += leg.getTraversalTime();
+					meanSum += leg.getMeanCrossTrackError();
+					max = Math.max(max, leg.getMaxCrossTrackError());
+					stops += leg.getStops();
+				}
+				writer.print("travelTo,0," + time + "," + meanSum / PATH.length + "," + max + "," + stops + "\r\n");
+				t.drawString(time + "ms " + stops + " stops", 0, 0);
+				t.drawString("xte " + (int) (meanSum / PATH.length * 10) / 10.0 + "/" + (int) (max * 10) / 10.0, 0, 1);
+			} else {
+				for (int i = 0; i < LOOK_AHEADS.length; i++) {
+					nav.getFollower().setLookAhead(LOOK_AHEADS[i]);
+					nav.followPath(PATH);
+					nav.turnTo(0, true);
+					PathMetrics metrics = nav.getFollower().getMetrics();
+					writer.print("pursuit," + LOOK_AHEADS[i] + "," + metrics.getTraversalTime() + ","
+							+ metrics.getMeanCrossTrackError() + "," + metrics.getMaxCrossTrackError() + ","
+							+ metrics.getStops() + "\r\n");
+					t.drawString((int) LOOK_AHEADS[i] + ": " + metrics, 0, i);
+				}
+			}
+			MotorCommander commander = odo.getCommander();
+			writer.print("motor commands issued " + commander.getIssued() + ", suppressed "
+					+ commander.getSuppressed() + "\r\n");
+			t.drawString("cmd " + commander.getIssued() + "/" + commander.getSuppressed(), 0, 6);
+			writer.close();
+			Sound.beepSequenceUp();
+		} catch (Exception e) {
+			System.out.println("Write failed");
+		}
+
+		while (Button.waitForAnyPress() != Button.ID_ESCAPE);
+		System.exit(0);
+	}
+}
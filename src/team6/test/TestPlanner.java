@@ -0,0 +1,127 @@
+package team6.test;
+
+import java.io.PrintWriter;
+import java.util.Random;
+
+import lejos.hardware.Button;
+import lejos.hardware.Sound;
+import lejos.hardware.ev3.LocalEV3;
+import lejos.hardware.lcd.TextLCD;
+import team6.finalproject.AStarPlanner;
+import team6.finalproject.OccupancyGrid;
+import team6.finalproject.PathPlanner;
+import team6.finalproject.VisibilityPlanner;
+import team6.finalproject.ZoneIndex;
+
+/**
+ * Benchmark for the path planners on the EV3's CPU.
+ * <o>
+ * Builds a map with the four corner zones, a 2x2 tile red zone and a number of random obstacle blocks,
+ * then has the A* and visibility graph planners plan between the same random free points. The
+ * average and worst planning times, the waypoints and path length are shown for each number of obstacles,
+ * and written to a file.
+ */
+public class TestPlanner {
+
+	private static final double GRID_LENGTH = 30.48;
+	private static final double ROBOT_HALF_WIDTH = 6.7;
+	private static final double BLOCK_SIZE = 10;
+	private static final int[] OBSTACLE_COUNTS = { 0, 5, 10, 20 };
+	private static final int PLANS = 50;
+	private static final String RESULT_FILE = "Planner_results.txt";
+	private static final String[] PLANNER_NAMES = { "astar", "visibility" };
+
+	public static void main(String[] args) {
+		final TextLCD t = LocalEV3.get().getTextLCD();
+		Random random = new Random(6);
+
+		t.clear();
+		t.drawString("Planning...", 0, 0);
+		try {
+			PrintWriter writer = new PrintWriter(RESULT_FILE, "UTF-8");
+			writer.print("obstacles,planner,plans,failed,mean_ms,max_ms,mean_waypoints,mean_length_cm\r\n");
+			for (int c = 0; c < OBSTACLE_COUNTS.length; c++) {
+				OccupancyGrid map = new OccupancyGrid(ROBOT_HALF_WIDTH);
+				ZoneIndex zones = new ZoneIndex();
+				markZone(map, zones, -GRID_LENGTH, -GRID_LENGTH, 0, 0);
+				markZone(map, zones, 10 * GRID_LENGTH, -GRID_LENGTH, 11 * GRID_LENGTH, 0);
+				markZone(map, zones, 10 * GRID_LENGTH, 10 * GRID_LENGTH, 11 * GRID_LENGTH, 11 * GRID_LENGTH);
+				markZone(map, zones, -GRID_LENGTH, 10 * GRID_LENGTH, 0, 11 * GRID_LENGTH);
+				markZone(map, zones, 4 * GRID_LENGTH, 5 * GRID_LENGTH, 6 * GRID_LENGTH, 7 * GRID_LENGTH);
+				for (int i = 0; i < OBSTACLE_COUNTS[c]; i++) {
+					double x = randomCoordinate(random), y = randomCoordinate(random);
+					markZone(map, zones, x, y, x + BLOCK_SIZE, y + BLOCK_SIZE);
+				}
+				PathPlanner[] planners = { new AStarPlanner(map), new VisibilityPlanner(zones, ROBOT_HALF_WIDTH) };
+
+				double[][] points = new double[PLANS][];
+				for (int i = 0; i < PLANS; i++) {
+					double sx, sy, gx, gy;
+					do {
+						sx = randomCoordinate(random);
+						sy = randomCoordinate(random);
+					} while (!map.isFreeAt(sx, sy));
+					do {
+						gx = randomCoordinate(random);
+						gy = randomCoordinate(random);
+					} while (!map.isFreeAt(gx, gy));
+					points[i] = new double[] { sx, sy, gx, gy };
+				}
+
+				String line = OBSTACLE_COUNTS[c] + ":";
+				for (int p = 0; p < planners.length; p++) {
+					long total = 0, worst = 0, waypoints = 0;
+					double length = 0;
+					int failed = 0;
+					for (int i = 0; i < PLANS; i++) {
+						double[] q = points[i];
+						long start = System.nanoTime();
+						double[][] path = planners[p].plan(q[0], q[1], q[2], q[3]);
+						long elapsed = System.nanoTime() - start;
+						total += elapsed;
+						worst = Math.max(worst, elapsed);
+						if (path == null) {
+							failed++;
+							continue;
+						}
+						waypoints += path.length;
+						double x = q[0], y = q[1];
+						for (int w = 0; w < path.length; w++) {
+							length += Math.hypot(path[w][0] - x, path[w][1] - y);
+							x = path[w][0];
+							y = path[w][1];
+						}
+					}
+					double mean = total / 1e6 / PLANS;
+					int found = Math.max(1, PLANS - failed);
+					writer.print(OBSTACLE_COUNTS[c] + "," + PLANNER_NAMES[p] + "," + PLANS + "," + failed + "," + mean
+							+ "," + worst / 1e6 + "," + (double) waypoints / found + "," + length / found + "\r\n");
+					line += " " + (int) (mean * 10) / 10.0;
+				}
+				t.drawString(line + "ms", 0, c + 1);
+			}
+			writer.close();
+			Sound.beepSequenceUp();
+		} catch (Exception e) {
+			System.out.println("Write failed");
+		}
+
+		while (Button.waitForAnyPress() != Button.ID_ESCAPE);
+		System.exit(0);
+	}
+
+	/**
+	 * Adds a zone grown by the robot's half width to the map and the index, like <code>ObjectAvoidance</code>
+	 * does.
+	 */
+	private static void markZone(OccupancyGrid map, ZoneIndex zones, double x1, double y1, double x2, double y2) {
+		double xa = Math.min(x1, x2) - ROBOT_HALF_WIDTH, ya = Math.min(y1, y2) - ROBOT_HALF_WIDTH;
+		double xb = Math.max(x1, x2) + ROBOT_HALF_WIDTH, yb = Math.max(y1, y2) + ROBOT_HALF_WIDTH;
+		map.markRectangle(xa, ya, xb, yb);
+		zones.add(xa, ya, xb, yb);
+	}
+
+	private static double randomCoordinate(Random random) {
+		return random.nextDouble() * 10 * GRID_LENGTH;
+	}
+}
@@ -0,0 +1,186 @@
+package team6.test;
+
+import java.io.PrintWriter;
+import java.util.Random;
+
+import lejos.hardware.Button;
+import lejos.hardware.Sound;
+import lejos.hardware.ev3.LocalEV3;
+import lejos.hardware.lcd.TextLCD;
+import team6.finalproject.FilterChain;
+import team6.finalproject.HampelFilter;
+import team6.finalproject.MedianFilter;
+import team6.finalproject.SampleFilter;
+import team6.finalproject.WallFollower;
+
+/**
+ * Benchmark of the obstacle followers, on simulated runs around a block.
+ * <o>
+ * A sensor reading drives the wheels, which move the robot, which changes the next reading, so a recorded
+ * trace cannot be replayed through a different controller. Instead the robot, its sensor and the obstacle
+ * are simulated, starting where <code>ObjectAvoidance</code> hands over to the follower: backed up from the
+ * obstacle and turned right, with the sensor looking back over its left side. The readings get noise and
+ * 255 dropouts, then go through the same filters as on the robot. Each run ends when the robot has come
+ * round to the heading at which the follower stops, and the time it took, the path length and the closest
+ * the robot's side came to the obstacle are averaged over several noise seeds. The old bang-bang
+ * controller is included for comparison.
+ */
+public class TestWallFollower {
+
+	private static final String RESULT_FILE = "WallFollower_results.txt";
+	private static final double WHEEL_RADIUS = 2.15, TRACK = 15.6, HALF_WIDTH = 6.7;
+	private static final double ACCELERATION = 4000; // deg/s/s, as Navigation sets the motors
+	private static final double STEP = 0.005; // s of simulation per step
+	private static final int SENSOR_PERIOD = 10; // steps per reading, the poller's 50 ms
+	private static final double TIME_LIMIT = 40; // s
+	private static final double SENSOR_ANGLE = 130; // to the left of the heading
+	private static final double BEAM_HALF_WIDTH = 12; // deg
+	private static final double NOISE = 0.5; // cm
+	private static final int DROPOUT_PERCENT = 3;
+	private static final float DANGER_DIST = 14.4f;
+	private static final float FOLLOW_DISTANCE = 20, KP = 12, KD = 6; // as in ObjectAvoidance
+	private static final double START_GAP = DANGER_DIST + 3, END_TURN = 112;
+	private static final double[] BLOCK_LENGTHS = { 10, 30, 60 };
+	private static final int SEEDS = 10;
+
+	public static void main(String[] args) {
+		final TextLCD t = LocalEV3.get().getTextLCD();
+		String[] names = { "bangbang", "pd" };
+
+		t.clear();
+		t.drawString("Simulating...", 0, 0);
+		try {
+			PrintWriter writer = new PrintWriter(RESULT_FILE, "UTF-8");
+			writer.print("controller,block_cm,time_s,path_cm,min_clearance_cm,timeouts\r\n");
+			int line = 1;
+			for (int b = 0; b < BLOCK_LENGTHS.length; b++) {
+				for (int c = 0; c < names.length; c++) {
+					double time = 0, path = 0, clearance = Double.MAX_VALUE;
+					int timeouts = 0;
+					for (int seed = 0; seed < SEEDS; seed++) {
+						double[] result = simulate(c == 1, BLOCK_LENGTHS[b], new Random(seed));
+						time += result[0];
+						path += result[1];
+						clearance = Math.min(clearance, result[2]);
+						if (result[0] >= TIME_LIMIT)
+							timeouts++;
+					}
+					writer.print(names[c] + "," + BLOCK_LENGTHS[b] + "," + time / SEEDS + "," + path / SEEDS
+							+ "," + clearance + "," + timeouts + "\r\n");
+					t.drawString(names[c] + " " + (int) BLOCK_LENGTHS[b] + ": " + (int) (time / SEEDS) + "s "
+							+ (int) (path / SEEDS) + "cm", 0, line++);
+				}
+			}
+			writer.close();
+			Sound.beepSequenceUp();
+		} catch (Exception e) {
+			System.out.println("Write failed");
+		}
+
+		while (Button.waitForAnyPress() != Button.ID_ESCAPE);
+		System.exit(0);
+	}
+
+	/**
+	 * One run around a block whose face, across the robot's original heading, is <code>length</code> long.
+	 * @return	the time in s, the path length in cm and the smallest clearance in cm
+	 */
+	private static double[] simulate(boolean pd, double length, Random random) {
+		// the block, 10 cm deep, with its face at x = 0 centered on the original path
+		double x0 = 0, x1 = 10, y0 = -length / 2, y1 = length / 2;
+		double x = -START_GAP, y = 0, heading = 270;
+		double endHeading = (heading + END_TURN) % 360;
+		SampleFilter filter = new FilterChain(new HampelFilter(5, 3, 1), new MedianFilter(3));
+		WallFollower follower = new WallFollower(FOLLOW_DISTANCE, KP, KD, 195, 80);
+		double left = 0, right = 0, wantLeft = 0, wantRight = 0;
+		double time = 0, path = 0, clearance = Double.MAX_VALUE;
+
+		for (int step = 0; time < TIME_LIMIT; step++) {
+			if (step % SENSOR_PERIOD == 0) {
+				float reading = (float) read(x, y, heading + SENSOR_ANGLE, x0, y0, x1, y1);
+				if (reading < 255)
+					reading += (float) (NOISE * random.nextGaussian());
+				if (random.nextInt(100) < DROPOUT_PERCENT)
+					reading = 255;
+				float distance = filter.filter(reading);
+				if (pd) {
+					follower.update(distance, (long) (time * 1e9));
+					wantLeft = follower.getLeftSpeed();
+					wantRight = follower.getRightSpeed();
+				} else {
+					float[] speeds = bangbang(distance - DANGER_DIST);
+					wantLeft = speeds[0];
+					wantRight = speeds[1];
+				}
+			}
+			left = approach(left, wantLeft, ACCELERATION * STEP);
+			right = approach(right, wantRight, ACCELERATION * STEP);
+
+			double forward = Math.toRadians(left + right) / 2 * WHEEL_RADIUS * STEP;
+			double turn = Math.toDegrees(Math.toRadians(right - left) * WHEEL_RADIUS / TRACK) * STEP;
+			x += forward * Math.cos(Math.toRadians(heading));
+			y += forward * Math.sin(Math.toRadians(heading));
+			heading = ((heading + turn) % 360 + 360) % 360;
+			path += Math.abs(forward);
+			time += STEP;
+
+			double dx = Math.max(x0 - x, Math.max(0, x - x1)), dy = Math.max(y0 - y, Math.max(0, y - y1));
+			clearance = Math.min(clearance, Math.hypot(dx, dy) - HALF_WIDTH);
+			// the follower stops once the heading is past the end, coming round counter-clockwise
+			if (heading >= endHeading && heading < endHeading + 90)
+				break;
+		}
+		return new double[] { time, path, clearance };
+	}
+
+	/**
+	 * Shortest echo over the sensor's beam, or 255 if nothing is in range.
+	 */
+	private static double read(double x, double y, double direction, double x0, double y0, double x1,
+			double y1) {
+		double best = 255;
+		for (double offset = -BEAM_HALF_WIDTH; offset <= BEAM_HALF_WIDTH; offset += BEAM_HALF_WIDTH) {
+			double angle = Math.toRadians(direction + offset);
+			best = Math.min(best, cast(x, y, Math.cos(angle), Math.sin(angle), x0, y0, x1, y1));
+		}
+		return best;
+	}
+
+	/**
+	 * Distance along a ray to a rectangle, by the slab method.
+	 */
+	private static double cast(double x, double y, double dx, double dy, double x0, double y0, double x1,
+			double y1) {
+		double near = 0, far = 255;
+		double[] origin = { x, y }, direction = { dx, dy }, low = { x0, y0 }, high = { x1, y1 };
+		for (int axis = 0; axis < 2; axis++) {
+			if (Math.abs(direction[axis]) < 1e-9) {
+				if (origin[axis] < low[axis] || origin[axis] > high[axis])
+					return 255;
+				continue;
+			}
+			double a = (low[axis] - origin[axis]) / direction[axis];
+			double b = (high[axis] - origin[axis]) / direction[axis];
+			near = Math.max(near, Math.min(a, b));
+			far = Math.min(far, Math.max(a, b));
+		}
+		return near <= far ? near : 255;
+	}
+
+	private static double approach(double current, double wanted, double change) {
+		if (wanted > current)
+			return Math.min(wanted, current + change);
+		return Math.max(wanted, current - change);
+	}
+
+	/**
+	 * The wheel speeds <code>ObjectAvoidance</code> used before, from the error to the distance wanted.
+	 */
+	private static float[] bangbang(float errorDistance) {
+		if (Math.abs(errorDistance) <= 2)
+			return new float[] { 195, 195 };
+		else if (errorDistance > 0)
+			return new float[] { 144, 275 };
+		return new float[] { 275, 72 };
+	}
+}
@@ -0,0 +1,117 @@
+package team6.test;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import lejos.hardware.Button;
+import lejos.hardware.Sound;
+import lejos.hardware.ev3.LocalEV3;
+import lejos.hardware.lcd.TextLCD;
+import team6.finalproject.ZoneIndex;
+
+/**
+ * Microbenchmark of the red zone point query: the four <code>List&lt;Double&gt;</code> scan that
+ * <code>ObjectAvoidance</code> used to do, against the <code>ZoneIndex</code> buckets.
+ * <o>
+ * For each number of zones, both structures get the same random zones and answer the same random points.
+ * The time per query of each is shown and written to a file, and the answers are checked to agree.
+ */
+public class TestZoneIndex {
+
+	private static final double GRID_LENGTH = 30.48;
+	private static final double ZONE_SIZE = 23.4; //10 cm block grown by the robot's half width
+	private static final int[] ZONE_COUNTS = { 5, 20, 50, 100 };
+	private static final int QUERIES = 20000;
+	private static final String RESULT_FILE = "ZoneIndex_results.txt";
+
+	private static List<Double> redZoneXa = new ArrayList<Double>();
+	private static List<Double> redZoneYa = new ArrayList<Double>();
+	private static List<Double> redZoneXb = new ArrayList<Double>();
+	private static List<Double> redZoneYb = new ArrayList<Double>();
+
+	public static void main(String[] args) {
+		final TextLCD t = LocalEV3.get().getTextLCD();
+		Random random = new Random(6);
+
+		t.clear();
+		t.drawString("zones list/index", 0, 0);
+		try {
+			PrintWriter writer = new PrintWriter(RESULT_FILE, "UTF-8");
+			writer.print("zones,queries,list_ns,index_ns,mismatches\r\n");
+			for (int c = 0; c < ZONE_COUNTS.length; c++) {
+				redZoneXa.clear();
+				redZoneYa.clear();
+				redZoneXb.clear();
+				redZoneYb.clear();
+				ZoneIndex zones = new ZoneIndex();
+				for (int i = 0; i < ZONE_COUNTS[c]; i++) {
+					double x = randomCoordinate(random), y = randomCoordinate(random);
+					redZoneXa.add(x);
+					redZoneYa.add(y);
+					redZoneXb.add(x + ZONE_SIZE);
+					redZoneYb.add(y + ZONE_SIZE);
+					zones.add(x, y, x + ZONE_SIZE, y + ZONE_SIZE);
+				}
+
+				double[] qx = new double[QUERIES], qy = new double[QUERIES];
+				for (int i = 0; i < QUERIES; i++) {
+					qx[i] = randomCoordinate(random);
+					qy[i] = randomCoordinate(random);
+				}
+
+				int[] listAnswers = new int[QUERIES], indexAnswers = new int[QUERIES];
+				long start = System.nanoTime();
+				for (int i = 0; i < QUERIES; i++) {
+					listAnswers[i] = isInRed(qx[i], qy[i]);
+				}
+				long listTime = System.nanoTime() - start;
+
+				start = System.nanoTime();
+				for (int i = 0; i < QUERIES; i++) {
+					indexAnswers[i] = zones.find(qx[i], qy[i]);
+				}
+				long indexTime = System.nanoTime() - start;
+
+				int mismatches = 0;
+				for (int i = 0; i < QUERIES; i++) {
+					int expected = listAnswers[i] == redZoneXa.size() ? -1 : listAnswers[i];
+					if (expected != indexAnswers[i])
+						mismatches++;
+				}
+
+				writer.print(ZONE_COUNTS[c] + "," + QUERIES + "," + listTime / QUERIES + "," + indexTime / QUERIES + ","
+						+ mismatches + "\r\n");
+				t.drawString(ZONE_COUNTS[c] + ": " + listTime / QUERIES + "/" + indexTime / QUERIES + "ns", 0, c + 1);
+				if (mismatches > 0)
+					t.drawString("  " + mismatches + " mismatches!", 0, c + 1);
+			}
+			writer.close();
+			Sound.beepSequenceUp();
+		} catch (Exception e) {
+			System.out.println("Write failed");
+		}
+
+		while (Button.waitForAnyPress() != Button.ID_ESCAPE);
+		System.exit(0);
+	}
+
+	/**
+	 * The lookup <code>ObjectAvoidance</code> used before the <code>ZoneIndex</code>.
+	 */
+	private static int isInRed(double x, double y) {
+		int redNumber = redZoneXa.size();
+		for (int i = 0; i < redNumber; i++) {
+			if (x > redZoneXa.get(i) && x < redZoneXb.get(i) && y > redZoneYa.get(i) && y < redZoneYb.get(i)) {
+				redNumber = i;
+				break;
+			}
+		}
+		return redNumber;
+	}
+
+	private static double randomCoordinate(Random random) {
+		return random.nextDouble() * 11 * GRID_LENGTH - GRID_LENGTH;
+	}
+}
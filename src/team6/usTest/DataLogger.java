@@ -13,13 +13,25 @@ public class DataLogger extends Thread{
 	
 	private SampleProvider usSensor;
 	private float[] usData;
-	private String name;
+	private String fileName;
+	private boolean raw;
 	
 	
 	DataLogger (SampleProvider usSensor, float[] usData, String name){
+		this(usSensor, usData, "Interference"+name+".txt", false);
+	}
+	
+	/**
+	 * Logger writing to a given file.
+	 * @param fileName	the <code>String</code> name of the file to write
+	 * @param raw		<code>true</code> to log the readings in cm as <code>UltrasonicPoller</code> gives them,
+	 * 					not rounded or clamped at <code>MAX_DISTANCE</code>
+	 */
+	DataLogger (SampleProvider usSensor, float[] usData, String fileName, boolean raw){
 		this.usSensor = usSensor;
 		this.usData = usData;
-		this.name = name;
+		this.fileName = fileName;
+		this.raw = raw;
 	}
 	
 	
@@ -31,7 +43,7 @@ public class DataLogger extends Thread{
 	@Override
 	public void run(){
 		try{
-		    PrintWriter writer = new PrintWriter("Interference"+name+".txt", "UTF-8");
+		    PrintWriter writer = new PrintWriter(fileName, "UTF-8");
 		    
 		    
 			while (count<=6000) {
@@ -51,9 +63,14 @@ public class DataLogger extends Thread{
 	
 	public float getFilteredData() {
 		usSensor.fetchSample(usData, 0);
-		int aux = (int) (usData[0]*10000.0);
-		float res = (float) (aux/100.0);
-		if (res > MAX_DISTANCE) res = MAX_DISTANCE;
+		float res;
+		if (raw) {
+			res = usData[0]*100;
+		} else {
+			int aux = (int) (usData[0]*10000.0);
+			res = (float) (aux/100.0);
+			if (res > MAX_DISTANCE) res = MAX_DISTANCE;
+		}
 		try { Thread.sleep(50); } catch(Exception e){}		// Poor man's timed sampling
 		return res;
 	}
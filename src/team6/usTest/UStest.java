@@ -18,6 +18,7 @@ public class UStest {
 	private static final Port usPort2 = LocalEV3.get().getPort("S2");
 	private static final String portName1 = "_Lower_SimpleOneMeter";			
 	private static final String portName2 = "_Upper_SimpleOneMeter";
+	private static final String TRACE_FILE = "us_trace.txt"; // read by team6.test.TestFilters
 			
 	private static final int WHEEL_SPEED = 150;
 	
@@ -40,6 +41,7 @@ public class UStest {
 		
 		DataLogger dl1 = new DataLogger(usValue, usData, portName1);
 		DataLogger dl2 = new DataLogger(usValue2, usData2, portName2);
+		DataLogger trace = new DataLogger(usValue, usData, TRACE_FILE, true);
 		Turn720 ttt = new Turn720(WHEEL_SPEED, leftMotor, rightMotor);
 		
 		do {
@@ -49,12 +51,25 @@ public class UStest {
 			t.drawString("       |        ", 0, 1);
 			t.drawString(" turn  | stati--", 0, 2);
 			t.drawString(" around| --onary", 0, 3);
+			t.drawString("  v raw trace    ", 0, 5);
 			
 			buttonChoice = Button.waitForAnyPress();
-		} while (buttonChoice != Button.ID_LEFT && buttonChoice != Button.ID_RIGHT);
+		} while (buttonChoice != Button.ID_LEFT && buttonChoice != Button.ID_RIGHT
+				&& buttonChoice != Button.ID_DOWN);
 		
 		
-		if (buttonChoice == Button.ID_LEFT) {
+		if (buttonChoice == Button.ID_DOWN) {
+			
+			// the lower sensor turning around, for the filter benchmark
+			t.clear();
+			t.drawString("Recording!", 0, 0);
+			
+			ttt.start();
+			trace.start();
+			
+			while(Button.waitForAnyPress() != Button.ID_ESCAPE);
+			System.exit(0);
+		} else if (buttonChoice == Button.ID_LEFT) {
 			
 			t.clear();
 			t.drawString("Running!", 0, 0);